@@ -1,6 +1,5 @@
 package uk.ac.nottingham.psyja2.ATCAutomation;
 
-import java.awt.EventQueue;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -10,9 +9,9 @@ import uk.ac.nottingham.psyja2.ATCSimulator.AltitudeInstruction;
 import uk.ac.nottingham.psyja2.ATCSimulator.HoldInstruction;
 import uk.ac.nottingham.psyja2.ATCSimulator.Instruction;
 import uk.ac.nottingham.psyja2.ATCSimulator.InstructionListener;
-import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
 import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint;
 import uk.ac.nottingham.psyja2.ATCSimulator.WaypointInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
 import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint.WaypointType;
 
 public class AircraftAgent extends Agent
@@ -40,17 +39,29 @@ public class AircraftAgent extends Agent
 	@Override
 	public Node getPosition()
 	{
+		// Read the aircraft's position from the last simulator update, if it has been added to the simulation
+		double latitude = aircraft.getLocation().getLatitude();
+		double longitude = aircraft.getLocation().getLongitude();
+		double altitude = aircraft.getAltitude();
+		AircraftState state = aircraft.getSimulator().getSnapshot().getAircraft(aircraft);
+		if(state != null)
+		{
+			latitude = state.getLatitude();
+			longitude = state.getLongitude();
+			altitude = state.getAltitude();
+		}
+		
 		// Find the nearest node to the aircraft
 		Node closest = null;
 		double closestDist = Double.MAX_VALUE;
-		int alt =  (int) (Math.round(aircraft.getAltitude() / 1000) * 1000) / 100;
+		int alt =  (int) (Math.round(altitude / 1000) * 1000) / 100;
 		for(Node _node : manager.graph.getAllNodes())
 		{
 			SpatialNode node = (SpatialNode) _node;
 			if(node.altitude == alt)
 			{
 				double dist = GraphBuilder.calculateDistance(node.getLocation().getLatitude(), node.getLocation().getLongitude(), 
-						aircraft.getLocation().getLatitude(), aircraft.getLocation().getLongitude());
+						latitude, longitude);
 				if(dist < closestDist)
 				{
 					closestDist = dist;
@@ -67,25 +78,26 @@ public class AircraftAgent extends Agent
 	@Override
 	public double getPriority()
 	{		
-		if(Preferences.PRIORITY_SYSTEM == Preferences.AGITATION)
+		int prioritySystem = ((SpatialWHCAStar) manager.graph).getPreferences().prioritySystem;
+		if(prioritySystem == Preferences.AGITATION)
 		{
 			// Method 1: Path Optimality (agitation)
 			// Compare the actual cost to the heuristic to find out how 'good' the path is
 			return pathCost / heuristicCost;
 		}
-		else if(Preferences.PRIORITY_SYSTEM == Preferences.FIFO)
+		else if(prioritySystem == Preferences.FIFO)
 		{
 			// Method 2: Airborne Time (FIFO)
 			return aircraft.getAirborneTime();	
 		}
-		else if(Preferences.PRIORITY_SYSTEM == Preferences.FURTHEST_DESTINATION)
+		else if(prioritySystem == Preferences.FURTHEST_DESTINATION)
 		{
 			// Method 3: Furthest Distance To Destination
 			double distanceToGoal = GraphBuilder.calculateDistance(aircraft.getLocation().getLatitude(), aircraft.getLocation().getLongitude(), 
 					((SpatialNode)goal).location.getLatitude(), ((SpatialNode)goal).location.getLongitude());
 			return distanceToGoal;
 		}
-		else if(Preferences.PRIORITY_SYSTEM == Preferences.CLOSEST_DESTINATION)
+		else if(prioritySystem == Preferences.CLOSEST_DESTINATION)
 		{
 			// Method 4: Earliest Deadline First (closest to destination first)
 			double distanceToGoal = GraphBuilder.calculateDistance(aircraft.getLocation().getLatitude(), aircraft.getLocation().getLongitude(), 
@@ -130,7 +142,7 @@ public class AircraftAgent extends Agent
 		// If the aircraft is not in the scenario, add it
 		if(!inScenario)
 		{
-			Simulator.getInstance().addAircraft(aircraft);
+			aircraft.getSimulator().addAircraft(aircraft);
 			inScenario = true;
 		}
 	}
@@ -174,7 +186,7 @@ public class AircraftAgent extends Agent
 			if(aircraft.getAltitude() != altitude)
 			{
 				// Tell the aircraft to descend/climb
-				Simulator.getInstance().sendInstruction(new AltitudeInstruction(altitude), aircraft);
+				aircraft.getSimulator().sendInstruction(new AltitudeInstruction(altitude), aircraft);
 			}
 			
 			// Send a navigate to waypoint instruction
@@ -208,11 +220,12 @@ public class AircraftAgent extends Agent
 				{
 					// Remove itself from the agent manager
 					manager.removeAgent(AircraftAgent.this);
-					Simulator.getInstance().removeAircraft(AircraftAgent.this.aircraft);
+					AircraftAgent.this.aircraft.getSimulator().removeAircraft(AircraftAgent.this.aircraft);
 					return;
 				}
 				
-				EventQueue.invokeLater(new Runnable() {
+				// Move on once the simulator has finished its current update
+				aircraft.getSimulator().invokeLater(new Runnable() {
 
 					@Override
 					public void run()
@@ -229,7 +242,7 @@ public class AircraftAgent extends Agent
 		
 		// Send instruction
 		currentInstruction = instruction;
-		Simulator.getInstance().sendInstruction(instruction, aircraft);
+		aircraft.getSimulator().sendInstruction(instruction, aircraft);
 	}
 
 	@Override
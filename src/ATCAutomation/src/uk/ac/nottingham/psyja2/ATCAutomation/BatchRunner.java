@@ -0,0 +1,446 @@
+package uk.ac.nottingham.psyja2.ATCAutomation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.parser.ParseException;
+
+import uk.ac.nottingham.psyja2.ATCAutomation.Controller.Output;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+
+/**
+ * Runs a schedule once for every combination of a grid of preferences and wind conditions,
+ * headless in fast time, with as many runs side by side as there are processors.<br>
+ * The scenario is parsed once and shared by every run, as is the graph (and its Floyd-Warshall matrix) for each intermediate spacing.
+ * Each run searches the shared nodes through a graph of its own, which keeps the run's preferences, reservations and searches.<br>
+ * The results of all the runs are written to a single CSV table
+ * @author Josh Argent
+ *
+ */
+public class BatchRunner
+{
+
+	// Command line names of the heuristics and priority systems, indexed by their Preferences value
+	private static final String HEURISTIC_NAMES[] = { "manhattan", "straight", "true" };
+	private static final String PRIORITY_SYSTEM_NAMES[] = { "agitation", "fifo", "furthest", "closest" };
+
+	private Scenario scenario;
+	private File scheduleFile;
+	private double timeLimit;
+	private boolean eventDriven = false;
+	private boolean sweptConflicts = false;
+	private boolean pipelined = false;
+	private int planningThreads = 1;
+	private Map<Integer, SpatialWHCAStar> sharedGraphs = new HashMap<>(); // The graph built for each spacing
+	private Map<Integer, Map<String, SpatialNode>> sharedNodes = new HashMap<>(); // The nodes of each shared graph, by name
+
+	/**
+	 * @param scenario the scenario, shared by every run
+	 * @param scheduleFile the schedule of aircraft to run
+	 * @param timeLimit the simulator time (in seconds) to stop a run at if it has not finished
+	 */
+	public BatchRunner(Scenario scenario, File scheduleFile, double timeLimit)
+	{
+		this.scenario = scenario;
+		this.scheduleFile = scheduleFile;
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Run the simulators event driven (see {@link Simulator#setEventDriven(boolean)})
+	 */
+	public void setEventDriven(boolean eventDriven)
+	{
+		this.eventDriven = eventDriven;
+	}
+
+	/**
+	 * Check for conflicts between the simulators' updates (see {@link Simulator#setSweptConflicts(boolean)})
+	 */
+	public void setSweptConflicts(boolean sweptConflicts)
+	{
+		this.sweptConflicts = sweptConflicts;
+	}
+
+	/**
+	 * Pipeline the simulators' updates (see {@link Simulator#setPipelined(boolean)})
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		this.pipelined = pipelined;
+	}
+
+	/**
+	 * Plan each run's aircraft on this many threads (see {@link AgentManager#setPlanningThreads(int)})
+	 */
+	public void setPlanningThreads(int planningThreads)
+	{
+		this.planningThreads = planningThreads;
+	}
+
+	/**
+	 * Run the schedule with every combination of the given preferences and winds
+	 * @param preferences the preferences to try
+	 * @param winds the winds to try, each is { speed, direction }
+	 * @param threads the number of runs to do at the same time
+	 * @return the runs, in the order the combinations were given
+	 */
+	public List<Run> run(List<Preferences> preferences, List<int[]> winds, int threads) throws InterruptedException
+	{
+		final List<Run> runs = new ArrayList<>();
+		for(Preferences preference : preferences)
+		{
+			for(int[] wind : winds)
+			{
+				runs.add(new Run(preference, wind[0], wind[1]));
+			}
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for(final Run run : runs)
+		{
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					run.run();
+					synchronized(runs)
+					{
+						System.out.println("Finished run " + (runs.indexOf(run) + 1) + " of " + runs.size() + ": " + run);
+					}
+				}
+
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		return runs;
+	}
+
+	/**
+	 * Returns the graph for an intermediate spacing, with its Floyd-Warshall matrix, building it the first time it is needed.
+	 * It is never searched itself, each run searches its nodes through a graph of its own
+	 */
+	private synchronized SpatialWHCAStar getSharedGraph(Preferences preferences)
+	{
+		int spacing = preferences.intermediateSpacing;
+		if(!sharedGraphs.containsKey(spacing))
+		{
+			SpatialWHCAStar graph = new SpatialWHCAStar(preferences);
+			sharedNodes.put(spacing, GraphBuilder.buildGraph(scenario, graph, spacing));
+			graph.buildFlatGraph();
+			sharedGraphs.put(spacing, graph);
+		}
+		return sharedGraphs.get(spacing);
+	}
+
+	/**
+	 * Returns the nodes of the shared graph for an intermediate spacing, by name
+	 */
+	private synchronized Map<String, SpatialNode> getSharedNodes(int spacing)
+	{
+		return sharedNodes.get(spacing);
+	}
+
+	/**
+	 * Write a table of the results to a CSV file
+	 */
+	public static void writeResults(List<Run> runs, File file) throws FileNotFoundException
+	{
+		PrintWriter out = new PrintWriter(file);
+		out.println("heuristic,priority,spacing,reservation,window,wind_speed,wind_direction,aircraft,conflicts,instructions,"
+				+ "flow_rate,planning_time_ms,nodes_expanded,simulated_time_s,updates,run_time_ms,finished");
+		for(Run run : runs)
+		{
+			out.println(HEURISTIC_NAMES[run.preferences.heuristic] + "," + PRIORITY_SYSTEM_NAMES[run.preferences.prioritySystem] + ","
+					+ run.preferences.intermediateSpacing + "," + run.preferences.reservationTime + "," + run.preferences.windowSize + ","
+					+ run.windSpeed + "," + run.windDirection + "," + run.aircraft + "," + run.conflicts + "," + run.instructions + ","
+					+ String.format("%.2f,%.0f,", run.flowRate, run.planningTime) + run.nodesExplored + ","
+					+ String.format("%.0f,", run.simulatedTime) + run.updates + "," + run.runTime + "," + (run.error != null ? run.error : run.finished));
+		}
+		out.close();
+	}
+
+	/**
+	 * A single run of the schedule with one set of preferences and wind
+	 */
+	public class Run implements Runnable
+	{
+
+		public final Preferences preferences;
+		public final int windSpeed;
+		public final int windDirection;
+
+		// Results
+		public int aircraft;
+		public int conflicts;
+		public int instructions;
+		public double flowRate; // Aircraft that left the simulation per hour
+		public double planningTime; // Milliseconds
+		public long nodesExplored;
+		public double simulatedTime; // Seconds
+		public long updates; // Number of simulator updates
+		public long runTime; // Milliseconds
+		public boolean finished; // False if the time limit was reached first
+		public String error;
+
+		private Run(Preferences preferences, int windSpeed, int windDirection)
+		{
+			this.preferences = preferences;
+			this.windSpeed = windSpeed;
+			this.windDirection = windDirection;
+		}
+
+		@Override
+		public void run()
+		{
+			long startTime = System.currentTimeMillis();
+
+			final Simulator simulator = new Simulator(scenario, true, 1);
+			simulator.setTimeSpeed(1);
+			simulator.setEventDriven(eventDriven);
+			simulator.setSweptConflicts(sweptConflicts);
+			simulator.setPipelined(pipelined);
+			simulator.setWindSpeed(windSpeed);
+			simulator.setWindDirection(windDirection);
+			try
+			{
+				// Search the shared graph and plan on the simulator thread, as the Controller does in fast time
+				final SpatialWHCAStar graph = new SpatialWHCAStar(getSharedGraph(preferences), preferences);
+				graph.TIMEOUT = 5 * 1000L; // 5 second timeout
+				final Map<String, SpatialNode> nodes = getSharedNodes(preferences.intermediateSpacing);
+				final AgentManager agentManager = new AgentManager(graph, false);
+				agentManager.setPlanningThreads(planningThreads);
+				final Scheduler scheduler = new Scheduler(simulator, agentManager, nodes, new Output() {
+
+					@Override
+					public void println(String str)
+					{
+						print(str + "\n");
+					}
+
+					@Override
+					public void print(String str)
+					{
+						// Only report errors, not every aircraft being added
+						if(str.startsWith("ERROR"))
+							System.out.print(Run.this + ": " + str);
+					}
+
+				});
+				simulator.addTickListener(new TickListener() {
+
+					@Override
+					public void tickEvent(double time)
+					{
+						agentManager.setTime(time / 3600D);
+						agentManager.update();
+					}
+
+				});
+				scheduler.loadSchedule(scheduleFile);
+				aircraft = scheduler.getNumberScheduled();
+
+				// Record the results when the last aircraft leaves, or the time limit is reached
+				final CountDownLatch latch = new CountDownLatch(1);
+				simulator.addTickListener(new TickListener() {
+
+					@Override
+					public void tickEvent(double time)
+					{
+						if(latch.getCount() == 0)
+							return;
+						finished = scheduler.isFinished();
+						if(finished || time >= timeLimit)
+						{
+							conflicts = simulator.getNumberOfConflicts();
+							instructions = simulator.getNumberOfInstructions();
+							simulatedTime = time;
+							updates = simulator.getTick();
+							int exited = aircraft - scheduler.getNumberScheduled() - simulator.getNumberOfAircraft();
+							flowRate = exited / (time / 3600D);
+							planningTime = agentManager.getPlanningTime();
+							nodesExplored = graph.numberOfNodesExplored;
+							simulator.stop();
+							latch.countDown();
+						}
+					}
+
+				});
+				simulator.start();
+				while(!latch.await(1, TimeUnit.SECONDS))
+				{
+					if(!simulator.isRunning())
+						throw new IllegalStateException("The simulator stopped before the run finished");
+				}
+			} catch (Exception e)
+			{
+				error = e.toString();
+				simulator.stop();
+			}
+
+			runTime = System.currentTimeMillis() - startTime;
+		}
+
+		@Override
+		public String toString()
+		{
+			return HEURISTIC_NAMES[preferences.heuristic] + " " + PRIORITY_SYSTEM_NAMES[preferences.prioritySystem] + " "
+					+ preferences.intermediateSpacing + " " + preferences.reservationTime + " " + preferences.windowSize
+					+ " wind " + windSpeed + "/" + windDirection
+					+ (runTime > 0 ? " = " + conflicts + " conflicts, " + instructions + " instructions" : "");
+		}
+
+	}
+
+	/**
+	 * Run a grid of preferences from the command line.<br>
+	 * Each option is a comma separated list of values to try, options that are left out use the default value
+	 * @param args scenario_file schedule_file output_csv [-heuristic=true,straight,manhattan] [-priority=agitation,fifo,furthest,closest]
+	 * [-spacing=4,...] [-reservation=10,...] [-window=90,...] [-wind=speed/direction,...] [-threads=N] [-planners=N] [-limit=hours] [-events] [-swept] [-pipeline]
+	 */
+	public static void main(String[] args) throws InterruptedException
+	{
+		if(args.length < 3)
+		{
+			System.out.println("Usage: BatchRunner scenario_file schedule_file output_csv [-heuristic=true,straight,manhattan] "
+					+ "[-priority=agitation,fifo,furthest,closest] [-spacing=4,...] [-reservation=10,...] [-window=90,...] "
+					+ "[-wind=speed/direction,...] [-threads=N] [-planners=N] [-limit=hours] [-events] [-swept] [-pipeline]");
+			return;
+		}
+
+		// Read the grid of values
+		String heuristics = HEURISTIC_NAMES[Preferences.HEURISTIC];
+		String prioritySystems = PRIORITY_SYSTEM_NAMES[Preferences.PRIORITY_SYSTEM];
+		String spacings = String.valueOf(Preferences.INTERMEDIATE_SPACING);
+		String reservationTimes = String.valueOf(Preferences.RESERVATION_TIME);
+		String windowSizes = String.valueOf(Preferences.WINDOW_SIZE);
+		String winds = "0/270";
+		int threads = Runtime.getRuntime().availableProcessors();
+		double timeLimit = 24 * 3600;
+		boolean eventDriven = false;
+		boolean sweptConflicts = false;
+		boolean pipelined = false;
+		int planningThreads = 1;
+		for(int i = 3; i < args.length; i++)
+		{
+			String value = args[i].substring(args[i].indexOf("=") + 1);
+			if(args[i].toLowerCase().startsWith("-heuristic="))
+				heuristics = value;
+			else if(args[i].toLowerCase().startsWith("-priority="))
+				prioritySystems = value;
+			else if(args[i].toLowerCase().startsWith("-spacing="))
+				spacings = value;
+			else if(args[i].toLowerCase().startsWith("-reservation="))
+				reservationTimes = value;
+			else if(args[i].toLowerCase().startsWith("-window="))
+				windowSizes = value;
+			else if(args[i].toLowerCase().startsWith("-wind="))
+				winds = value;
+			else if(args[i].toLowerCase().startsWith("-threads="))
+				threads = Integer.valueOf(value);
+			else if(args[i].toLowerCase().startsWith("-planners="))
+				planningThreads = Integer.valueOf(value);
+			else if(args[i].toLowerCase().startsWith("-limit="))
+				timeLimit = Double.valueOf(value) * 3600;
+			else if(args[i].equalsIgnoreCase("-events"))
+				eventDriven = true;
+			else if(args[i].equalsIgnoreCase("-swept"))
+				sweptConflicts = true;
+			else if(args[i].equalsIgnoreCase("-pipeline"))
+				pipelined = true;
+			else
+			{
+				System.out.println("Unknown option '" + args[i] + "'");
+				return;
+			}
+		}
+
+		List<Preferences> preferences = new ArrayList<>();
+		try
+		{
+			for(String heuristic : heuristics.split(","))
+			{
+				for(String prioritySystem : prioritySystems.split(","))
+				{
+					for(String spacing : spacings.split(","))
+					{
+						for(String reservationTime : reservationTimes.split(","))
+						{
+							for(String windowSize : windowSizes.split(","))
+							{
+								preferences.add(new Preferences(indexOf(HEURISTIC_NAMES, heuristic), indexOf(PRIORITY_SYSTEM_NAMES, prioritySystem),
+										Integer.valueOf(spacing), Integer.valueOf(reservationTime), Integer.valueOf(windowSize)));
+							}
+						}
+					}
+				}
+			}
+		} catch (IllegalArgumentException e)
+		{
+			System.out.println("Invalid value: " + e.getMessage());
+			return;
+		}
+		List<int[]> windList = new ArrayList<>();
+		for(String wind : winds.split(","))
+		{
+			String parts[] = wind.split("/");
+			windList.add(new int[] { Integer.valueOf(parts[0]), parts.length > 1 ? Integer.valueOf(parts[1]) : 270 });
+		}
+
+		// Load the scenario once for all the runs
+		Scenario scenario;
+		try
+		{
+			scenario = new Scenario(args[0]);
+		} catch (IOException | ParseException e)
+		{
+			System.out.println("Could not read the scenario file: " + e);
+			return;
+		}
+
+		System.out.println("Running " + (preferences.size() * windList.size()) + " combinations on " + threads + " threads...");
+		long startTime = System.currentTimeMillis();
+		BatchRunner runner = new BatchRunner(scenario, new File(args[1]), timeLimit);
+		runner.setEventDriven(eventDriven);
+		runner.setSweptConflicts(sweptConflicts);
+		runner.setPipelined(pipelined);
+		runner.setPlanningThreads(planningThreads);
+		List<Run> runs = runner.run(preferences, windList, threads);
+		System.out.println("Batch complete in " + ((System.currentTimeMillis() - startTime) / 1000) + "s");
+
+		try
+		{
+			writeResults(runs, new File(args[2]));
+			System.out.println("Results written to " + args[2]);
+		} catch (FileNotFoundException e)
+		{
+			System.out.println("Could not write the results: " + e.getMessage());
+		}
+	}
+
+	private static int indexOf(String names[], String name)
+	{
+		for(int i = 0; i < names.length; i++)
+		{
+			if(names[i].equalsIgnoreCase(name))
+				return i;
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+}
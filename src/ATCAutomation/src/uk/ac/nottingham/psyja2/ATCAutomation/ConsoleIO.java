@@ -0,0 +1,48 @@
+package uk.ac.nottingham.psyja2.ATCAutomation;
+
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import uk.ac.nottingham.psyja2.ATCAutomation.Controller.Input;
+import uk.ac.nottingham.psyja2.ATCAutomation.Controller.Output;
+
+/**
+ * Reads commands from standard input and writes output to standard output,
+ * for running the controller without a GUI
+ * @author Josh Argent
+ *
+ */
+public class ConsoleIO implements Input, Output
+{
+	
+	private Scanner scanner = new Scanner(System.in);
+
+	@Override
+	public String nextLine()
+	{
+		if(Thread.currentThread().isInterrupted())
+			return null;
+		try
+		{
+			return scanner.nextLine();
+		} 
+		catch (NoSuchElementException e)
+		{
+			// No more input (eg. stdin is closed or was a file), the controller stops reading commands
+			return null;
+		}
+	}
+
+	@Override
+	public void println(String str)
+	{
+		System.out.println(str);
+	}
+
+	@Override
+	public void print(String str)
+	{
+		System.out.print(str);
+	}
+
+}
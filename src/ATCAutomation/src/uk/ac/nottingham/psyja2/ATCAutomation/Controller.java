@@ -1,17 +1,20 @@
 package uk.ac.nottingham.psyja2.ATCAutomation;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Map;
 import java.util.TimeZone;
 
-import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AStar;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager;
 import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
 import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
 import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.RealTimeClock;
 import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEventBus;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
 
 public abstract class Controller
 {
@@ -20,6 +23,7 @@ public abstract class Controller
 	protected static Input in;
 	public static String logArg = "";
 	public static String scheduleArg = "";
+	public static String journalArg = "";
 	private static String scenarioFile;
 	
 	protected static SpatialWHCAStar graph;
@@ -43,11 +47,40 @@ public abstract class Controller
 		
 		/* Build FW graph */
 		out.println("Building Floyd-Warshall matrix...");
-		SpatialNode.buildFlatGraph(graph);
+		graph.buildFlatGraph();
 		
 		out.println("Initialising the agent manager...");
-		agentManager = new AgentManager(graph);
-		scheduler = new Scheduler();
+		if(Simulator.getInstance().isFastTime())
+		{
+			// Plan on the simulator thread, so paths are recalculated at the same simulated time every run
+			agentManager = new AgentManager(graph, false);
+			scheduler = new Scheduler();
+			Simulator.getInstance().addTickListener(new TickListener() {
+
+				@Override
+				public void tickEvent(double time)
+				{
+					agentManager.setTime(time / 3600D);
+					agentManager.update();
+				}
+				
+			});
+		}
+		else
+		{
+			agentManager = new AgentManager(graph);
+			scheduler = new Scheduler();
+			Simulator.getInstance().addTickListener(new TickListener() {
+
+				@Override
+				public void tickEvent(double time)
+				{
+					// The graph's times are in hours
+					agentManager.setTime(time / 3600D);
+				}
+				
+			});
+		}
 		
 		out.println("Total memory = " + (Runtime.getRuntime().totalMemory() / (1024 * 1024)) + "MB");
 		out.println("Loading complete!\n");
@@ -66,6 +99,12 @@ public abstract class Controller
 		loadScenario();
 		help();
 		
+		// Check if a journal file was passed through application args
+		if(!journalArg.equals(""))
+		{
+			startJournal(journalArg);
+		}
+		
 		// Check if a log folder and schedule was passed through application args
 		if(!logArg.equals(""))
 		{
@@ -73,10 +112,18 @@ public abstract class Controller
 			logger = new Logger(new File(logArg));
 			logger.startLogger();
 		}
+		
+		// A fast time simulator waits until everything is loaded before it starts
+		Simulator.getInstance().start();
 
 		while(true)
 		{
 			String instruction = in.nextLine();
+			if(instruction == null)
+			{
+				// No more input, the simulation carries on without taking commands
+				break;
+			}
 			String parts[] = instruction.split(" ");
 			if(parts.length == 0)
 			{
@@ -215,6 +262,22 @@ public abstract class Controller
 					out.println("Too few/many arguments! See the 'help' command.");
 				}
 			}
+			else if(parts[0].equalsIgnoreCase("JOURNAL"))
+			{
+				if(parts.length == 3 && parts[1].equalsIgnoreCase("-on"))
+				{
+					startJournal(parts[2]);
+				}
+				else if(parts.length == 2 && parts[1].equalsIgnoreCase("-off"))
+				{
+					Simulator.getInstance().stopJournal();
+					out.println("Journal stopped!");
+				}
+				else
+				{
+					out.println("Invalid command! See the 'help' command.");
+				}
+			}
 			else if(parts[0].equalsIgnoreCase("TIME"))
 			{
 				SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
@@ -224,7 +287,23 @@ public abstract class Controller
 			}
 			else if(parts[0].equalsIgnoreCase("STATS"))
 			{
-				out.println("Number of nodes explored by A* = " + AStar.numberOfNodesExplored);
+				out.println("Number of nodes explored by A* = " + graph.numberOfNodesExplored);
+				out.println(String.format("Time spent planning = %.0fms", agentManager.getPlanningTime()));
+				long reservationMemory;
+				synchronized(agentManager.getPlanningLock())
+				{
+					reservationMemory = graph.getReservationTableMemoryUsage();
+				}
+				out.println(String.format("Reservation table memory = %.1fKB", reservationMemory / 1024D));
+				SimulatorEventBus events = Simulator.getInstance().getEventBus();
+				out.println("Conflict events dropped = " + events.getDropped(SimulatorEventBus.CONFLICTS) + " of " + events.getPublished(SimulatorEventBus.CONFLICTS));
+				if(!Simulator.getInstance().isFastTime())
+				{
+					RealTimeClock clock = Simulator.getInstance().getClock();
+					out.println("Late updates = " + clock.getOverruns() + " of " + clock.getUpdates());
+					out.println(String.format("Worst update latency = %.1fms", clock.getWorstLatency()));
+					out.println(String.format("Behind real time = %.2fs (%.1fs lost)", clock.getLag(), clock.getLostTime()));
+				}
 			}
 			else if(parts[0].equalsIgnoreCase("HELP"))
 			{
@@ -247,6 +326,7 @@ public abstract class Controller
 		out.println("	REMOVE [callsign | -all]");
 		out.println("	SCHEDULE [-load filename | -clear | -print]");
 		out.println("	LOGGING [-on output_directory | -off]");
+		out.println("	JOURNAL [-on filename | -off]");
 		out.println("	TIME");
 		out.println("	STATS");
 		out.println("	HELP");
@@ -370,6 +450,20 @@ public abstract class Controller
 		out.println("Successfully removed all aircraft!");
 	}
 	
+	public static void startJournal(String filename)
+	{
+		try
+		{
+			Simulator.getInstance().startJournal(new File(filename));
+		} 
+		catch (IOException | IllegalStateException e)
+		{
+			out.println("ERROR: " + e.getMessage());
+			return;
+		}
+		out.println("Journal started!");
+	}
+	
 	public static void loadSchedule(String filename)
 	{
 		try
@@ -392,7 +486,7 @@ public abstract class Controller
 	public interface Input
 	{
 		/**
-		 * @return Reads the next line or waits for input
+		 * @return Reads the next line or waits for input, null if there is no more input or the thread is interrupted
 		 */
 		public String nextLine();
 	}
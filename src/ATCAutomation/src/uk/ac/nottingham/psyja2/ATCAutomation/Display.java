@@ -110,7 +110,9 @@ public class Display extends JFrame
 					Thread.sleep(1);
 				} catch (InterruptedException e)
 				{
-					e.printStackTrace();
+					// Stop waiting for a command
+					Thread.currentThread().interrupt();
+					return null;
 				}
 			}
 			available = false;
@@ -26,6 +26,16 @@ public abstract class GraphBuilder
 	 * @return a map of node names to their node objects
 	 */
 	public static Map<String, SpatialNode> buildGraph(Scenario scenario, IGraph graph)
+	{
+		return buildGraph(scenario, graph, Preferences.INTERMEDIATE_SPACING);
+	}
+	
+	/**
+	 * Build a graph from a scenario, splitting airways into legs no longer than the given spacing
+	 * @param intermediateSpacing the spacing between intermediate nodes (see Preferences.INTERMEDIATE_SPACING)
+	 * @return a map of node names to their node objects
+	 */
+	public static Map<String, SpatialNode> buildGraph(Scenario scenario, IGraph graph, int intermediateSpacing)
 	{
 		/******************************************
 		 * PART 1.
@@ -256,13 +266,13 @@ public abstract class GraphBuilder
 				{
 					double distance = calculateDistance(a1.location.getLatitude(), a1.location.getLongitude(),
 							a2.location.getLatitude(), a2.location.getLongitude());
-					if(distance > Preferences.INTERMEDIATE_SPACING * 18520)
+					if(distance > intermediateSpacing * 18520)
 					{
 						// Airway needs to be split into sections
 						// Calculate how many sections (legs) there should be
 						double legLength = distance / 2D;
 						int numberLegs = 2;
-						while(legLength > Preferences.INTERMEDIATE_SPACING * 18520)
+						while(legLength > intermediateSpacing * 18520)
 						{
 							numberLegs *= 2;
 							legLength /= 2;
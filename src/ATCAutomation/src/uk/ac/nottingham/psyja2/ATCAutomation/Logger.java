@@ -7,19 +7,24 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.TimeZone;
 
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager.RecalculatePathsListener;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.ReservationTable;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.WHCAStar;
 import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
-import uk.ac.nottingham.psyja2.ATCSimulator.ConflictListener;
-import uk.ac.nottingham.psyja2.ATCSimulator.Instruction;
 import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEvent;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEventBus;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEventListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
 import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
 
-public class Logger implements RecalculatePathsListener, ConflictListener
+public class Logger implements RecalculatePathsListener, SimulatorEventListener, TickListener
 {
 	
 	private LoggerRunnable runnable;
@@ -27,12 +32,18 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 	private File outputDirectory;
 	private long loggerStartTime;
 	private int conflictCount = 0;
+	private double nextRecordTime = 0; // next simulator time to record positions at (fast time only)
 	
 	public Logger(File outputDirectory)
 	{
 		setOutputDirectory(outputDirectory);
 		Controller.agentManager.addRecalculatePathsListener(this);
-		Simulator.getInstance().addConflictListener(this);
+		// Conflict logs are written on the event bus thread, so they don't hold up the simulator
+		Simulator.getInstance().getEventBus().addListener(SimulatorEventBus.CONFLICTS, this);
+		
+		// In fast time positions are recorded every simulated second, rather than every real second
+		if(Simulator.getInstance().isFastTime())
+			Simulator.getInstance().addTickListener(this);
 	}
 	
 	public void startLogger()
@@ -40,18 +51,43 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 		conflictCount = 0;
 		loggerStartTime = System.currentTimeMillis();
 		runnable = new LoggerRunnable();
-		thread = new Thread(runnable);		
-		thread.setName("Logger");
-		thread.start();
+		if(Simulator.getInstance().isFastTime())
+		{
+			runnable.open();
+			nextRecordTime = Simulator.getInstance().getTime();
+		}
+		else
+		{
+			thread = new Thread(runnable);		
+			thread.setName("Logger");
+			thread.start();
+		}
 	}
 	
 	public void stopLogger()
 	{
+		// Let any conflict logs still queued be written
+		Simulator.getInstance().getEventBus().flush();
 		flush();
+		if(thread == null)
+		{
+			// Not threaded, write everything out now
+			runnable.update();
+		}
 		runnable.prioritiesOut.close();
 		runnable.running = false;
 	}
 	
+	@Override
+	public void tickEvent(double time)
+	{
+		if(runnable != null && runnable.running && time >= nextRecordTime)
+		{
+			nextRecordTime = time + 1; // 1 second
+			runnable.update();
+		}
+	}
+	
 	public void setOutputDirectory(File outputDirectory)
 	{
 		if(!outputDirectory.exists())
@@ -85,7 +121,7 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 	}
 	
 	@Override
-	public void conflictEvent(Aircraft aircraft1, Aircraft aircraft2)
+	public void simulatorEvent(SimulatorEvent event)
 	{
 		// A conflict occured, create a log file
 		if(runnable.running)
@@ -93,23 +129,34 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 			conflictCount++;
 			try
 			{
+				// Copy what the planner knows about the aircraft, waiting for it if it is part way through planning
+				String agentDetailsA;
+				String agentDetailsB;
+				ReservationTable reservationTable;
+				synchronized(Controller.agentManager.getPlanningLock())
+				{
+					agentDetailsA = getAgentDetails(event.getAircraftA().getAircraft());
+					agentDetailsB = getAgentDetails(event.getAircraftB().getAircraft());
+					reservationTable = Controller.agentManager.graph.copyReservationTable();
+				}
+				
 				// Create log file
 				PrintWriter conflictLog = new PrintWriter(outputDirectory.getAbsolutePath() + "/conflict" + conflictCount + ".log");	
-				conflictLog.println("Conflict between " + aircraft1.getCallsign() + " and " + aircraft2.getCallsign());
+				conflictLog.println("Conflict between " + event.getAircraftA().getCallsign() + " and " + event.getAircraftB().getCallsign());
 				
 				// Write the time
 				SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
 				formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-			    String time = formatter.format(Simulator.getInstance().getTime() * 1000);
+			    String time = formatter.format(event.getTime() * 1000);
 				conflictLog.println("Time = " + time);
 				conflictLog.println();
 				
-				// Write aircraft + agent details
-				writeAircraftConflictDetails(conflictLog, aircraft1);
-				writeAircraftConflictDetails(conflictLog, aircraft2);
+				// Write aircraft + agent details, the aircraft as they were at the conflict
+				writeAircraftConflictDetails(conflictLog, event.getAircraftA(), agentDetailsA);
+				writeAircraftConflictDetails(conflictLog, event.getAircraftB(), agentDetailsB);
 				
 				conflictLog.println("");
-				conflictLog.println(Controller.agentManager.graph.getReservationTableString());
+				conflictLog.println(WHCAStar.getReservationTableString(reservationTable));
 				
 				conflictLog.flush();
 				conflictLog.close();
@@ -121,42 +168,49 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 		}
 	}
 	
-	private static void writeAircraftConflictDetails(PrintWriter conflictLog, Aircraft aircraft)
+	private static void writeAircraftConflictDetails(PrintWriter conflictLog, AircraftState aircraft, String agentDetails)
 	{
 		// Aircraft 1 details
 		conflictLog.println("----- " + aircraft.getCallsign() + " -----");
-		conflictLog.println("Location = " + aircraft.getLocation().getLatitude() + ", " + aircraft.getLocation().getLongitude());
+		conflictLog.println("Location = " + aircraft.getLatitude() + ", " + aircraft.getLongitude());
 		conflictLog.println("Heading = " + aircraft.getHeading());
 		conflictLog.println("Altitude = " + aircraft.getAltitude());
 		conflictLog.println("Ground Speed = " + aircraft.getGroundSpeed());
 		conflictLog.println("Airborne Time = " + aircraft.getAirborneTime());
 		conflictLog.println();
 		conflictLog.println("Instructions:");
-		for(Instruction i : aircraft.getInstructions())
+		for(String i : aircraft.getInstructions())
 		{
 			conflictLog.println(i);
 		}
 		conflictLog.println();
+		conflictLog.print(agentDetails);
+		conflictLog.println();
+		conflictLog.println("---------------------------");
+		conflictLog.println();
+	}
+	
+	private static String getAgentDetails(Aircraft aircraft)
+	{
+		StringBuilder details = new StringBuilder();
 		for(Agent _agent : Controller.agentManager.getAgents())
 		{
 			AircraftAgent agent = (AircraftAgent) _agent;
 			if(agent.getAircraft().equals(aircraft))
 			{
-				conflictLog.println("Current Node = " + agent.getPosition());
-				conflictLog.println("Goal Node = " + agent.getGoal());
-				conflictLog.println("Agitation = " + agent.getPriority());
-				conflictLog.print("Node Queue = {");
+				details.append("Current Node = " + agent.getPosition() + "\n");
+				details.append("Goal Node = " + agent.getGoal() + "\n");
+				details.append("Agitation = " + agent.getPriority() + "\n");
+				details.append("Node Queue = {");
 				for(Node node : agent.nodeQueue)
 				{
-					conflictLog.print(node + ", ");
+					details.append(node + ", ");
 				}
-				conflictLog.print("}\n");
+				details.append("}\n");
 				break;
 			}
 		}
-		conflictLog.println();
-		conflictLog.println("---------------------------");
-		conflictLog.println();
+		return details.toString();
 	}
 	
 	class LoggerRunnable implements Runnable
@@ -173,6 +227,25 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 
 		@Override
 		public void run()
+		{
+			open();
+			
+			while(running || flush)
+			{
+				update();
+				
+				// Pause the thread
+				try
+				{
+					Thread.sleep(1000); // 1 second
+				} catch (InterruptedException e)
+				{
+					e.printStackTrace();
+				}
+			}			
+		}
+		
+		private void open()
 		{
 			// Create a priorities file
 			try
@@ -182,64 +255,58 @@ public class Logger implements RecalculatePathsListener, ConflictListener
 			{
 				e1.printStackTrace();
 			}
+		}
+		
+		private void update()
+		{
+			// Record the aircraft as they were at the end of the last update
+			WorldSnapshot snapshot = Simulator.getInstance().getSnapshot();
 			
-			while(running || flush)
+			// Generated a formatted date/time string
+			long time = (long) (loggerStartTime + (snapshot.getTime() * 1000));
+			Date dateObj = new Date(time);
+			SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss'.000Z'");
+			String dateStr = formatter.format(dateObj);
+			
+			// Loop through each aircraft
+			for(AircraftState state : snapshot.getAllAircraft())
 			{
-				// Generated a formatted date/time string
-				long time = (long) (loggerStartTime + (Simulator.getInstance().getTime() * 1000));
-				Date dateObj = new Date(time);
-				SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss'.000Z'");
-				String dateStr = formatter.format(dateObj);
-				
-				// Loop through each aircraft
-				for(Iterator<Aircraft> it = Simulator.getInstance().getAllAircraft().iterator(); it.hasNext();)
-				{
-					// Add an XML GPX entry to the list
-					Aircraft aircraft = it.next();
-					if(!recording.containsKey(aircraft))
-					{
-						recording.put(aircraft, new ArrayList<>());
-					}
-					String item = "<trkpt lat=\"" + aircraft.getLocation().getLatitude() + "\" lon=\"" + aircraft.getLocation().getLongitude() + 
-							"\"><ele>" + Logger.feetToMetres(aircraft.getAltitude()) + "</ele><time>" +
-							dateStr + "</time></trkpt>\n";
-					recording.get(aircraft).add(item);
-				}		
-				
-				// See if any aircraft in the recording has been removed - can flush the data to file
-				for(Aircraft aircraft : recording.keySet())
-				{
-					if(Simulator.getInstance().getAircraft(aircraft.getCallsign()) == null)
-					{
-						flush(aircraft);
-					}
-				}
-				
-				// See if the logger flush command was called
-				if(flush)
-				{
-					flush = false;
-					flush();
-				}
-				
-				// Flush any priorities to priorities.log
-				if(flushPriorities && prioritiesOut != null)
+				// Add an XML GPX entry to the list
+				Aircraft aircraft = state.getAircraft();
+				if(!recording.containsKey(aircraft))
 				{
-					flushPriorities = false;
-					prioritiesOut.write(priorities);
-					priorities = "";
-					prioritiesOut.flush();
+					recording.put(aircraft, new ArrayList<>());
 				}
-				
-				// Pause the thread
-				try
-				{
-					Thread.sleep(1000); // 1 second
-				} catch (InterruptedException e)
+				String item = "<trkpt lat=\"" + state.getLatitude() + "\" lon=\"" + state.getLongitude() + 
+						"\"><ele>" + Logger.feetToMetres(state.getAltitude()) + "</ele><time>" +
+						dateStr + "</time></trkpt>\n";
+				recording.get(aircraft).add(item);
+			}		
+			
+			// See if any aircraft in the recording has been removed - can flush the data to file
+			for(Aircraft aircraft : recording.keySet())
+			{
+				if(snapshot.getAircraft(aircraft) == null)
 				{
-					e.printStackTrace();
+					flush(aircraft);
 				}
-			}			
+			}
+			
+			// See if the logger flush command was called
+			if(flush)
+			{
+				flush = false;
+				flush();
+			}
+			
+			// Flush any priorities to priorities.log
+			if(flushPriorities && prioritiesOut != null)
+			{
+				flushPriorities = false;
+				prioritiesOut.write(priorities);
+				priorities = "";
+				prioritiesOut.flush();
+			}
 		}
 		
 		private void flush()
@@ -1,7 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCAutomation;
 
 import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager;
 import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
 
 public class Main
@@ -12,6 +14,7 @@ public class Main
 	{
 	
 		float simSpeed = 0.0f;
+		boolean headless = false;
 		if(args.length > 0)
 		{
 			// Read scenario file
@@ -49,10 +52,26 @@ public class Main
 						Controller.scheduleArg = args[6];
 						Controller.logArg = args[7];
 						simSpeed = Float.valueOf(args[8]);
-						if(args.length == 10)
+						for(int i = 9; i < args.length; i++)
 						{
-							if(args[9].equalsIgnoreCase("-exit"))
+							if(args[i].equalsIgnoreCase("-exit"))
 								Controller.exitOnFinish = true;
+							else if(args[i].equalsIgnoreCase("-headless"))
+								headless = true;
+							else if(args[i].equalsIgnoreCase("-fast"))
+								Simulator.FAST_TIME = true;
+							else if(args[i].equalsIgnoreCase("-events"))
+								Simulator.EVENT_DRIVEN = true;
+							else if(args[i].equalsIgnoreCase("-swept"))
+								Simulator.SWEPT_CONFLICTS = true;
+							else if(args[i].equalsIgnoreCase("-pipeline"))
+								Simulator.PIPELINED = true;
+							else if(args[i].toLowerCase().startsWith("-threads="))
+								Simulator.PROPAGATION_THREADS = Integer.valueOf(args[i].substring("-threads=".length()));
+							else if(args[i].toLowerCase().startsWith("-planners="))
+								AgentManager.PLANNING_THREADS = Integer.valueOf(args[i].substring("-planners=".length()));
+							else if(args[i].toLowerCase().startsWith("-journal="))
+								Controller.journalArg = args[i].substring("-journal=".length());
 						}
 							
 					}
@@ -78,9 +97,22 @@ public class Main
 		
 		Preferences.printPreferences();
 		
+		// Without a GUI, stop AWT from looking for a screen
+		if(Simulator.FAST_TIME || headless)
+		{
+			System.setProperty("java.awt.headless", "true");
+		}
+		
 		Simulator.getInstance();
 		Simulator.getInstance().setTimeSpeed(simSpeed);
-
+		
+		if(Simulator.FAST_TIME || headless || GraphicsEnvironment.isHeadless())
+		{
+			// No GUI, use the console instead
+			ConsoleIO console = new ConsoleIO();
+			Controller.start(Simulator.SCENARIO_FILE, console, console);
+			return;
+		}
 		
 		EventQueue.invokeLater(new Runnable() {
 
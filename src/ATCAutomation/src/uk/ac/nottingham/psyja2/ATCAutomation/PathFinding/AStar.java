@@ -1,40 +1,67 @@
 package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
 
+import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.TimeoutException;
 
 public class AStar implements IGraph
 {
 	
 	public long TIMEOUT = 10000L; // Milliseconds to time (0 indicates no timeout)
-	public static int numberOfNodesExplored = 0;
+	public long numberOfNodesExplored = 0; // Counted per graph, so graphs searched side by side don't share it
 	protected final Map<Node, List<Node>> adjacencyList;
-	protected final TreeSet<Node> openList;
-	protected final HashSet<Node> closedList;
-	protected int previousHashCode = 0;
+	private final ArrayList<Node> nodesById; // Node ids are their index in this graph
 	private int numberOfEdges = 0;
+	private boolean nodesShared = false; // Set once another graph searches the same nodes, they can't be changed after that
+	private int activeSearches = 0; // The graph can't be changed while it is being searched
+	private final ArrayDeque<SearchContext> contextPool = new ArrayDeque<>();
 	
 	public AStar()
 	{
 		// Initialise the adjacency list
 		adjacencyList = new HashMap<Node, List<Node>>();
-		
-		// Initialise the open + closed lists
-		openList = new TreeSet<Node>();
-		closedList = new HashSet<Node>();
+		nodesById = new ArrayList<>();
+	}
+	
+	/**
+	 * Search the nodes of another graph, which can't be changed from then on.
+	 * Each graph keeps its own searches (and anything a subclass keeps about them, eg. reservations),
+	 * so graphs sharing the same nodes can be searched side by side
+	 */
+	protected AStar(AStar graph)
+	{
+		synchronized(graph)
+		{
+			graph.nodesShared = true;
+			adjacencyList = graph.adjacencyList;
+			nodesById = graph.nodesById;
+			numberOfEdges = graph.numberOfEdges;
+		}
+		nodesShared = true;
 	}
 	
 	@Override
-	public void addNode(Node node, List<Node> connected)
+	public synchronized void addNode(Node node, List<Node> connected)
 	{
+		if(activeSearches > 0)
+			throw new IllegalStateException("The graph can't be changed while it is being searched");
+		if(nodesShared)
+			throw new IllegalStateException("The nodes of a shared graph can't be changed");
+		
 		// Keep a reference to this graph, inside the node
 		node.graph = this;
 		
+		// Give the node an id in this graph (unless it already has one)
+		if(node.id < 0 || node.id >= nodesById.size() || nodesById.get(node.id) != node)
+		{
+			node.id = nodesById.size();
+			nodesById.add(node);
+		}
+		
 		// Add the node to the adjacency list
 		adjacencyList.put(node, connected);
 		
@@ -54,6 +81,22 @@ public class AStar implements IGraph
 		}
 	}
 	
+	/**
+	 * Returns the node with the given id in this graph
+	 */
+	public Node getNode(int id)
+	{
+		return nodesById.get(id);
+	}
+	
+	/**
+	 * Returns one more than the highest node id in this graph
+	 */
+	int getNumberOfIds()
+	{
+		return nodesById.size();
+	}
+	
 	@Override
 	public int getCardinality()
 	{
@@ -97,106 +140,170 @@ public class AStar implements IGraph
 		return builder.toString();
 	}	
 	
+	/**
+	 * Find a path using a search context from this graph's pool
+	 */
+	public Path findPath(Node from, Node to) throws Exception
+	{
+		SearchContext context = acquireContext();
+		try
+		{
+			return findPath(from, to, context);
+		}
+		finally
+		{
+			releaseContext(context);
+		}
+	}
+	
 	// Credit:
 	// https://en.wikipedia.org/wiki/A%2a_search_algorithm#Pseudocode
-	public Path findPath(Node from, Node to) throws Exception
+	/**
+	 * Find a path, keeping all the search values in the given context so other searches of this graph can run at the same time.
+	 * The g() values of the path's nodes can be read from the context afterwards
+	 */
+	public Path findPath(Node from, Node to, SearchContext context) throws Exception
 	{
 		long startTime = System.currentTimeMillis();
 		
-		// Clear the open and closed lists
-		openList.clear();
-		closedList.clear();
-		
-		// Calculate the g + h values for the from node
-		from.g = 0;
-		from.h = from.getHeuristicTo(to);
-		
-		// Put starting node on the open list
-		openList.add(from);
-		
-		// While the open list is not empty
-		Node current;
-		while(!openList.isEmpty())
+		synchronized(this)
 		{
-			// Pop the node with lowest f() from the open list
-			current = openList.pollFirst();
+			activeSearches++;
+		}
+		try
+		{
+			// Clear the open and closed lists
+			context.start(this);
+			
+			// Calculate the g + h values for the from node (and make sure its previous node isn't left over from another search)
+			context.setPrevious(from, null);
+			context.setG(from, 0);
+			context.setH(from, getHeuristic(context, from, to));
 			
-			// If current is the goal, stop the search
-			if(current.equals(to))
+			// Put starting node on the open list
+			context.addToOpenList(from);
+			context.markLists();
+			
+			// While the open list is not empty
+			Node current;
+			while(!context.isOpenListEmpty())
 			{
-				// Stop the search and return the path
-				return constructPath(from, to);
-			}
-
-			// Loop through the successor nodes to the current node
-			for(Node successor : getSuccessors(current))
-			{						
-				// Calculate g, h and time values
-				double g = current.g + getCost(current, successor);
-				double h = getHeuristic(successor, to);
+				// Pop the node with lowest f() from the open list
+				current = context.pollOpenList();
 				
-				if(!openList.contains(successor) && !closedList.contains(successor))
-				{	
-					// The successor has not been found yet, add it to the open list
-					if(!successor.equals(current))
-					{
-						successor.previous = current;
-					}
-					successor.g = g;
-					successor.h = h;				
-					openList.add(successor);
-				}
-				else if(openList.contains(successor) && g + h < successor.f())
+				// If current is the goal, stop the search
+				if(current.equals(to))
 				{
-					// A better route to has been found, update the g and h values
-					openList.remove(successor);
-					if(!successor.equals(current))
+					// Stop the search and return the path
+					return constructPath(context, from, to);
+				}
+	
+				// Loop through the successor nodes to the current node
+				for(Node successor : getSuccessors(context, current))
+				{						
+					// Calculate g, h and time values
+					double g = context.getG(current) + getCost(context, current, successor);
+					double h = getHeuristic(context, successor, to);
+					
+					boolean open = context.isOnOpenList(successor);
+					if(!open && !context.isOnClosedList(successor))
+					{	
+						// The successor has not been found yet, add it to the open list
+						if(!successor.equals(current))
+						{
+							context.setPrevious(successor, current);
+						}
+						context.setG(successor, g);
+						context.setH(successor, h);
+						context.addToOpenList(successor);
+					}
+					else if(open && g + h < context.getF(successor))
 					{
-						successor.previous = current;
+						// A better route to has been found, update the g and h values and move it up the heap
+						if(!successor.equals(current))
+						{
+							context.setPrevious(successor, current);
+						}
+						context.setG(successor, g);
+						context.setH(successor, h);
+						context.addToOpenList(successor);
 					}
-					successor.g = g;
-					successor.h = h;
-					openList.add(successor);
+					
+					context.nodesExplored++;
 				}
 				
-				numberOfNodesExplored++;
+				// Push the current node to the closed list
+				closeNode(context, current);
+				
+				// Check for deadlocks
+				if(isInDeadlock(context))
+				{
+					// throw an exception
+					throw new DeadlockException();
+				}		
+				// Check for timeout
+				if(TIMEOUT > 0 && startTime + TIMEOUT < System.currentTimeMillis())
+				{
+					// throw an exception
+					throw new TimeoutException("Search timeout");
+				}
 			}
 			
-			// Push the current node to the closed list
-			closeNode(current);
-			
-			// Check for deadlocks
-			if(isInDeadlock())
-			{
-				// throw an exception
-				throw new DeadlockException();
-			}		
-			// Check for timeout
-			if(TIMEOUT > 0 && startTime + TIMEOUT < System.currentTimeMillis())
+			throw new NoPathFoundException();
+		}
+		finally
+		{
+			synchronized(this)
 			{
-				// throw an exception
-				throw new TimeoutException("Search timeout");
+				activeSearches--;
+				numberOfNodesExplored += context.nodesExplored;
 			}
 		}
-		
-		throw new NoPathFoundException();
+	}
+	
+	/**
+	 * Take a search context from the pool, or make a new one if they are all in use
+	 */
+	protected synchronized SearchContext acquireContext()
+	{
+		SearchContext context = contextPool.poll();
+		if(context == null)
+			context = new SearchContext();
+		context.setAgent(null);
+		return context;
+	}
+	
+	/**
+	 * Give a search context back to the pool, once its search has finished
+	 */
+	protected synchronized void releaseContext(SearchContext context)
+	{
+		contextPool.push(context);
+	}
+	
+	/**
+	 * Returns the nodes that can be moved to from a node during a search (by default, all the connected nodes)
+	 */
+	protected List<Node> getSuccessors(SearchContext context, Node node)
+	{
+		return getSuccessors(node);
 	}
 	
 	/*
 	 * Re-constructs a path from the labeled nodes (returns it in reverse order)
 	 */
-	protected Path constructPath(Node from, Node to)
+	protected Path constructPath(SearchContext context, Node from, Node to)
 	{
 		Path path = new Path();
 		Node current = to;
-		while(current.previous != null)
+		while(context.getPrevious(current) != null)
 		{
-			path.addToPath(current);
-			current = current.previous;
+			path.addToPath(current, context.getG(current));
+			current = context.getPrevious(current);
 			if(current.equals(from))
 				break;
 		}
-		path.addToPath(from);
+		path.addToPath(from, context.getG(from));
 		path.reverse();
 		return path;
 	}
@@ -204,16 +311,16 @@ public class AStar implements IGraph
 	/*
 	 * Called when the A* algorithm is about to put a node on the closed list
 	 */
-	protected void closeNode(Node node)
+	protected void closeNode(SearchContext context, Node node)
 	{
 		// Push the current node to the closed list
-		closedList.add(node);
+		context.addToClosedList(node);
 	}
 	
 	/**
 	 * Get the heuristic cost h() between these two nodes
 	 */
-	protected double getHeuristic(Node from, Node to)
+	protected double getHeuristic(SearchContext context, Node from, Node to)
 	{
 		return from.getHeuristicTo(to);
 	}
@@ -221,19 +328,21 @@ public class AStar implements IGraph
 	/**
 	 * Get the actual cost g() between these two nodes
 	 */
-	protected double getCost(Node from, Node to)
+	protected double getCost(SearchContext context, Node from, Node to)
 	{
 		return from.getCostTo(to);
 	}
 	
-	protected boolean isInDeadlock()
+	/**
+	 * Returns true if the last expansion left the open and closed lists exactly as they were, so the search can't get any further
+	 */
+	protected boolean isInDeadlock(SearchContext context)
 	{
-		int hashCode = (closedList.hashCode() / 2) + openList.hashCode();
-		if(previousHashCode == hashCode)
+		if(context.listsUnchanged())
 		{
 			return true;
 		}
-		previousHashCode = hashCode;	
+		context.markLists();
 		return false;
 	}
 	
@@ -2,7 +2,12 @@ package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
 
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AStar.DeadlockException;
@@ -11,22 +16,95 @@ import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AStar.NoPathFoundExcept
 public class AgentManager
 {
 
+	public static int PLANNING_THREADS = 1; // The number of planning threads new agent managers use
+	
 	protected ArrayList<Agent> agents;
 	public WHCAStar graph;
 	private Thread agentManagerThread;
 	private AgentManagerRunnable agentManagerThreadRunnable;
 	private ArrayList<RecalculatePathsListener> listeners = new ArrayList<>();
+	private volatile long planningTime = 0; // Total time spent recalculating paths (in nanoseconds)
+	private final SearchContext searchContext = new SearchContext();
+	private int planningThreads = 1;
+	private ExecutorService planners; // Plans groups of agents at the same time, if there is more than one planning thread
+	private volatile int largestGroup = 0; // The most agents planned together in the last recalculation
+	private volatile double currentTime = 0; // The time paths are planned from, in the graph's units
+	private final ArrayList<Agent> removedAgents = new ArrayList<>(); // Agents removed since the last recalculation, whose reservations are still in the table
 	
 	public AgentManager(WHCAStar graph)
+	{
+		this(graph, true);
+	}
+	
+	/**
+	 * @param graph the graph to plan paths on
+	 * @param threaded if false, no planning thread is started and paths are only
+	 * recalculated when {@link #update()} is called (eg. by a fast time simulator clock)
+	 */
+	public AgentManager(WHCAStar graph, boolean threaded)
 	{
 		this.graph = graph;
 		this.agents = new ArrayList<>();
 		
 		// Init thread
 		agentManagerThreadRunnable = new AgentManagerRunnable();
-		agentManagerThread = new Thread(agentManagerThreadRunnable);
-		agentManagerThread.setName("Agent Manager");
-		agentManagerThread.start();
+		if(threaded)
+		{
+			agentManagerThread = new Thread(agentManagerThreadRunnable);
+			agentManagerThread.setName("Agent Manager");
+			agentManagerThread.start();
+		}
+		setPlanningThreads(PLANNING_THREADS);
+	}
+	
+	/**
+	 * Set the number of threads paths are planned on.<br>
+	 * With more than one, the agents are split into groups that can't affect each other's reservations
+	 * within the window (see {@link WHCAStar#canInteract(Agent, Node, Agent, Node)}) and the groups are planned
+	 * at the same time, each in priority order. The paths are the same as planning every agent in turn
+	 */
+	public synchronized void setPlanningThreads(int threads)
+	{
+		synchronized(agentManagerThreadRunnable)
+		{
+			if(planners != null)
+			{
+				planners.shutdown();
+				planners = null;
+			}
+			planningThreads = Math.max(1, threads);
+			if(planningThreads > 1)
+			{
+				planners = Executors.newFixedThreadPool(planningThreads, new ThreadFactory() {
+					
+					private int count = 0;
+	
+					@Override
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable);
+						thread.setName("Agent Planner " + (++count));
+						thread.setDaemon(true);
+						return thread;
+					}
+					
+				});
+			}
+		}
+	}
+	
+	public int getPlanningThreads()
+	{
+		return planningThreads;
+	}
+	
+	/**
+	 * Returns the number of agents in the largest group planned together in the last recalculation
+	 * (all the agents still moving, when there is only one planning thread)
+	 */
+	public int getLargestGroupSize()
+	{
+		return largestGroup;
 	}
 	
 	/**
@@ -38,6 +116,21 @@ public class AgentManager
 		return graph.getWindowSize() / 2; // K = W / 2
 	}
 	
+	public double getTime()
+	{
+		return currentTime;
+	}
+	
+	/**
+	 * Set the current time, in the graph's units (eg. hours for a spatial graph).<br>
+	 * Paths are planned from the time of the last call, and reservations that ended before it are dropped
+	 * from the reservation table when paths are next recalculated
+	 */
+	public void setTime(double time)
+	{
+		currentTime = time;
+	}
+	
 	/**
 	 * Add an agent to the system
 	 * @param agent
@@ -62,11 +155,21 @@ public class AgentManager
 	 */
 	public synchronized void removeAgent(Agent agent)
 	{
-		agents.remove(agent);
+		if(agents.remove(agent))
+		{
+			synchronized(removedAgents)
+			{
+				removedAgents.add(agent);
+			}
+		}
 	}
 	
-	public void removeAllAgents()
+	public synchronized void removeAllAgents()
 	{
+		synchronized(removedAgents)
+		{
+			removedAgents.addAll(agents);
+		}
 		agents.clear();
 	}
 	
@@ -88,6 +191,41 @@ public class AgentManager
 		agentManagerThreadRunnable.invalidated = true;
 	}
 	
+	/**
+	 * Replan one agent straight away on the calling thread, around the other agents' existing reservations.
+	 * Its old reservations are released and replaced by the reservations of its new path
+	 */
+	public void recalculatePath(Agent agent)
+	{
+		agentManagerThreadRunnable.recalculatePath(agent);
+	}
+	
+	/**
+	 * Recalculate the paths on the calling thread if they have been invalidated.
+	 * Used to drive an agent manager that was created without its own thread
+	 */
+	public void update()
+	{
+		agentManagerThreadRunnable.update();
+	}
+	
+	/**
+	 * Returns the lock held while paths are recalculated.
+	 * Hold it to read the agents and the reservation table from another thread without them changing
+	 */
+	public Object getPlanningLock()
+	{
+		return agentManagerThreadRunnable;
+	}
+	
+	/**
+	 * Returns the total time spent recalculating paths (in milliseconds)
+	 */
+	public double getPlanningTime()
+	{
+		return planningTime / 1000000D;
+	}
+	
 	private class AgentManagerRunnable implements Runnable
 	{
 
@@ -99,24 +237,38 @@ public class AgentManager
 		{
 			while(running)
 			{
-				// See if all paths have been invalidated (eg. new aircraft has been added!)
-				if(invalidated)
-				{
-					invalidated = false;
-					recalculatePaths();
-				}
+				update();
+			}
+		}
+		
+		private void update()
+		{
+			// See if all paths have been invalidated (eg. new aircraft has been added!)
+			if(invalidated)
+			{
+				invalidated = false;
+				recalculatePaths();
 			}
 		}
 		
 		private synchronized void recalculatePaths()
 		{
-			// Reset the reservation table
-			graph.resetReservationTable();
+			long startTime = System.nanoTime();
+			
+			// Drop the reservations that have ended
+			graph.setCurrentTime(currentTime);
 			
 			// Sort the list of agents by agitation level
 			Agent agentsSorted[] = agents.toArray(new Agent[0]);
 			Arrays.sort(agentsSorted);
 			
+			// Every agent is replanned, so release all their reservations (and those of agents that have gone)
+			for(Agent agent : agentsSorted)
+			{
+				graph.releaseReservations(agent);
+			}
+			releaseRemovedAgents();
+			
 			// Fire the recalculate paths listeners
 			for(RecalculatePathsListener listener : listeners)
 			{
@@ -127,38 +279,149 @@ public class AgentManager
 			for(Agent agent : agentsSorted)
 			{
 				if(!agent.isAtGoal())
-					graph.reserveNodeAtTime(agent.getPosition(), -graph.getReservationTime());
+					graph.reserveNodeAtTime(agent.getPosition(), -graph.getReservationTime(), agent);
 			}			
-			HashMap<Agent, Path> calculatedPaths = new HashMap<>();
+			// Plan the agents, in groups that can't affect each other if there are threads to plan them at the same time
+			final Path calculatedPaths[] = new Path[agentsSorted.length];
+			List<int[]> groups = planningThreads > 1 ? findGroups(agentsSorted) : null;
+			if(groups == null || groups.size() == 1)
+			{
+				int all[] = new int[agentsSorted.length];
+				for(int i = 0; i < all.length; i++)
+				{
+					all[i] = i;
+				}
+				largestGroup = planGroup(agentsSorted, groups == null ? all : groups.get(0), calculatedPaths, searchContext);
+			}
+			else
+			{
+				int largest = 0;
+				List<Future<?>> futures = new ArrayList<>();
+				for(final int group[] : groups)
+				{
+					largest = Math.max(largest, group.length);
+					futures.add(planners.submit(new Runnable() {
+
+						@Override
+						public void run()
+						{
+							SearchContext context = graph.acquireContext();
+							try
+							{
+								planGroup(agentsSorted, group, calculatedPaths, context);
+							}
+							finally
+							{
+								graph.releaseContext(context);
+							}
+						}
+						
+					}));
+				}
+				largestGroup = largest;
+				try
+				{
+					for(Future<?> future : futures)
+					{
+						future.get();
+					}
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				} catch (ExecutionException e)
+				{
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			
+			// Run all the calculated paths, in priority order
+			for(int i = 0; i < agentsSorted.length; i++)
+			{
+				Path path = calculatedPaths[i];
+				if(path != null)
+				{
+					agentsSorted[i].runPath(path);
+				}
+			}
+			
+			planningTime += System.nanoTime() - startTime;
+		}
+		
+		private synchronized void recalculatePath(Agent agent)
+		{
+			long startTime = System.nanoTime();
+			graph.setCurrentTime(currentTime);
+			graph.releaseReservations(agent);
+			releaseRemovedAgents();
+			
+			Path calculatedPaths[] = new Path[1];
+			if(!agent.isAtGoal())
+			{
+				graph.reserveNodeAtTime(agent.getPosition(), -graph.getReservationTime(), agent);
+				planGroup(new Agent[] { agent }, new int[] { 0 }, calculatedPaths, searchContext);
+			}
+			if(calculatedPaths[0] != null)
+			{
+				agent.runPath(calculatedPaths[0]);
+			}
 			
+			planningTime += System.nanoTime() - startTime;
+		}
+		
+		private void releaseRemovedAgents()
+		{
+			synchronized(removedAgents)
+			{
+				for(Agent agent : removedAgents)
+				{
+					graph.releaseReservations(agent);
+				}
+				removedAgents.clear();
+			}
+		}
+		
+		/**
+		 * Plan the paths of a group of agents, one after another
+		 * @param agentsSorted all the agents, in priority order
+		 * @param group the indexes of the agents in the group, in priority order
+		 * @param calculatedPaths where to put each agent's path, by index
+		 * @return the number of agents that needed a path
+		 */
+		private int planGroup(Agent agentsSorted[], int group[], Path calculatedPaths[], SearchContext searchContext)
+		{
 			// Loop through the agents, starting with the highest agitation level
-			for(Agent agent : agentsSorted)
-			{						
+			int planned = 0;
+			for(int index : group)
+			{
+				Agent agent = agentsSorted[index];
+				
 				// See if the agent has reached it's goal
 				if(agent.isAtGoal())
 				{
 					continue;
 				}
+				planned++;
 				
 				// Calculate a path within the moving phase (K) size
-				graph.setAgent(agent);
+				searchContext.setAgent(agent);
 
 				try
 				{
-					Path path = graph.findPath(agent.getPosition(), agent.getGoal());
+					Path path = graph.findPath(agent.getPosition(), agent.getGoal(), searchContext);
 					
 					// Trim the path to the moving phase (K) size
 					Path trimmedPath = new Path();
-					for(Node node : path)
+					for(int i = 0; i < path.getPathLength(); i++)
 					{
-						if(node.g <= getMovingPhaseLength())
+						if(path.getTime(i) <= getMovingPhaseLength())
 						{
-							trimmedPath.addToPath(node);
+							trimmedPath.addToPath(path.getNode(i), path.getTime(i));
 						}
 					}
 					
 					// Save the path
-					calculatedPaths.put(agent, trimmedPath);
+					calculatedPaths[index] = trimmedPath;
 				}
 				catch (Exception ex)
 				{
@@ -169,21 +432,79 @@ public class AgentManager
 						// and tell the agent to wait at it's current location
 						Path path = new Path();
 						path.addToPath(agent.getPosition());
-						calculatedPaths.put(agent, path);
-						graph.reserveNodeAtTime(agent.getPosition(), agent.getPosition().g);
+						calculatedPaths[index] = path;
+						graph.reserveNodeAtTime(agent.getPosition(), searchContext.getG(agent.getPosition()), agent);
+					}
+				}
+			}
+			return planned;
+		}
+		
+		/**
+		 * Split the agents still moving into groups, so no agent can interact with an agent in another group.
+		 * Agents that can interact are joined in a union-find forest, each tree is a group
+		 * @return the indexes of the agents in each group in priority order, the groups are in the order of their highest priority agent
+		 */
+		private List<int[]> findGroups(Agent agentsSorted[])
+		{
+			int n = agentsSorted.length;
+			Node positions[] = new Node[n];
+			int parents[] = new int[n];
+			for(int i = 0; i < n; i++)
+			{
+				parents[i] = i;
+				if(!agentsSorted[i].isAtGoal())
+					positions[i] = agentsSorted[i].getPosition();
+			}
+			for(int i = 0; i < n; i++)
+			{
+				for(int j = i + 1; j < n && positions[i] != null; j++)
+				{
+					if(positions[j] != null && graph.canInteract(agentsSorted[i], positions[i], agentsSorted[j], positions[j]))
+					{
+						// Join the trees, keeping the highest priority agent as the root
+						int rootI = findRoot(parents, i);
+						int rootJ = findRoot(parents, j);
+						parents[Math.max(rootI, rootJ)] = Math.min(rootI, rootJ);
 					}
 				}
 			}
 			
-			// Run all the calculated paths
-			for(Agent agent : calculatedPaths.keySet())
+			// Collect the groups, the root of each tree comes first in the priority order so starts its group
+			int sizes[] = new int[n];
+			for(int i = 0; i < n; i++)
 			{
-				Path path = calculatedPaths.get(agent);
-				if(path != null)
+				if(positions[i] != null)
+					sizes[findRoot(parents, i)]++;
+			}
+			List<int[]> groups = new ArrayList<>();
+			int groupOf[] = new int[n];
+			int filled[] = new int[n];
+			for(int i = 0; i < n; i++)
+			{
+				if(positions[i] == null)
+					continue;
+				int root = findRoot(parents, i);
+				if(root == i)
 				{
-					agent.runPath(path);
+					groupOf[i] = groups.size();
+					groups.add(new int[sizes[i]]);
 				}
+				int group = groupOf[root];
+				groups.get(group)[filled[group]++] = i;
+			}
+			return groups;
+		}
+		
+		private int findRoot(int parents[], int i)
+		{
+			while(parents[i] != i)
+			{
+				// Halve the path as we go, so later finds are quicker
+				parents[i] = parents[parents[i]];
+				i = parents[i];
 			}
+			return i;
 		}
 		
 	}
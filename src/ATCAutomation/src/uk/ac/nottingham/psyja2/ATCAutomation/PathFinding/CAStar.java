@@ -1,49 +1,101 @@
 package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
 public class CAStar extends AStar
 {
 
-	protected HashMap<Node, HashSet<Double[]>> reservationTable = new HashMap<>();
+	// Shared by searches on other threads, it does its own locking.
+	// Reservations are kept at absolute times, so they stay valid from one search to the next
+	protected final ReservationTable reservationTable = new ReservationTable();
+	
+	// The time searches start from, the times of a search are relative to it
+	private volatile double currentTime = 0;
+	
+	public CAStar()
+	{
+	}
+	
+	/**
+	 * Search the nodes of another graph, with a reservation table of its own
+	 */
+	protected CAStar(CAStar graph)
+	{
+		super(graph);
+	}
 	
 	public void resetReservationTable()
 	{
 		reservationTable.clear();
 	}
 	
+	/**
+	 * Returns a copy of the reservation table, which can be read on another thread while paths are planned
+	 */
+	public ReservationTable copyReservationTable()
+	{
+		return reservationTable.copy();
+	}
+	
+	/**
+	 * Returns an estimate of the memory used by the reservation table, in bytes
+	 */
+	public long getReservationTableMemoryUsage()
+	{
+		return reservationTable.getMemoryUsage();
+	}
+	
+	/**
+	 * Remove all the reservations made for an agent's path
+	 */
+	public void releaseReservations(Agent agent)
+	{
+		reservationTable.release(agent);
+	}
+	
+	public double getCurrentTime()
+	{
+		return currentTime;
+	}
+	
+	/**
+	 * Move the time searches start from on, dropping the reservations that ended before it.
+	 * The times passed to and found by searches are relative to the current time
+	 */
+	public void setCurrentTime(double time)
+	{
+		currentTime = time;
+		reservationTable.releaseBefore(time);
+	}
+	
 	protected boolean isNodeFreeAtTime(Node node, double time)
 	{
-		if(reservationTable.containsKey(node))
-		{
-			for(Double[] entry : reservationTable.get(node))
-			{
-				if(entry[0] <= time && entry[1] >= time)
-				{
-					return false;
-				}
-			}
-		}
-		return true;
+		return reservationTable.isFree(node, currentTime + time);
+	}
+	
+	/**
+	 * Returns true if all the nodes are free at the time
+	 */
+	protected boolean areNodesFreeAtTime(Node[] nodes, double time)
+	{
+		return reservationTable.areFree(nodes, currentTime + time);
 	}
 	
 	public void reserveNodeAtTime(Node node, double time)
+	{
+		reserveNodeAtTime(node, time, null);
+	}
+	
+	/**
+	 * Reserve a node for the reservation time around the given time, on behalf of an agent so it can be released later
+	 */
+	public void reserveNodeAtTime(Node node, double time, Agent agent)
 	{
 		if(node == null)
 			return;
-		if(reservationTable.containsKey(node))
-		{
-			reservationTable.get(node).add(new Double[] {time - (getReservationTime() / 2D), time + (getReservationTime() / 2D)});
-		}
-		else
-		{
-			HashSet<Double[]> times = new HashSet<>();
-			times.add(new Double[] {time - (getReservationTime() / 2D), time + (getReservationTime() / 2D)});
-			reservationTable.put(node, times);
-		}
+		time += currentTime;
+		reservationTable.reserve(node, time - (getReservationTime() / 2D), time + (getReservationTime() / 2D), agent);
 	}
 	
 	/**
@@ -56,18 +108,18 @@ public class CAStar extends AStar
 	}
 	
 	@Override
-	public List<Node> getSuccessors(Node node)
+	protected List<Node> getSuccessors(SearchContext context, Node node)
 	{
 		// Only return successors that are not occupied in the reservation table
 		ArrayList<Node> successors = new ArrayList<>();
 		for(Node successor : adjacencyList.get(node))
 		{
-			if(isNodeFreeAtTime(successor, node.g + getCost(node, successor)))
+			if(isNodeFreeAtTime(successor, context.getG(node) + getCost(context, node, successor)))
 			{
 				successors.add(successor);
 			}
 		}
-		if(isNodeFreeAtTime(node, node.g + getCost(node, node)))
+		if(isNodeFreeAtTime(node, context.getG(node) + getCost(context, node, node)))
 		{
 			// Add the option of 'waiting' on the same node
 			successors.add(node); 
@@ -80,25 +132,26 @@ public class CAStar extends AStar
 	 * CA* => Reserve all these nodes
 	 */
 	@Override
-	protected Path constructPath(Node from, Node to)
+	protected Path constructPath(SearchContext context, Node from, Node to)
 	{
 		Path path = new Path();
 		Node current = to;
-		path.addToPath(to);
+		path.addToPath(to, context.getG(to));
 		
-		while(current.previous != null)
+		while(context.getPrevious(current) != null)
 		{
 			// Build the path
-			double time = current.previous.g;
-			while(time < current.g)
+			Node previous = context.getPrevious(current);
+			double time = context.getG(previous);
+			while(time < context.getG(current))
 			{
-				reserveNodeAtTime(current, time);
-				path.addToPath(current);
-				time += getCost(current.previous, current);
+				reserveNodeAtTime(current, time, context.getAgent());
+				path.addToPath(current, context.getG(current));
+				time += getCost(context, previous, current);
 			}
 			
 			// Next node
-			current = current.previous;
+			current = previous;
 			if(current.equals(from))
 				break;
 		}
@@ -107,23 +160,24 @@ public class CAStar extends AStar
 	}
 	
 	@Override
-	protected void closeNode(Node node)
+	protected void closeNode(SearchContext context, Node node)
 	{
 		// Add the option of waiting
-		if(openList.isEmpty())
+		if(context.isOpenListEmpty())
 		{
 			// The search is abouts to fail.
 			// Increment the current node's time and try again - just need to be patient!
-			if(isNodeFreeAtTime(node, node.g + getCost(node, node)))
+			double time = context.getG(node) + getCost(context, node, node);
+			if(isNodeFreeAtTime(node, time))
 			{
-				node.g += getCost(node, node);
-				openList.add(node);
+				context.setG(node, time);
+				context.addToOpenList(node);
 			}
 		}
 		else
 		{
 			// Push the current node to the closed list
-			closedList.add(node);
+			context.addToClosedList(node);
 		}
 	}
 	
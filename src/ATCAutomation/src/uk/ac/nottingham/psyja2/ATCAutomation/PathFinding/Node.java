@@ -1,12 +1,12 @@
 package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
 
 
-public abstract class Node implements Comparable<Node>
+/**
+ * A node of a graph. The values a search gives each node are kept in its {@link SearchContext}
+ */
+public abstract class Node
 {
-	public double g = 0;
-	public double h = 0;
-	public int id = 0;
-	public Node previous;
+	public int id = -1; // Index of the node in its graph
 	protected IGraph graph;
 	
 	public abstract double getHeuristicTo(Node node);
@@ -15,22 +15,5 @@ public abstract class Node implements Comparable<Node>
 	
 	@Override
 	public abstract String toString();
-	
-	protected double f()
-	{
-		return g + h;
-	}
-    
-    @Override
-    public int compareTo(Node node) 
-    {
-        if (this.equals(node))
-            return 0;
-        if (this.f() < node.f())
-            return -1;
-        if (this.f() > node.f())
-            return 1;
-        return 1;
-    }
         
 }
\ No newline at end of file
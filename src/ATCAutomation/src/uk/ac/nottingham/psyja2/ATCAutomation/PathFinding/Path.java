@@ -8,20 +8,51 @@ public class Path implements Iterable<Node>
 {
 
 	protected ArrayList<Node> path;
+	protected ArrayList<Double> times; // The g() of each node when the path was found (NaN if not known)
 
 	public Path()
 	{
 		path = new ArrayList<Node>();
+		times = new ArrayList<Double>();
 	}
 	
 	public Path(ArrayList<Node> nodes)
 	{
 		path = nodes;
+		times = new ArrayList<Double>(Collections.nCopies(nodes.size(), Double.NaN));
+	}
+	
+	private Path(ArrayList<Node> nodes, ArrayList<Double> times)
+	{
+		path = nodes;
+		this.times = times;
 	}
 	
 	public void addToPath(Node node)
+	{
+		addToPath(node, Double.NaN);
+	}
+	
+	/**
+	 * Add a node to the path, with the time (g value) it is reached at
+	 */
+	public void addToPath(Node node, double time)
 	{
 		path.add(node);
+		times.add(time);
+	}
+	
+	public Node getNode(int index)
+	{
+		return path.get(index);
+	}
+	
+	/**
+	 * Returns the time (g value) the node at this index is reached at, or NaN if it isn't known
+	 */
+	public double getTime(int index)
+	{
+		return times.get(index);
 	}
 	
 	public int getPathLength()
@@ -32,11 +63,12 @@ public class Path implements Iterable<Node>
 	public void clearPath()
 	{
 		path.clear();
+		times.clear();
 	}
 	
 	public Path getSubPath(int startIndex, int endIndex)
 	{
-		return new Path((ArrayList<Node>) path.subList(startIndex, endIndex));
+		return new Path(new ArrayList<Node>(path.subList(startIndex, endIndex)), new ArrayList<Double>(times.subList(startIndex, endIndex)));
 	}
 	
 	public Path getSubPath(int endIndex)
@@ -47,6 +79,7 @@ public class Path implements Iterable<Node>
 	public void reverse()
 	{
 		Collections.reverse(path);
+		Collections.reverse(times);
 	}
 	
 	@Override
@@ -0,0 +1,340 @@
+package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The times each node is reserved, used by CA* so agents don't plan to use the same node at the same time.<br>
+ * The reservations of each node are kept in arrays indexed by node id, sorted by start time, alongside the
+ * latest end time of the reservations up to each one. A node is free at a time if the latest end of the
+ * reservations starting before it is earlier, so a lookup is a binary search.<br>
+ * Each reservation remembers the agent that made it, so all of an agent's reservations can be released at once,
+ * and reservations that have ended can be dropped as time moves on.
+ * All the methods are synchronized, so the table can be shared by searches on several threads
+ * @author Josh Argent
+ *
+ */
+public class ReservationTable
+{
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	// Reservations of each node, by node id, sorted by start time
+	private Node[] nodes = new Node[0];
+	private int[] counts = new int[0];
+	private double[][] starts = new double[0][];
+	private double[][] ends = new double[0][];
+	private double[][] latestEnds = new double[0][]; // The latest end time of the reservations up to and including each one
+	private Agent[][] owners = new Agent[0][];
+	private int size = 0;
+
+	// The nodes each agent has reserved (a node appears once for each reservation)
+	private HashMap<Agent, List<Node>> reservedBy = new HashMap<>();
+
+	/**
+	 * Reserve a node between two times
+	 * @param agent the agent making the reservation (or null if it is not for one agent)
+	 */
+	public synchronized void reserve(Node node, double start, double end, Agent agent)
+	{
+		if(node.id < 0)
+			throw new IllegalArgumentException("Node " + node + " is not in a graph");
+		int id = node.id;
+		ensureCapacity(id + 1);
+		nodes[id] = node;
+
+		// Make room for the reservation, after any that start at the same time
+		int count = counts[id];
+		if(starts[id] == null || count == starts[id].length)
+		{
+			int capacity = starts[id] == null ? INITIAL_CAPACITY : count * 2;
+			starts[id] = starts[id] == null ? new double[capacity] : Arrays.copyOf(starts[id], capacity);
+			ends[id] = ends[id] == null ? new double[capacity] : Arrays.copyOf(ends[id], capacity);
+			latestEnds[id] = latestEnds[id] == null ? new double[capacity] : Arrays.copyOf(latestEnds[id], capacity);
+			owners[id] = owners[id] == null ? new Agent[capacity] : Arrays.copyOf(owners[id], capacity);
+		}
+		int index = lastStartingBy(id, start) + 1;
+		System.arraycopy(starts[id], index, starts[id], index + 1, count - index);
+		System.arraycopy(ends[id], index, ends[id], index + 1, count - index);
+		System.arraycopy(owners[id], index, owners[id], index + 1, count - index);
+		starts[id][index] = start;
+		ends[id][index] = end;
+		owners[id][index] = agent;
+		counts[id]++;
+		updateLatestEnds(id, index);
+		size++;
+
+		if(agent != null)
+		{
+			List<Node> reserved = reservedBy.get(agent);
+			if(reserved == null)
+			{
+				reserved = new ArrayList<>();
+				reservedBy.put(agent, reserved);
+			}
+			reserved.add(node);
+		}
+	}
+
+	/**
+	 * Returns true if no reservation of the node includes the time
+	 */
+	public synchronized boolean isFree(Node node, double time)
+	{
+		int id = node.id;
+		if(id < 0 || id >= counts.length || counts[id] == 0)
+			return true;
+		int index = lastStartingBy(id, time);
+		return index < 0 || latestEnds[id][index] < time;
+	}
+
+	/**
+	 * Returns true if none of the nodes have a reservation including the time
+	 */
+	public synchronized boolean areFree(Node[] nodes, double time)
+	{
+		for(Node node : nodes)
+		{
+			if(node != null && !isFree(node, time))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all the reservations made by an agent
+	 */
+	public synchronized void release(Agent agent)
+	{
+		List<Node> reserved = reservedBy.remove(agent);
+		if(reserved == null)
+			return;
+		for(Node node : reserved)
+		{
+			// Compact the node's reservations, keeping the ones made by other agents in order
+			int id = node.id;
+			int count = counts[id];
+			int kept = 0;
+			for(int i = 0; i < count; i++)
+			{
+				if(owners[id][i] != agent)
+				{
+					starts[id][kept] = starts[id][i];
+					ends[id][kept] = ends[id][i];
+					owners[id][kept] = owners[id][i];
+					kept++;
+				}
+			}
+			if(kept == count)
+				continue;
+			Arrays.fill(owners[id], kept, count, null);
+			counts[id] = kept;
+			size -= count - kept;
+			updateLatestEnds(id, 0);
+		}
+	}
+
+	/**
+	 * Remove the reservations that ended before a time
+	 */
+	public synchronized void releaseBefore(double time)
+	{
+		boolean released = false;
+		for(int id = 0; id < counts.length; id++)
+		{
+			int count = counts[id];
+			int kept = 0;
+			for(int i = 0; i < count; i++)
+			{
+				if(ends[id][i] >= time)
+				{
+					starts[id][kept] = starts[id][i];
+					ends[id][kept] = ends[id][i];
+					owners[id][kept] = owners[id][i];
+					kept++;
+				}
+			}
+			if(kept == count)
+				continue;
+			Arrays.fill(owners[id], kept, count, null);
+			counts[id] = kept;
+			size -= count - kept;
+			updateLatestEnds(id, 0);
+			released = true;
+		}
+		if(!released)
+			return;
+
+		// Rebuild the lists of nodes each agent has reserved from what is left
+		reservedBy.clear();
+		for(int id = 0; id < counts.length; id++)
+		{
+			for(int i = 0; i < counts[id]; i++)
+			{
+				Agent agent = owners[id][i];
+				if(agent == null)
+					continue;
+				List<Node> reserved = reservedBy.get(agent);
+				if(reserved == null)
+				{
+					reserved = new ArrayList<>();
+					reservedBy.put(agent, reserved);
+				}
+				reserved.add(nodes[id]);
+			}
+		}
+	}
+
+	/**
+	 * Remove every reservation, keeping the arrays so the table can be filled again without allocating
+	 */
+	public synchronized void clear()
+	{
+		for(int id = 0; id < counts.length; id++)
+		{
+			if(counts[id] > 0)
+			{
+				Arrays.fill(owners[id], 0, counts[id], null);
+				counts[id] = 0;
+			}
+		}
+		reservedBy.clear();
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of reservations in the table
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the nodes that have at least one reservation, in id order
+	 */
+	public synchronized List<Node> getReservedNodes()
+	{
+		List<Node> reserved = new ArrayList<>();
+		for(int id = 0; id < counts.length; id++)
+		{
+			if(counts[id] > 0)
+				reserved.add(nodes[id]);
+		}
+		return reserved;
+	}
+
+	/**
+	 * Returns the start and end times of each reservation of the node, in the order they start
+	 */
+	public synchronized List<double[]> getReservations(Node node)
+	{
+		List<double[]> reservations = new ArrayList<>();
+		int id = node.id;
+		if(id < 0 || id >= counts.length)
+			return reservations;
+		for(int i = 0; i < counts[id]; i++)
+		{
+			reservations.add(new double[] {starts[id][i], ends[id][i]});
+		}
+		return reservations;
+	}
+
+	/**
+	 * Returns an estimate of the memory used by the table, in bytes
+	 * (assuming 16 byte array and object headers and 4 byte references)
+	 */
+	public synchronized long getMemoryUsage()
+	{
+		long bytes = 16 + 4 * (16L + 4 * nodes.length) + (16L + 4 * counts.length) + 2 * 16;
+		for(int id = 0; id < counts.length; id++)
+		{
+			if(starts[id] != null)
+				bytes += 3 * (16L + 8 * starts[id].length) + 16L + 4 * owners[id].length;
+		}
+		// Each agent's list of reserved nodes, and its entry in the map
+		bytes += 16 + 4 * reservedBy.size() * 2;
+		for(List<Node> reserved : reservedBy.values())
+		{
+			bytes += 32 + 24 + 16 + 4 * reserved.size();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns a copy of the table, which can be read on another thread while the original is changed
+	 */
+	public synchronized ReservationTable copy()
+	{
+		ReservationTable copy = new ReservationTable();
+		copy.nodes = nodes.clone();
+		copy.counts = counts.clone();
+		copy.starts = new double[starts.length][];
+		copy.ends = new double[ends.length][];
+		copy.latestEnds = new double[latestEnds.length][];
+		copy.owners = new Agent[owners.length][];
+		for(int id = 0; id < counts.length; id++)
+		{
+			if(starts[id] != null)
+			{
+				copy.starts[id] = starts[id].clone();
+				copy.ends[id] = ends[id].clone();
+				copy.latestEnds[id] = latestEnds[id].clone();
+				copy.owners[id] = owners[id].clone();
+			}
+		}
+		copy.size = size;
+		for(Agent agent : reservedBy.keySet())
+		{
+			copy.reservedBy.put(agent, new ArrayList<>(reservedBy.get(agent)));
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the index of the last reservation of the node that starts at or before the time (-1 if there isn't one)
+	 */
+	private int lastStartingBy(int id, double time)
+	{
+		int low = 0;
+		int high = counts[id] - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			if(starts[id][middle] <= time)
+				low = middle + 1;
+			else
+				high = middle - 1;
+		}
+		return high;
+	}
+
+	/**
+	 * Recalculate the latest end times of a node's reservations, from an index onwards
+	 */
+	private void updateLatestEnds(int id, int from)
+	{
+		double latest = from == 0 ? Double.NEGATIVE_INFINITY : latestEnds[id][from - 1];
+		for(int i = from; i < counts[id]; i++)
+		{
+			latest = Math.max(latest, ends[id][i]);
+			latestEnds[id][i] = latest;
+		}
+	}
+
+	private void ensureCapacity(int length)
+	{
+		if(length <= counts.length)
+			return;
+		length = Math.max(length, counts.length * 2);
+		nodes = Arrays.copyOf(nodes, length);
+		counts = Arrays.copyOf(counts, length);
+		starts = Arrays.copyOf(starts, length);
+		ends = Arrays.copyOf(ends, length);
+		latestEnds = Arrays.copyOf(latestEnds, length);
+		owners = Arrays.copyOf(owners, length);
+	}
+
+}
@@ -0,0 +1,301 @@
+package uk.ac.nottingham.psyja2.ATCAutomation.PathFinding;
+
+import java.util.Arrays;
+
+/**
+ * Everything an A* search changes as it runs: the g() and h() values and previous node of every node
+ * (in arrays indexed by node id), the open and closed lists, and the agent the path is for.<br>
+ * Each search needs its own context, so several searches can run over the same graph at once.
+ * A context can be reused for one search after another, and the values of the last search can be
+ * read from it once it has finished
+ * @author Josh Argent
+ *
+ */
+public class SearchContext
+{
+
+	AStar graph;
+	private Agent agent;
+	long nodesExplored = 0;
+
+	// Search values, by node id
+	private double[] g = new double[0];
+	private double[] h = new double[0];
+	private int[] previous = new int[0]; // Id of the previous node (-1 if none)
+
+	// The open list is a binary heap of nodes, ordered by f() then h() then when they were added
+	private Node[] openList = new Node[16];
+	private int openSize = 0;
+	private int[] openIndex = new int[0]; // Position of each node in the heap, by id (-1 if not on it)
+	private long[] openOrder = new long[0]; // When each node was last added to or moved in the heap, by id
+	private long nextOrder = 0;
+
+	// A node is on the closed list if its stamp is the current search's generation
+	private int[] closedStamps = new int[0];
+	private int generation = 0;
+
+	// Fingerprints of the nodes on each list, kept up to date as nodes move so deadlocks can be spotted without hashing the lists
+	private long openPrint = 0;
+	private long closedPrint = 0;
+	private long previousOpenPrint = 0;
+	private long previousClosedPrint = 0;
+
+	/**
+	 * Returns the agent the path is being found for (null if there isn't one)
+	 */
+	public Agent getAgent()
+	{
+		return agent;
+	}
+
+	/**
+	 * Set the agent the next paths are found for, used by graphs whose costs depend on who is moving
+	 */
+	public void setAgent(Agent agent)
+	{
+		this.agent = agent;
+	}
+
+	/**
+	 * Returns the cost of the best route found to the node
+	 */
+	public double getG(Node node)
+	{
+		return g[node.id];
+	}
+
+	public void setG(Node node, double value)
+	{
+		g[node.id] = value;
+	}
+
+	/**
+	 * Returns the estimated cost from the node to the goal
+	 */
+	public double getH(Node node)
+	{
+		return h[node.id];
+	}
+
+	public void setH(Node node, double value)
+	{
+		h[node.id] = value;
+	}
+
+	public double getF(Node node)
+	{
+		return g[node.id] + h[node.id];
+	}
+
+	/**
+	 * Returns the node before this one on the best route found to it (or null)
+	 */
+	public Node getPrevious(Node node)
+	{
+		int id = previous[node.id];
+		return id < 0 ? null : graph.getNode(id);
+	}
+
+	public void setPrevious(Node node, Node previousNode)
+	{
+		previous[node.id] = previousNode == null ? -1 : previousNode.id;
+	}
+
+	/**
+	 * Get ready to search a graph, emptying the open and closed lists
+	 */
+	void start(AStar graph)
+	{
+		this.graph = graph;
+		nodesExplored = 0;
+		ensureCapacity(graph.getNumberOfIds());
+
+		for(int i = 0; i < openSize; i++)
+		{
+			openIndex[openList[i].id] = -1;
+			openList[i] = null;
+		}
+		openSize = 0;
+		openPrint = 0;
+		closedPrint = 0;
+
+		// Starting a new generation empties the closed list, the stamps only need clearing when it wraps around
+		if(generation == Integer.MAX_VALUE)
+		{
+			Arrays.fill(closedStamps, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Returns true if there are no nodes left on the open list
+	 */
+	boolean isOpenListEmpty()
+	{
+		return openSize == 0;
+	}
+
+	/**
+	 * Returns true if the node is on the open list
+	 */
+	boolean isOnOpenList(Node node)
+	{
+		return openIndex[node.id] >= 0;
+	}
+
+	/**
+	 * Returns true if the node has been put on the closed list during this search
+	 */
+	boolean isOnClosedList(Node node)
+	{
+		return closedStamps[node.id] == generation;
+	}
+
+	/**
+	 * Put a node on the open list, or move it to its new place if it is already there and its g() or h() has changed
+	 */
+	void addToOpenList(Node node)
+	{
+		int index = openIndex[node.id];
+		openOrder[node.id] = nextOrder++;
+		if(index < 0)
+		{
+			if(openSize == openList.length)
+				openList = Arrays.copyOf(openList, openSize * 2);
+			index = openSize++;
+			openList[index] = node;
+			openIndex[node.id] = index;
+			openPrint += fingerprint(node);
+		}
+		siftUp(index);
+		siftDown(openIndex[node.id]);
+	}
+
+	/**
+	 * Put a node on the closed list
+	 */
+	void addToClosedList(Node node)
+	{
+		if(closedStamps[node.id] != generation)
+		{
+			closedStamps[node.id] = generation;
+			closedPrint += fingerprint(node);
+		}
+	}
+
+	/**
+	 * Remove and return the node with the lowest f() from the open list
+	 */
+	Node pollOpenList()
+	{
+		Node first = openList[0];
+		openIndex[first.id] = -1;
+		openPrint -= fingerprint(first);
+		openSize--;
+		if(openSize > 0)
+		{
+			openList[0] = openList[openSize];
+			openIndex[openList[0].id] = 0;
+			siftDown(0);
+		}
+		openList[openSize] = null;
+		return first;
+	}
+
+	/**
+	 * Remember what is on the open and closed lists, to compare against after the next expansion
+	 */
+	void markLists()
+	{
+		previousOpenPrint = openPrint;
+		previousClosedPrint = closedPrint;
+	}
+
+	/**
+	 * Returns true if the open and closed lists are exactly as they were when they were last marked
+	 */
+	boolean listsUnchanged()
+	{
+		return previousOpenPrint == openPrint && previousClosedPrint == closedPrint;
+	}
+
+	private void siftUp(int index)
+	{
+		Node node = openList[index];
+		while(index > 0)
+		{
+			int parent = (index - 1) / 2;
+			if(!isBefore(node, openList[parent]))
+				break;
+			openList[index] = openList[parent];
+			openIndex[openList[index].id] = index;
+			index = parent;
+		}
+		openList[index] = node;
+		openIndex[node.id] = index;
+	}
+
+	private void siftDown(int index)
+	{
+		Node node = openList[index];
+		while(true)
+		{
+			int child = index * 2 + 1;
+			if(child >= openSize)
+				break;
+			if(child + 1 < openSize && isBefore(openList[child + 1], openList[child]))
+				child++;
+			if(!isBefore(openList[child], node))
+				break;
+			openList[index] = openList[child];
+			openIndex[openList[index].id] = index;
+			index = child;
+		}
+		openList[index] = node;
+		openIndex[node.id] = index;
+	}
+
+	/**
+	 * Returns true if node a should come off the open list before node b: the lowest f() first,
+	 * then the closest to the goal, then the one that was added first
+	 */
+	private boolean isBefore(Node a, Node b)
+	{
+		double fA = g[a.id] + h[a.id];
+		double fB = g[b.id] + h[b.id];
+		if(fA != fB)
+			return fA < fB;
+		if(h[a.id] != h[b.id])
+			return h[a.id] < h[b.id];
+		return openOrder[a.id] < openOrder[b.id];
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if(size <= g.length)
+			return;
+		int length = g.length;
+		size = Math.max(size, length * 2);
+		g = Arrays.copyOf(g, size);
+		h = Arrays.copyOf(h, size);
+		previous = Arrays.copyOf(previous, size);
+		Arrays.fill(previous, length, size, -1);
+		openIndex = Arrays.copyOf(openIndex, size);
+		Arrays.fill(openIndex, length, size, -1);
+		openOrder = Arrays.copyOf(openOrder, size);
+		closedStamps = Arrays.copyOf(closedStamps, size);
+	}
+
+	/**
+	 * A well mixed number for each node id, the fingerprint of a list is the sum of its nodes' fingerprints
+	 */
+	private static long fingerprint(Node node)
+	{
+		long x = (node.id + 1) * 0x9E3779B97F4A7C15L;
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		return x ^ (x >>> 31);
+	}
+
+}
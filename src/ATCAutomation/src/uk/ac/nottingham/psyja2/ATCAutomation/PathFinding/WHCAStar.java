@@ -15,6 +15,15 @@ public class WHCAStar extends CAStar
 		this.windowSize = windowSize;
 	}
 	
+	/**
+	 * Search the nodes of another graph, with a reservation table and window of its own
+	 */
+	public WHCAStar(WHCAStar graph, double windowSize)
+	{
+		super(graph);
+		this.windowSize = windowSize;
+	}
+	
 	public double getWindowSize()
 	{
 		return windowSize;
@@ -25,6 +34,9 @@ public class WHCAStar extends CAStar
 		this.windowSize = windowSize;
 	}
 	
+	/**
+	 * Set the agent paths are found for when no search context is given
+	 */
 	public void setAgent(Agent agent)
 	{
 		this.currentAgent = agent;
@@ -37,47 +49,82 @@ public class WHCAStar extends CAStar
 	
 	public String getReservationTableString()
 	{
-		String out =  "";
-		for(Node key : reservationTable.keySet())
+		return getReservationTableString(copyReservationTable());
+	}
+	
+	/**
+	 * Format a reservation table (or a copy of one) as text, listing the times each node is reserved
+	 */
+	public static String getReservationTableString(ReservationTable reservationTable)
+	{
+		SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
+		formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+		StringBuilder out = new StringBuilder();
+		for(Node key : reservationTable.getReservedNodes())
 		{
-			out += key + ":\n";
-			for(Double[] times : reservationTable.get(key))
+			out.append(key).append(":\n");
+			for(double[] times : reservationTable.getReservations(key))
 			{
-				SimpleDateFormat formatter = new SimpleDateFormat("HH:mm:ss");
-				formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
 			    String time1 = formatter.format(times[0] * 3600000);
 			    String time2 = formatter.format(times[1] * 3600000);
 			    
-				out += time1 + " - " + time2 + "\n";
+				out.append(time1).append(" - ").append(time2).append("\n");
 			}
-			out += "\n";
+			out.append("\n");
 		}
-		return out;
+		return out.toString();
+	}
+
+	/**
+	 * Returns true if two agents, starting from the given nodes, could use the same node before the window
+	 * (and the reservations made in it) ends, so one's reservations could change the other's path.
+	 * Without knowing how far an agent can move in the window, any two agents could
+	 */
+	public boolean canInteract(Agent agentA, Node positionA, Agent agentB, Node positionB)
+	{
+		return true;
 	}
 
 	@Override
-	public void reserveNodeAtTime(Node node, double time)
+	public void reserveNodeAtTime(Node node, double time, Agent agent)
 	{
 		if(time > windowSize)
 			return;
-		super.reserveNodeAtTime(node, time);
+		super.reserveNodeAtTime(node, time, agent);
 	}
 	
 	@Override
 	public Path findPath(Node from, Node to) throws Exception
 	{
-		Path path = super.findPath(from, to);
+		// Find the path for the current agent
+		SearchContext context = acquireContext();
+		context.setAgent(currentAgent);
+		try
+		{
+			return findPath(from, to, context);
+		}
+		finally
+		{
+			releaseContext(context);
+		}
+	}
+	
+	@Override
+	public Path findPath(Node from, Node to, SearchContext context) throws Exception
+	{
+		Path path = super.findPath(from, to, context);
 		
 		// Calculate the cost of this path
-		double pathCost = to.g;
+		double pathCost = context.getG(to);
 		
 		// Calculate the heuristic cost
-		double heuristicCost = getHeuristic(from, to);
+		double heuristicCost = getHeuristic(context, from, to);
 		
-		if(currentAgent != null)
+		Agent agent = context.getAgent();
+		if(agent != null)
 		{
-			currentAgent.pathCost = pathCost;
-			currentAgent.heuristicCost = heuristicCost;
+			agent.pathCost = pathCost;
+			agent.heuristicCost = heuristicCost;
 		}
 		
 		return path;
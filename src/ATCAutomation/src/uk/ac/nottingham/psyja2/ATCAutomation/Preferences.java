@@ -1,6 +1,13 @@
 package uk.ac.nottingham.psyja2.ATCAutomation;
 
-public abstract class Preferences
+/**
+ * The settings used to plan aircraft paths.<br>
+ * The static values are the defaults, set from the command line. An instance holds the settings of a
+ * single graph, so runs with different settings can plan side by side (see BatchRunner)
+ * @author Josh Argent
+ *
+ */
+public class Preferences
 {
 	/* Heuristic */
 	public static final int MANHATTAN = 0;
@@ -24,14 +31,47 @@ public abstract class Preferences
 	/* Window Time (minutes) */
 	public static int WINDOW_SIZE = 90;
 	
+	public int heuristic;
+	public int prioritySystem;
+	public int intermediateSpacing;
+	public int reservationTime;
+	public int windowSize;
+	
+	/**
+	 * Create a copy of the default preferences
+	 */
+	public Preferences()
+	{
+		this(HEURISTIC, PRIORITY_SYSTEM, INTERMEDIATE_SPACING, RESERVATION_TIME, WINDOW_SIZE);
+	}
+	
+	public Preferences(int heuristic, int prioritySystem, int intermediateSpacing, int reservationTime, int windowSize)
+	{
+		this.heuristic = heuristic;
+		this.prioritySystem = prioritySystem;
+		this.intermediateSpacing = intermediateSpacing;
+		this.reservationTime = reservationTime;
+		this.windowSize = windowSize;
+	}
+	
 	public static void printPreferences()
 	{
 		System.out.println("Running with:-");
-		System.out.println("	Heuristic: " + ((HEURISTIC == MANHATTAN) ? "Manhattan Distance" : (HEURISTIC == STRAIGHT_LINE) ? "Straight Line Distance" : "True Distance"));
-		System.out.println("	Priority System: " + ((PRIORITY_SYSTEM == AGITATION) ? "Most Inconvinienced" : (PRIORITY_SYSTEM == FIFO) ? "FIFO" : (PRIORITY_SYSTEM == FURTHEST_DESTINATION) ? "Furthest Distance" : "Closest Distance"));
+		System.out.println("	Heuristic: " + getHeuristicName(HEURISTIC));
+		System.out.println("	Priority System: " + getPrioritySystemName(PRIORITY_SYSTEM));
 		System.out.println("	Intermediate Spacing: " + INTERMEDIATE_SPACING);
 		System.out.println("	Reservation Time: " + RESERVATION_TIME);
 		System.out.println("	Window Size: " + WINDOW_SIZE);
 	}
+	
+	public static String getHeuristicName(int heuristic)
+	{
+		return (heuristic == MANHATTAN) ? "Manhattan Distance" : (heuristic == STRAIGHT_LINE) ? "Straight Line Distance" : "True Distance";
+	}
+	
+	public static String getPrioritySystemName(int prioritySystem)
+	{
+		return (prioritySystem == AGITATION) ? "Most Inconvinienced" : (prioritySystem == FIFO) ? "FIFO" : (prioritySystem == FURTHEST_DESTINATION) ? "Furthest Distance" : "Closest Distance";
+	}
 
 }
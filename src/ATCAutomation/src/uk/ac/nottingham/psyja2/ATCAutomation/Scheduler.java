@@ -3,32 +3,70 @@ package uk.ac.nottingham.psyja2.ATCAutomation;
 import java.io.File;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
+import uk.ac.nottingham.psyja2.ATCAutomation.Controller.Output;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager;
 import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
 import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
 import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
 import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
 
-public class Scheduler
+public class Scheduler implements TickListener
 {
 	
 	
 	private Thread schedulerThread;
 	private SchedulerRunnable schedulerRunnable;
+	private Simulator simulator;
+	private AgentManager agentManager;
+	private Map<String, SpatialNode> nodes;
+	private Output out;
 
+	/**
+	 * Create a scheduler for the Controller's simulator, graph and agent manager
+	 */
 	public Scheduler()
+	{
+		this(Simulator.getInstance(), Controller.agentManager, Controller.nodes, Controller.out);
+	}
+	
+	/**
+	 * Create a scheduler that adds aircraft to the given simulator and agent manager
+	 * @param nodes the nodes of the graph the agent manager plans on
+	 * @param out where errors and added aircraft are reported
+	 */
+	public Scheduler(Simulator simulator, AgentManager agentManager, Map<String, SpatialNode> nodes, Output out)
 	{		
-		// Start the scheduler thread
+		this.simulator = simulator;
+		this.agentManager = agentManager;
+		this.nodes = nodes;
+		this.out = out;
 		schedulerRunnable = new SchedulerRunnable();
-		schedulerThread = new Thread(schedulerRunnable);
-		schedulerThread.setName("Scheduler");
-		schedulerThread.start();
+		if(simulator.isFastTime())
+		{
+			// In fast time the schedule is checked on every tick of the simulator clock
+			simulator.addTickListener(this);
+		}
+		else
+		{
+			// Start the scheduler thread
+			schedulerThread = new Thread(schedulerRunnable);
+			schedulerThread.setName("Scheduler");
+			schedulerThread.start();
+		}
+	}
+	
+	@Override
+	public void tickEvent(double time)
+	{
+		schedulerRunnable.update();
 	}
 	
 	/**
@@ -46,6 +84,23 @@ public class Scheduler
 		schedulerRunnable.schedule.clear();
 	}
 	
+	/**
+	 * Returns the number of aircraft waiting to be added
+	 */
+	public synchronized int getNumberScheduled()
+	{
+		return schedulerRunnable.schedule.size();
+	}
+	
+	/**
+	 * Returns true once a schedule has been loaded, every aircraft in it has been added
+	 * and they have all left the simulation
+	 */
+	public synchronized boolean isFinished()
+	{
+		return schedulerRunnable.scheduleSet && schedulerRunnable.schedule.isEmpty() && simulator.getNumberOfAircraft() == 0;
+	}
+	
 	public synchronized void loadSchedule(File file) throws Exception
 	{
 		// Check the file exists
@@ -75,7 +130,7 @@ public class Scheduler
 			AircraftProfile aircraftType = Controller.getAircraftProfile(type);
 			if(aircraftType == null)
 			{
-				Controller.out.println("ERROR: Invalid aircraft type '" + type + "'!");
+				out.println("ERROR: Invalid aircraft type '" + type + "'!");
 				continue;
 			}
 			
@@ -98,7 +153,7 @@ public class Scheduler
 			SpatialNode goalNode = null;
 			
 			boolean entryIncrementUp = true;
-			while(!Controller.nodes.containsKey(entry))
+			while(!nodes.containsKey(entry))
 			{
 				if(startFL > 460)
 					entryIncrementUp = false;
@@ -110,18 +165,18 @@ public class Scheduler
 					startFL -= 10;
 				entry = item.get("entry") + "_FL" + startFL;
 			}
-			if(Controller.nodes.containsKey(entry))
+			if(nodes.containsKey(entry))
 			{
-				startNode = Controller.nodes.get(entry);
+				startNode = nodes.get(entry);
 			}
 			else
 			{
-				Controller.out.println("ERROR: The waypoint '" + entry + "' does not exist!");
+				out.println("ERROR: The waypoint '" + entry + "' does not exist!");
 				continue;
 			}
 			
 			boolean exitIncrementUp = true;
-			while(!Controller.nodes.containsKey(exit))
+			while(!nodes.containsKey(exit))
 			{
 				if(goalFL > 460)
 					exitIncrementUp = false;
@@ -133,13 +188,13 @@ public class Scheduler
 					goalFL -= 10;
 				exit = item.get("exit") + "_FL" + goalFL;
 			}
-			if(Controller.nodes.containsKey(exit))
+			if(nodes.containsKey(exit))
 			{
-				goalNode = Controller.nodes.get(exit);
+				goalNode = nodes.get(exit);
 			}
 			else
 			{
-				Controller.out.println("ERROR: The waypoint '" + exit + "' does not exist!");
+				out.println("ERROR: The waypoint '" + exit + "' does not exist!");
 				continue;
 			}
 			
@@ -147,7 +202,7 @@ public class Scheduler
 			Coordinate startLocation = new Coordinate(startNode.getLocation().getLatitude(), startNode.getLocation().getLongitude());
 			double initialHeading = GraphBuilder.calculateBearing(startNode.getLocation().getLatitude(), startNode.getLocation().getLongitude(), 
 					goalNode.getLocation().getLatitude(), goalNode.getLocation().getLongitude());
-			Aircraft aircraft = new Aircraft(callsign, startLocation, initialHeading, Aircraft.MAX_CRUISE_SPEED, startFL * 100, aircraftType);
+			Aircraft aircraft = new Aircraft(simulator, callsign, startLocation, initialHeading, Aircraft.MAX_CRUISE_SPEED, startFL * 100, aircraftType);
 			AircraftAgent agent = new AircraftAgent(aircraft, startNode, goalNode);
 			
 			// Add it to the schedule
@@ -170,14 +225,14 @@ public class Scheduler
 	private synchronized void addAircraft(AircraftAgent agent)
 	{		
 		// Add the agent
-		Controller.agentManager.addAgent(agent);
-		Controller.out.println("SCHEDULER: Added '" + agent.getAircraft().getCallsign() + "' to the scenario.");
+		agentManager.addAgent(agent);
+		out.println("SCHEDULER: Added '" + agent.getAircraft().getCallsign() + "' to the scenario.");
 	}
 	
 	private class SchedulerRunnable implements Runnable
 	{
 
-		public volatile Map<AircraftAgent, Double> schedule = new HashMap<>();
+		public volatile Map<AircraftAgent, Double> schedule = new LinkedHashMap<>(); // keeps the file order
 		public boolean running = true;
 		private boolean scheduleSet = false;
 		
@@ -186,52 +241,68 @@ public class Scheduler
 		{
 			while(running)
 			{
-				// Check if an aircraft should be added
-				ArrayList<AircraftAgent> agents = new ArrayList<AircraftAgent>();
+				update();
 				
-				for(AircraftAgent agent : schedule.keySet())
+				// Pause
+				try
 				{
-					scheduleSet = true;
-					if(schedule.get(agent) <= Simulator.getInstance().getTime())
-					{
-						agents.add(agent);
-					}
-				}
-				
-				// Add the identified aircraft
-				for(AircraftAgent agent : agents)
+					Thread.sleep(1000); // 1 second
+				} catch (InterruptedException e)
 				{
-					// Remove from the schedule
-					schedule.remove(agent);
-					
-					// Add the aircraft
-					addAircraft(agent);
+					e.printStackTrace();
 				}
-				
-				if(agents.size() > 0)
+			}
+		}
+		
+		private void update()
+		{
+			// Check if an aircraft should be added
+			ArrayList<AircraftAgent> agents = new ArrayList<AircraftAgent>();
+			
+			for(AircraftAgent agent : schedule.keySet())
+			{
+				scheduleSet = true;
+				if(schedule.get(agent) <= simulator.getTime())
 				{
-					// Recalculate paths
-					Controller.agentManager.recalculatePaths();
+					agents.add(agent);
 				}
+			}
+			
+			// Add the identified aircraft
+			for(AircraftAgent agent : agents)
+			{
+				// Remove from the schedule
+				schedule.remove(agent);
 				
-				if(scheduleSet && schedule.isEmpty() && agents.size() == 0 && Simulator.getInstance().getNumberOfAircraft() == 0)
+				// Add the aircraft
+				addAircraft(agent);
+			}
+			
+			if(agents.size() > 0)
+			{
+				// Recalculate paths
+				agentManager.recalculatePaths();
+			}
+			
+			// Don't let an event driven simulator jump past the next aircraft to add
+			if(simulator.isEventDriven())
+			{
+				for(double time : schedule.values())
 				{
-					// If the exit on finish flag is set, exit the program
-					if(Controller.exitOnFinish)
-					{
-						Controller.logger.stopLogger();
-						System.exit(0);
-						
-					}
+					simulator.requestUpdateAt(time);
 				}
-				
-				// Pause
-				try
-				{
-					Thread.sleep(1000); // 1 second
-				} catch (InterruptedException e)
+			}
+			
+			if(scheduleSet && schedule.isEmpty() && agents.size() == 0 && simulator.getNumberOfAircraft() == 0)
+			{
+				// If the exit on finish flag is set, exit the program (only the Controller's scheduler)
+				if(Controller.exitOnFinish && Controller.scheduler == Scheduler.this)
 				{
-					e.printStackTrace();
+					if(Controller.logger != null)
+						Controller.logger.stopLogger();
+					simulator.stopJournal();
+					System.exit(0);
+					
 				}
 			}
 		}
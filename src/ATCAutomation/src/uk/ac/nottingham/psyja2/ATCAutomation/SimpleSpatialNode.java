@@ -43,5 +43,11 @@ public class SimpleSpatialNode extends Node
     	}
     	return false;
     }
+	
+	@Override
+	public int hashCode()
+	{
+		return name.hashCode();
+	}
 
 }
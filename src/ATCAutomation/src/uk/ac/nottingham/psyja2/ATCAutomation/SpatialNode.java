@@ -1,10 +1,8 @@
 package uk.ac.nottingham.psyja2.ATCAutomation;
 
 
-import java.util.Map;
-
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.FloydWarshall;
-import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.IGraph;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
 import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
 import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
@@ -15,9 +13,6 @@ public abstract class SpatialNode extends Node
 	
 	private static final double METRES_IN_MILE = 1852; // The number of metres in a nautical mile
 	
-	private static FloydWarshall flatGraph = null;
-	private static Map<String, SimpleSpatialNode> flatNodes = null;
-	
 	protected Coordinate location;
 	protected String name;
 	protected int altitude;
@@ -41,12 +36,25 @@ public abstract class SpatialNode extends Node
 	@Override
 	public double getHeuristicTo(Node node)
 	{
-		
-		// Get the associated graph object
-		SpatialWHCAStar graph = (SpatialWHCAStar) this.graph;
-
+		return getHeuristicTo(node, ((SpatialWHCAStar) this.graph).getAgent());
+	}
+	
+	/**
+	 * Estimate the time (in decimal hours) for an agent's aircraft to fly from this node to another
+	 */
+	public double getHeuristicTo(Node node, Agent agent)
+	{
+		return getHeuristicTo(node, agent, (SpatialWHCAStar) this.graph);
+	}
+	
+	/**
+	 * Estimate the time (in decimal hours) for an agent's aircraft to fly from this node to another,
+	 * with the heuristic of the graph being searched (which may share this node's graph)
+	 */
+	public double getHeuristicTo(Node node, Agent agent, SpatialWHCAStar graph)
+	{
 		// Safety for if the agent has not been set
-		if(graph.getAgent() == null)
+		if(agent == null)
 		{
 			return 0;
 		}
@@ -58,19 +66,19 @@ public abstract class SpatialNode extends Node
 		}
 		
 		// Get the aircraft
-		Aircraft aircraft = ((AircraftAgent)graph.getAgent()).getAircraft();	
+		Aircraft aircraft = ((AircraftAgent)agent).getAircraft();	
 		
 		// Estimate the time for the aircraft to fly from A to B		
-		if(Preferences.HEURISTIC == Preferences.TRUE_DISTANCE)
+		int heuristic = graph.getPreferences().heuristic;
+		if(heuristic == Preferences.TRUE_DISTANCE)
 		{
 			/* Floyd-Warshall Distance */
-			// Make sure the static reference to the flat graph exists
-			if(flatGraph == null)
-				buildFlatGraph(this.graph);
+			// Make sure the graph's flat graph exists
+			FloydWarshall flatGraph = graph.getFlatGraph();
 			
 			// Get the waypoints in the FW graph
-			SimpleSpatialNode self = flatNodes.get(name.substring(0, name.indexOf("_")));
-			SimpleSpatialNode goal = flatNodes.get(node.toString().substring(0, node.toString().indexOf("_")));
+			SimpleSpatialNode self = graph.flatNodes.get(name.substring(0, name.indexOf("_")));
+			SimpleSpatialNode goal = graph.flatNodes.get(node.toString().substring(0, node.toString().indexOf("_")));
 			
 			// Calculat the distance of the shortest path and the heading
 			double distance = flatGraph.shortestPathLength(self, goal) / METRES_IN_MILE;
@@ -81,7 +89,7 @@ public abstract class SpatialNode extends Node
 			double time = estimateFlightTime(aircraft, 0, alt, heading, distance);
 			return time;
 		}
-		else if(Preferences.HEURISTIC == Preferences.MANHATTAN)
+		else if(heuristic == Preferences.MANHATTAN)
 		{
 			/* Manhatten Distance: */
 			SpatialNode to = (SpatialNode) node;
@@ -90,7 +98,7 @@ public abstract class SpatialNode extends Node
 			double time2 = estimateFlightTime(aircraft, (to.altitude - altitude) * 50, to.altitude * 50, corner, to.location);
 			return time1 + time2;
 		}
-		else if(Preferences.HEURISTIC == Preferences.STRAIGHT_LINE)
+		else if(heuristic == Preferences.STRAIGHT_LINE)
 		{
 			/*Straight line distance: */
 			SpatialNode to = (SpatialNode) node;
@@ -105,11 +113,16 @@ public abstract class SpatialNode extends Node
 	@Override
 	public double getCostTo(Node node)
 	{
-		// Get the associated graph object
-		SpatialWHCAStar graph = (SpatialWHCAStar) this.graph;
-
+		return getCostTo(node, ((SpatialWHCAStar) this.graph).getAgent());
+	}
+	
+	/**
+	 * Estimate the time (in decimal hours) for an agent's aircraft to fly from this node to a connected node
+	 */
+	public double getCostTo(Node node, Agent agent)
+	{
 		// Safety for if the agent has not been set
-		if(graph.getAgent() == null)
+		if(agent == null)
 		{
 			return 0;
 		}
@@ -122,7 +135,7 @@ public abstract class SpatialNode extends Node
 		}
 		
 		// Estimate the time for the aircraft to fly from A to B		
-		Aircraft aircraft = ((AircraftAgent)graph.getAgent()).getAircraft();
+		Aircraft aircraft = ((AircraftAgent)agent).getAircraft();
 		SpatialNode to = (SpatialNode) node;
 		double time = estimateFlightTime(aircraft, (to.altitude - altitude) * 100, to.altitude * 100, location, to.location);
 			
@@ -136,6 +149,14 @@ public abstract class SpatialNode extends Node
 		return name;
 	}
 	
+	@Override
+	public int hashCode()
+	{
+		// Names are unique within a graph. Hashing them rather than the object keeps the order of the graph's
+		// maps, and so the paths planned, the same however many other objects the planning threads have hashed
+		return name.hashCode();
+	}
+	
 	/**
 	 * Calculates the estimated flight time (in decimal hours) for an aircraft between two points
 	 * (a to b) at a particular altitude.
@@ -172,8 +193,9 @@ public abstract class SpatialNode extends Node
 		// Estimate the ground speed;
 		double v1X = Math.sin(Math.toRadians(heading)) * tas;
 		double v1Y = Math.cos(Math.toRadians(heading)) * tas;
-		double v2X = -Math.sin(Math.toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
-		double v2Y = -Math.cos(Math.toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
+		Simulator simulator = aircraft.getSimulator();
+		double v2X = -Math.sin(Math.toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
+		double v2Y = -Math.cos(Math.toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
 		double sumX = v1X + v2X;
         double sumY = v1Y + v2Y;
         // Calculate the resultant vector's magnitude
@@ -196,13 +218,5 @@ public abstract class SpatialNode extends Node
 		}
 		
 	}
-	
-	public static void buildFlatGraph(IGraph graph)
-	{
-		flatGraph = new FloydWarshall();
-		flatNodes = GraphBuilder.flattenGraph(graph, flatGraph);
-		flatGraph.initialise();
-		flatGraph.clearAdjacencyList();
-	}
 
 }
@@ -2,47 +2,160 @@ package uk.ac.nottingham.psyja2.ATCAutomation;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.FloydWarshall;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Path;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.SearchContext;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.WHCAStar;
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
 
 public class SpatialWHCAStar extends WHCAStar
 {
+	
+	private static final double METRES_IN_MILE = 1852; // The number of metres in a nautical mile
+	
+	private final Preferences preferences;
+	
+	// The flattened 2D graph used by the true distance heuristic, only read once built so can be shared
+	volatile FloydWarshall flatGraph = null;
+	volatile Map<String, SimpleSpatialNode> flatNodes = null;
+	
 	public SpatialWHCAStar()
 	{
-		super(Preferences.WINDOW_SIZE / 60D);
+		this(new Preferences());
+	}
+	
+	public SpatialWHCAStar(Preferences preferences)
+	{
+		super(preferences.windowSize / 60D);
+		this.preferences = preferences;
+	}
+	
+	/**
+	 * Search the nodes (and Floyd-Warshall matrix) of another graph, with different preferences and reservations of its own.
+	 * The graph must have been built with the same intermediate spacing
+	 */
+	public SpatialWHCAStar(SpatialWHCAStar graph, Preferences preferences)
+	{
+		super(graph, preferences.windowSize / 60D);
+		if(graph.getPreferences().intermediateSpacing != preferences.intermediateSpacing)
+			throw new IllegalArgumentException("The graph was built with a different intermediate spacing");
+		this.preferences = preferences;
+		shareFlatGraph(graph);
+	}
+	
+	public Preferences getPreferences()
+	{
+		return preferences;
 	}
 	
 	@Override
 	protected double getReservationTime()
 	{
-		return Preferences.RESERVATION_TIME / 60D;
+		return preferences.reservationTime / 60D;
 	}
 	
+	/**
+	 * Build the Floyd-Warshall matrix of shortest distances between the waypoints of this graph
+	 */
+	public synchronized void buildFlatGraph()
+	{
+		FloydWarshall flatGraph = new FloydWarshall();
+		Map<String, SimpleSpatialNode> flatNodes = GraphBuilder.flattenGraph(this, flatGraph);
+		flatGraph.initialise();
+		flatGraph.clearAdjacencyList();
+		this.flatNodes = flatNodes;
+		this.flatGraph = flatGraph;
+	}
+	
+	/**
+	 * Use the Floyd-Warshall matrix of another graph, built from the same scenario and intermediate spacing
+	 */
+	public synchronized void shareFlatGraph(SpatialWHCAStar graph)
+	{
+		synchronized(graph)
+		{
+			flatNodes = graph.flatNodes;
+			flatGraph = graph.flatGraph;
+		}
+	}
+	
+	/**
+	 * Returns the Floyd-Warshall matrix of this graph, building it if it hasn't been built yet
+	 */
+	FloydWarshall getFlatGraph()
+	{
+		FloydWarshall flatGraph = this.flatGraph;
+		if(flatGraph == null)
+		{
+			synchronized(this)
+			{
+				if(this.flatGraph == null)
+					buildFlatGraph();
+				flatGraph = this.flatGraph;
+			}
+		}
+		return flatGraph;
+	}
+	
+	/**
+	 * Two aircraft can only interact if they are close enough to reach the same node, flying at the fastest
+	 * ground speed the flight time estimates allow, before the window and its reservations end
+	 */
 	@Override
-	public List<Node> getSuccessors(Node node)
+	public boolean canInteract(Agent agentA, Node positionA, Agent agentB, Node positionB)
+	{
+		SpatialNode nodeA = (SpatialNode) positionA;
+		SpatialNode nodeB = (SpatialNode) positionB;
+		double time = getWindowSize() + getReservationTime();
+		double reach = (getMaxGroundSpeed(agentA, nodeA) + getMaxGroundSpeed(agentB, nodeB)) * time * METRES_IN_MILE;
+		double distance = GraphBuilder.calculateDistance(nodeA.location.getLatitude(), nodeA.location.getLongitude(),
+				nodeB.location.getLatitude(), nodeB.location.getLongitude());
+		return distance <= reach;
+	}
+	
+	/**
+	 * Returns the fastest ground speed (in knots) {@link SpatialNode#estimateFlightTime(Aircraft, int, int, double, double)}
+	 * can give an agent's aircraft, anywhere it can fly from its position
+	 */
+	private static double getMaxGroundSpeed(Agent agent, SpatialNode position)
+	{
+		Aircraft aircraft = ((AircraftAgent) agent).getAircraft();
+		AircraftProfile profile = aircraft.getProfile();
+		double speed = Math.max(aircraft.getSpeed(), profile.maxSpeed);
+		double altitude = Math.max(profile.maxAltitude, position.altitude * 100);
+		return speed + altitude / 200 + aircraft.getSimulator().getWindSpeed();
+	}
+	
+	@Override
+	protected double getHeuristic(SearchContext context, Node from, Node to)
+	{
+		return ((SpatialNode) from).getHeuristicTo(to, context.getAgent(), this);
+	}
+	
+	@Override
+	protected double getCost(SearchContext context, Node from, Node to)
+	{
+		return ((SpatialNode) from).getCostTo(to, context.getAgent());
+	}
+	
+	@Override
+	protected List<Node> getSuccessors(SearchContext context, Node node)
 	{
 		// Only return successors that are not occupied in the reservation table
 		ArrayList<Node> successors = new ArrayList<>();
 		for(Node successor : adjacencyList.get(node))
 		{
-			double time = node.g + getCost(node, successor);
+			double time = context.getG(node) + getCost(context, node, successor);
 			if(((SpatialNode)successor).altitude != ((SpatialNode)node).altitude)
 			{
 				// Change in altitude, check the whole altitude block is free
 				SpatialNode[] blockNodes = getAltitudeBlockNodes((SpatialNode)node, (SpatialNode)successor);
-				boolean free = true;
-				for(Node blockNode : blockNodes)
-				{
-					if(!isNodeFreeAtTime(blockNode, time))
-					{
-						// Block not free
-						free = false;
-						break;
-					}
-				}
-				if(free)
+				if(areNodesFreeAtTime(blockNodes, time))
 				{
 					// Block is free, return the successor
 					successors.add(successor);
@@ -57,7 +170,7 @@ public class SpatialWHCAStar extends WHCAStar
 				}
 			}
 		}
-		if(isNodeFreeAtTime(node, node.g + getCost(node, node)))
+		if(isNodeFreeAtTime(node, context.getG(node) + getCost(context, node, node)))
 		{
 			// Add the option of 'waiting' on the same node
 			successors.add(node); 
@@ -67,31 +180,32 @@ public class SpatialWHCAStar extends WHCAStar
 	}
 	
 	@Override
-	protected Path constructPath(Node from, Node to)
+	protected Path constructPath(SearchContext context, Node from, Node to)
 	{
 		Path path = new Path();
 		Node current = to;
-		path.addToPath(to);
+		path.addToPath(to, context.getG(to));
 		
-		while(current.previous != null)
+		while(context.getPrevious(current) != null)
 		{
 			// Build the path
-			double time = current.previous.g;
+			Node previous = context.getPrevious(current);
+			double time = context.getG(previous);
 						
 			// Get the altitude block of nodes to reserve
-			SpatialNode[] blockNodes = getAltitudeBlockNodes((SpatialNode)current, (SpatialNode)current.previous);
+			SpatialNode[] blockNodes = getAltitudeBlockNodes((SpatialNode)current, (SpatialNode)previous);
 			
 			// If the g value is greater than the normal cost, then the aircraft is to hold at this node
-			while(time < current.g)
+			while(time < context.getG(current))
 			{
 				for(Node node : blockNodes)
-					reserveNodeAtTime(node, time);
-				path.addToPath(current);
-				time += getCost(current.previous, current); // This has been changed! Original way current to current
+					reserveNodeAtTime(node, time, context.getAgent());
+				path.addToPath(current, context.getG(current));
+				time += getCost(context, previous, current); // This has been changed! Original way current to current
 			}			
 			
 			// Next node
-			current = current.previous;
+			current = previous;
 			if(current.equals(from))
 				break;
 		}
@@ -5,7 +5,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TestAStarAlgorithm.class, TestGraphBuilder.class })
+@SuiteClasses({ TestAStarAlgorithm.class, TestAgentManager.class, TestGraphBuilder.class, TestReservationTable.class })
 public class ATCAutomationTests
 {
 
@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -11,6 +12,8 @@ import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AStar;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.IGraph;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
 import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Path;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.SearchContext;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.WHCAStar;
 
 public class TestAStarAlgorithm
 {
@@ -25,6 +28,109 @@ public class TestAStarAlgorithm
 		testShortestPath(new AStar(), "0 : 3 8 14;1 : 10 19;2 : 5 11 18 19;3 : 0 14 18;4 : 7;5 : 2;6 : 12 14;7 : 4 8;8 : 0 7;9 : 12 18;10 : 1 11;11 : 2 10 18;12 : 6 9;13 : 19;14 : 0 3 6 16 18;15 : 16;16 : 14 15 17;17 : 16;18 : 2 3 9 11 14 19;19 : 1 2 13 18;", "15", "4", "15 16 14 0 8 7 4");
 	}
 
+	/*
+	 * Test that searches running on several threads at once over the same graph find the same paths as one at a time
+	 */
+	@Test
+	public void testConcurrentSearches() throws Exception
+	{
+		final AStar graph = new AStar();
+		generateGraphObject(graph, "0 : 3 8 14;1 : 10 19;2 : 5 11 18 19;3 : 0 14 18;4 : 7;5 : 2;6 : 12 14;7 : 4 8;8 : 0 7;9 : 12 18;10 : 1 11;11 : 2 10 18;12 : 6 9;13 : 19;14 : 0 3 6 16 18;15 : 16;16 : 14 15 17;17 : 16;18 : 2 3 9 11 14 19;19 : 1 2 13 18;");
+		final List<Node> nodes = new ArrayList<>(graph.getAllNodes());
+		
+		// The paths between every pair of nodes, found one at a time
+		final List<String> expected = new ArrayList<>();
+		for(Node from : nodes)
+		{
+			for(Node to : nodes)
+			{
+				expected.add(graph.findPath(from, to).toString());
+			}
+		}
+		
+		// The same paths, found by several threads at once
+		final List<String> failures = new ArrayList<>();
+		Thread threads[] = new Thread[4];
+		for(int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					SearchContext context = new SearchContext();
+					for(int repeat = 0; repeat < 50; repeat++)
+					{
+						int i = 0;
+						for(Node from : nodes)
+						{
+							for(Node to : nodes)
+							{
+								try
+								{
+									String path = graph.findPath(from, to, context).toString();
+									if(!path.equals(expected.get(i)))
+									{
+										synchronized(failures)
+										{
+											failures.add(from + " to " + to + ": " + path);
+										}
+									}
+								} catch (Throwable e)
+								{
+									synchronized(failures)
+									{
+										failures.add(from + " to " + to + ": " + e);
+									}
+								}
+								i++;
+							}
+						}
+					}
+				}
+				
+			});
+			threads[t].start();
+		}
+		for(Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals("[]", failures.toString());
+	}
+	
+	/*
+	 * Test that a graph searching the nodes of another finds the same paths, keeps its own reservations,
+	 * and that neither graph's nodes can be changed once they are shared
+	 */
+	@Test
+	public void testSharedNodes() throws Exception
+	{
+		WHCAStar graph = new WHCAStar(100);
+		GridNode nodes[][] = GridNode.buildGraphFromGrid(graph, new int[6][6]);
+		WHCAStar shared = new WHCAStar(graph, 100);
+		assertEquals(graph.getCardinality(), shared.getCardinality());
+		assertEquals(graph.getNumberOfEdges(), shared.getNumberOfEdges());
+		
+		String path = graph.findPath(nodes[0][0], nodes[5][5]).toString();
+		int reservations = graph.copyReservationTable().size();
+		assertTrue(reservations > 0);
+		assertEquals(0, shared.copyReservationTable().size());
+		assertEquals(path, shared.findPath(nodes[0][0], nodes[5][5]).toString());
+		assertEquals(reservations, shared.copyReservationTable().size());
+		
+		for(AStar owner : new AStar[] { graph, shared })
+		{
+			try
+			{
+				owner.addNode(new GridNode(6, 6), new ArrayList<Node>());
+				fail("The nodes of a shared graph were changed");
+			} catch (IllegalStateException e)
+			{
+				// Expected
+			}
+		}
+	}
 	
 	private void testShortestPath(AStar graph, String graphStr, String fromStr, String toStr, String expectedStr)
 	{
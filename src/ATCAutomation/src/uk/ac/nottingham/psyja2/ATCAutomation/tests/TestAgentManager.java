@@ -0,0 +1,129 @@
+package uk.ac.nottingham.psyja2.ATCAutomation.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AgentManager;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Path;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.WHCAStar;
+
+public class TestAgentManager
+{
+
+	private static final double WINDOW_SIZE = 10;
+
+	/*
+	 * Test that planning groups of agents that can't interact at the same time gives the same paths as planning them in turn
+	 */
+	@Test
+	public void testParallelGroups()
+	{
+		List<RecordingAgent> sequential = planCrossingAgents(1);
+		List<RecordingAgent> parallel = planCrossingAgents(4);
+
+		for(int i = 0; i < sequential.size(); i++)
+		{
+			assertNotNull(sequential.get(i).path);
+			assertEquals(sequential.get(i).path.toString(), parallel.get(i).path.toString());
+		}
+	}
+
+	/*
+	 * Test that replanning the lowest priority agent on its own, around the others' reservations,
+	 * gives it the same path
+	 */
+	@Test
+	public void testReplanOneAgent()
+	{
+		List<RecordingAgent> agents = planCrossingAgents(1);
+		RecordingAgent agent = agents.get(agents.size() - 1);
+		AgentManager manager = agent.getManager();
+		String path = agent.path.toString();
+
+		agent.path = null;
+		manager.recalculatePath(agent);
+		assertEquals(path, agent.path.toString());
+
+		// Replanning again puts back the reservations it releases
+		int reservations = manager.graph.copyReservationTable().size();
+		manager.recalculatePath(agent);
+		assertEquals(path, agent.path.toString());
+		assertEquals(reservations, manager.graph.copyReservationTable().size());
+	}
+
+	/*
+	 * Two clusters of agents crossing each other's paths, at opposite ends of a long grid
+	 */
+	private List<RecordingAgent> planCrossingAgents(int planningThreads)
+	{
+		WHCAStar graph = new WHCAStar(WINDOW_SIZE) {
+
+			@Override
+			public boolean canInteract(Agent agentA, Node positionA, Agent agentB, Node positionB)
+			{
+				// Agents move one square per unit of time
+				GridNode nodeA = (GridNode) positionA;
+				GridNode nodeB = (GridNode) positionB;
+				double reach = 2 * (getWindowSize() + getReservationTime());
+				return Math.abs(nodeA.x - nodeB.x) + Math.abs(nodeA.y - nodeB.y) <= reach;
+			}
+
+		};
+		GridNode nodes[][] = GridNode.buildGraphFromGrid(graph, new int[8][80]);
+
+		AgentManager manager = new AgentManager(graph, false);
+		manager.setPlanningThreads(planningThreads);
+		List<RecordingAgent> agents = new ArrayList<>();
+		for(int cluster = 0; cluster < 2; cluster++)
+		{
+			int x = cluster * 70;
+			for(int i = 0; i < 4; i++)
+			{
+				agents.add(new RecordingAgent(nodes[i * 2][x + i], nodes[7 - i * 2][x + 9 - i]));
+				agents.add(new RecordingAgent(nodes[7 - i][x], nodes[i][x + 9]));
+			}
+		}
+		for(Agent agent : agents)
+		{
+			manager.addAgent(agent);
+		}
+
+		manager.recalculatePaths();
+		manager.update();
+		if(planningThreads > 1)
+			assertEquals(agents.size() / 2, manager.getLargestGroupSize());
+		else
+			assertEquals(agents.size(), manager.getLargestGroupSize());
+		return agents;
+	}
+
+	private static class RecordingAgent extends Agent
+	{
+
+		private Path path;
+
+		public RecordingAgent(Node start, Node goal)
+		{
+			super(start, goal);
+		}
+
+		public AgentManager getManager()
+		{
+			return manager;
+		}
+
+		@Override
+		public void runPath(Path path)
+		{
+			this.path = path;
+		}
+
+	}
+
+}
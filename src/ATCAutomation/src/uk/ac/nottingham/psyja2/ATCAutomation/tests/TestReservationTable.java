@@ -0,0 +1,114 @@
+package uk.ac.nottingham.psyja2.ATCAutomation.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.AStar;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Agent;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.Node;
+import uk.ac.nottingham.psyja2.ATCAutomation.PathFinding.ReservationTable;
+
+public class TestReservationTable
+{
+
+	/*
+	 * Test the table against checking every reservation in turn, with overlapping reservations of
+	 * different lengths, before and after one agent's reservations are released
+	 */
+	@Test
+	public void testReservations()
+	{
+		AStar graph = new AStar();
+		List<Node> nodes = new ArrayList<>();
+		for(int i = 0; i < 10; i++)
+		{
+			Node node = new SimpleNode(Integer.toString(i));
+			graph.addNode(node, new ArrayList<Node>());
+			nodes.add(node);
+		}
+		Agent agents[] = new Agent[] { new Agent(nodes.get(0), nodes.get(1)), new Agent(nodes.get(2), nodes.get(3)) };
+
+		ReservationTable table = new ReservationTable();
+		long emptyMemory = table.getMemoryUsage();
+		List<Object[]> expected = new ArrayList<>();
+		Random random = new Random(1);
+		for(int i = 0; i < 500; i++)
+		{
+			Node node = nodes.get(random.nextInt(nodes.size()));
+			double start = random.nextInt(200) / 2D;
+			double end = start + random.nextInt(20) / 2D;
+			Agent agent = agents[random.nextInt(agents.length)];
+			table.reserve(node, start, end, agent);
+			expected.add(new Object[] { node, start, end, agent });
+		}
+		assertEquals(500, table.size());
+		assertTrue(table.getMemoryUsage() > emptyMemory);
+		checkTable(table, nodes, expected);
+
+		// The copy doesn't change with the original
+		ReservationTable copy = table.copy();
+		table.release(agents[0]);
+		List<Object[]> remaining = new ArrayList<>();
+		for(Object[] reservation : expected)
+		{
+			if(reservation[3] != agents[0])
+				remaining.add(reservation);
+		}
+		assertEquals(remaining.size(), table.size());
+		checkTable(table, nodes, remaining);
+		checkTable(copy, nodes, expected);
+
+		table.clear();
+		assertEquals(0, table.size());
+		assertTrue(table.getReservedNodes().isEmpty());
+		assertTrue(table.isFree(nodes.get(0), 50));
+	}
+
+	/*
+	 * Test that reservations that have ended are dropped, and the rest can still be released by their agent
+	 */
+	@Test
+	public void testReleaseBefore()
+	{
+		AStar graph = new AStar();
+		Node node = new SimpleNode("0");
+		graph.addNode(node, new ArrayList<Node>());
+		Agent agent = new Agent(node, node);
+
+		ReservationTable table = new ReservationTable();
+		for(int i = 0; i < 10; i++)
+		{
+			table.reserve(node, i, i + 1, agent);
+		}
+		table.releaseBefore(5);
+		assertEquals(6, table.size());
+		assertTrue(table.isFree(node, 3.5));
+		assertFalse(table.isFree(node, 4));
+		table.release(agent);
+		assertEquals(0, table.size());
+		assertTrue(table.isFree(node, 7));
+	}
+
+	private void checkTable(ReservationTable table, List<Node> nodes, List<Object[]> reservations)
+	{
+		for(Node node : nodes)
+		{
+			for(double time = -1; time <= 111; time += 0.25)
+			{
+				boolean free = true;
+				for(Object[] reservation : reservations)
+				{
+					if(reservation[0] == node && (Double) reservation[1] <= time && (Double) reservation[2] >= time)
+						free = false;
+				}
+				assertEquals(node + " at " + time, free, table.isFree(node, time));
+			}
+		}
+	}
+
+}
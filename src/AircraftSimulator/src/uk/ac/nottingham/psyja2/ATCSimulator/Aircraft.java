@@ -1,9 +1,12 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The Aircraft class represents a single aircraft within the simulation.
@@ -16,27 +19,43 @@ public class Aircraft
 {
 	
 	private static double EARTH_RADIUS = 3440.0647948164D; // Earth radius in nautical miles
-	protected double heading;
-	protected double speed;
-	protected double altitude;
+	private Simulator simulator; // The simulator the aircraft flies in, which provides the wind
+	protected AircraftStateStore store; // Holds the position, altitude, heading, speed and airborne time
+	protected int slot; // Slot id of this aircraft within the store
 	protected Coordinate location;
-	protected volatile List<Instruction> instructions;
+	protected Instruction[] instructions = new Instruction[Instruction.NUMBER_OF_SLOTS]; // The instruction in each slot (or null)
+	protected Queue<Command> commands = new ConcurrentLinkedQueue<Command>(); // Sent to the aircraft, applied at the start of the next update
 	protected String callsign;
 	protected AircraftProfile profile;
 	protected boolean isAtMaxCruise = false;
-	protected Double airborneTime = 0D;
+	private Instruction[] completedInstructions = new Instruction[Instruction.NUMBER_OF_SLOTS]; // Completed in the last update
+	private int numberOfCompletedInstructions;
 	
 	public final static int MAX_CRUISE_SPEED = -1;
 	
 	public Aircraft(String callsign, Coordinate start, double heading, double speed, double altitude, AircraftProfile profile)
 	{
+		this(null, callsign, start, heading, speed, altitude, profile);
+	}
+	
+	/**
+	 * Create an aircraft that will fly in the given simulator
+	 * @param simulator the simulator the aircraft will be added to (null for the default instance)
+	 */
+	public Aircraft(Simulator simulator, String callsign, Coordinate start, double heading, double speed, double altitude, AircraftProfile profile)
+	{
+		this.simulator = simulator;
+		// The aircraft has its own single slot store until it is added to a simulator
+		this.store = new AircraftStateStore(1);
+		this.slot = 0;
+		this.location = new Location();
 		this.callsign = callsign;
-		this.location = start;
-		this.heading = heading;
-		this.speed = speed;
-		this.altitude = altitude;
+		store.latitudes[slot] = start.getLatitude();
+		store.longitudes[slot] = start.getLongitude();
+		store.headings[slot] = heading;
+		store.speeds[slot] = speed;
+		store.altitudes[slot] = altitude;
 		this.profile = profile;
-		instructions = new CopyOnWriteArrayList<Instruction>();
 		
 		// Set the aircraft to max cruise speed mode (will always fly as fast as possible)
 		if(speed == MAX_CRUISE_SPEED)
@@ -48,24 +67,19 @@ public class Aircraft
 	
 	protected synchronized void updatePosition(double time)
 	{		
-		// Execute instructions
-		ArrayList<Instruction> complete = new ArrayList<Instruction>();
-		synchronized(instructions)
+		double previousAltitude = store.altitudes[slot];
+		
+		// Execute instructions, removing them from their slot when complete
+		for(int s = 0; s < instructions.length; s++)
 		{
-			for (Iterator<Instruction> it = instructions.iterator(); it.hasNext();)
-			{
-				Instruction i = it.next();
-				i.execute(this, time);
-				if(i.isComplete())
-				{
-					complete.add(i);
-				}
-			}
-			
-			// Remove complete instructions
-			for(Instruction i : complete)
+			Instruction i = instructions[s];
+			if(i == null)
+				continue;
+			i.execute(this, time);
+			if(i.isComplete())
 			{
-				instructions.remove(i);
+				instructions[s] = null;
+				completedInstructions[numberOfCompletedInstructions++] = i;
 			}
 		}
 		
@@ -73,51 +87,198 @@ public class Aircraft
 		// CREDIT: https://www.movable-type.co.uk/scripts/latlong.html
 		double distance = getGroundSpeed() * (time / 60f / 60f);
 		double headingR = getTrack() * (Math.PI / 180);
-		double lat1 = (location.getLatitude() * (Math.PI / 180));
-		double lng1 = (location.getLongitude() * (Math.PI / 180));
+		double lat1 = (store.latitudes[slot] * (Math.PI / 180));
+		double lng1 = (store.longitudes[slot] * (Math.PI / 180));
 		double lat2 = Math.asin(Math.sin(lat1) * Math.cos(distance / EARTH_RADIUS) + Math.cos(lat1) * Math.sin(distance / EARTH_RADIUS) * Math.cos(headingR));
 		double lng2 = (lng1 + Math.atan2(Math.sin(headingR) * Math.sin(distance / EARTH_RADIUS) * Math.cos(lat1), Math.cos(distance / EARTH_RADIUS) - Math.sin(lat1) * Math.sin(lat2)));
-		location.setLatitude(lat2 / (Math.PI / 180));
-		location.setLongitude(lng2 / (Math.PI / 180));
+		store.latitudes[slot] = lat2 / (Math.PI / 180);
+		store.longitudes[slot] = lng2 / (Math.PI / 180);
 		
 		// Ensure that the plane is at the maximum cruise speed
 		if(isAtMaxCruise)
 		{
-			speed = profile.maxSpeed - (altitude / 200);
+			store.speeds[slot] = profile.maxSpeed - (store.altitudes[slot] / 200);
 		}
 		
 		// Increment airborne time variable
-		synchronized(airborneTime)
+		store.airborneTimes[slot] += time;
+		
+		// Record the rate of climb or descent for the conflict alert
+		store.verticalRates[slot] = time > 0 ? (store.altitudes[slot] - previousAltitude) / time : 0;
+	}
+	
+	/**
+	 * Returns how long (in seconds) the aircraft will keep flying steadily: straight, at a constant airspeed
+	 * and climbing or descending at a constant rate, so it can be moved along a single great circle.
+	 * 0 if it is turning, changing speed or about to finish an instruction
+	 */
+	protected double getSteadyTime()
+	{
+		if(!commands.isEmpty())
+			return 0;
+		if(isAtMaxCruise && store.speeds[slot] != profile.maxSpeed - (store.altitudes[slot] / 200))
+			return 0;
+		double steadyTime = Double.POSITIVE_INFINITY;
+		for(Instruction instruction : instructions)
 		{
-			airborneTime += time;
+			if(instruction != null)
+				steadyTime = Math.min(steadyTime, instruction.getSteadyTime(this));
 		}
+		return steadyTime;
 	}
 	
 	/**
-	 * Remove all instruction, the aircraft will continue on it's current trajectory
+	 * Fire the listeners of the instructions that completed during the last position update
 	 */
-	public synchronized void clearInstructions()
+	protected void fireCompletedInstructions()
 	{
-		synchronized(instructions)
+		for(int i = 0; i < numberOfCompletedInstructions; i++)
 		{
-			instructions.clear();
+			completedInstructions[i].fireDeferredInstructionComplete(this);
+			simulator.publishEvent(SimulatorEvent.INSTRUCTION_COMPLETE, this, null, completedInstructions[i]);
+			completedInstructions[i] = null;
 		}
+		numberOfCompletedInstructions = 0;
+	}
+	
+	/**
+	 * Move the aircraft's state into a slot of the simulator's store
+	 */
+	protected void attach(Simulator simulator, AircraftStateStore simulatorStore, int simulatorSlot)
+	{
+		this.simulator = simulator;
+		simulatorStore.copy(store, slot, simulatorSlot);
+		store = simulatorStore;
+		slot = simulatorSlot;
+	}
+	
+	/**
+	 * Move the aircraft's state out of the simulator's store into its own store
+	 */
+	protected void detach()
+	{
+		AircraftStateStore ownStore = new AircraftStateStore(1);
+		ownStore.copy(store, slot, 0);
+		store = ownStore;
+		slot = 0;
 	}
 	
-	public synchronized List<Instruction> getInstructions()
+	/**
+	 * Write the callsign, profile and state of the aircraft, so that read() can create it again
+	 */
+	void write(DataOutput out) throws IOException
 	{
-		synchronized(instructions)
+		out.writeUTF(callsign);
+		out.writeUTF(profile.type);
+		out.writeInt(profile.minSpeed);
+		out.writeInt(profile.maxSpeed);
+		out.writeInt(profile.climbRate);
+		out.writeInt(profile.maxAltitude);
+		out.writeDouble(store.latitudes[slot]);
+		out.writeDouble(store.longitudes[slot]);
+		out.writeDouble(store.altitudes[slot]);
+		out.writeDouble(store.headings[slot]);
+		out.writeDouble(store.speeds[slot]);
+		out.writeDouble(store.airborneTimes[slot]);
+		out.writeBoolean(isAtMaxCruise);
+	}
+	
+	/**
+	 * Create a new aircraft from one written by write()
+	 */
+	static Aircraft read(DataInput in) throws IOException
+	{
+		String callsign = in.readUTF();
+		AircraftProfile profile = new AircraftProfile(in.readUTF(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+		Aircraft aircraft = new Aircraft(callsign, new Coordinate(in.readDouble(), in.readDouble()), 0, 0, 0, profile);
+		aircraft.store.altitudes[0] = in.readDouble();
+		aircraft.store.headings[0] = in.readDouble();
+		aircraft.store.speeds[0] = in.readDouble();
+		aircraft.store.airborneTimes[0] = in.readDouble();
+		aircraft.isAtMaxCruise = in.readBoolean();
+		return aircraft;
+	}
+	
+	/**
+	 * Write the instructions the aircraft is following, with their progress,
+	 * and the commands waiting in its mailbox
+	 */
+	void writeInstructions(DataOutput out) throws IOException
+	{
+		for(Instruction instruction : instructions)
+		{
+			Instruction.writeCheckpoint(out, instruction);
+		}
+		Command[] waiting = commands.toArray(new Command[0]);
+		out.writeInt(waiting.length);
+		for(Command command : waiting)
 		{
-			return instructions;
+			Instruction.writeCheckpoint(out, command.instruction);
 		}
 	}
 	
+	/**
+	 * Replace the instructions and mailbox of the aircraft with ones written by writeInstructions()
+	 */
+	void readInstructions(DataInput in) throws IOException
+	{
+		for(int s = 0; s < instructions.length; s++)
+		{
+			instructions[s] = Instruction.readCheckpoint(in);
+		}
+		commands.clear();
+		int waiting = in.readInt();
+		for(int i = 0; i < waiting; i++)
+		{
+			commands.add(new Command(Instruction.readCheckpoint(in)));
+		}
+	}
+	
+	/**
+	 * Remove all instruction, the aircraft will continue on it's current trajectory.<br>
+	 * Takes effect at the start of the next simulator update, in order with any instructions sent
+	 */
+	public void clearInstructions()
+	{
+		commands.add(new Command(null));
+	}
+	
+	/**
+	 * Returns a copy of the instructions the aircraft is following
+	 */
+	public List<Instruction> getInstructions()
+	{
+		List<Instruction> list = new ArrayList<Instruction>();
+		for(Instruction i : instructions)
+		{
+			if(i != null)
+				list.add(i);
+		}
+		return list;
+	}
+	
+	/**
+	 * Returns the simulator the aircraft flies in: the one it was created for or last added to,
+	 * otherwise the default instance
+	 */
+	public Simulator getSimulator()
+	{
+		if(simulator == null)
+			simulator = Simulator.getInstance();
+		return simulator;
+	}
+	
 	/**
 	 * Returns the current heading of the aircraft (the direction the aircraft is facing) [0 to 360]
 	 */
 	public double getHeading()
 	{
-		return heading;
+		return store.headings[slot];
+	}
+	
+	protected void setHeading(double heading)
+	{
+		store.headings[slot] = heading;
 	}
 	
 	/**
@@ -126,11 +287,13 @@ public class Aircraft
 	public double getTrack()
 	{
 		// Treat the aircraft and wind as two vectors
+		double heading = store.headings[slot];
 		double tas = getTrueAirSpeed();
 		double v1X = Math.sin(toRadians(heading)) * tas;
 		double v1Y = Math.cos(toRadians(heading)) * tas;
-		double v2X = -Math.sin(toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
-		double v2Y = -Math.cos(toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
+		Simulator simulator = getSimulator();
+		double v2X = -Math.sin(toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
+		double v2Y = -Math.cos(toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
 		double sumX = (v1X + v2X);
 		double sumY = (v1Y + v2Y);
 		double angle = Math.atan(sumX / sumY);
@@ -148,7 +311,12 @@ public class Aircraft
 	 */
 	public double getSpeed()
 	{
-		return speed;
+		return store.speeds[slot];
+	}
+	
+	protected void setSpeed(double speed)
+	{
+		store.speeds[slot] = speed;
 	}
 	
 	/**
@@ -157,7 +325,7 @@ public class Aircraft
 	public double getTrueAirSpeed()
 	{
 		// TAS formula from: https://www.ivao.aero/training/documentation/books/PP_ADC_airspeed.pdf
-		return speed + (altitude / 200);
+		return store.speeds[slot] + (store.altitudes[slot] / 200);
 	}
 	
 	/**
@@ -166,11 +334,13 @@ public class Aircraft
 	public double getGroundSpeed()
 	{		
 		// Treat the aircraft and wind as two vectors
+		double heading = store.headings[slot];
 		double tas = getTrueAirSpeed();
 		double v1X = Math.sin(toRadians(heading)) * tas;
 		double v1Y = Math.cos(toRadians(heading)) * tas;
-		double v2X = -Math.sin(toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
-		double v2Y = -Math.cos(toRadians(Simulator.getInstance().getWindDirection())) * Simulator.getInstance().getWindSpeed();
+		Simulator simulator = getSimulator();
+		double v2X = -Math.sin(toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
+		double v2Y = -Math.cos(toRadians(simulator.getWindDirection())) * simulator.getWindSpeed();
 		double sumX = v1X + v2X;
         double sumY = v1Y + v2Y;
 
@@ -183,7 +353,12 @@ public class Aircraft
 	 */
 	public double getAltitude()
 	{
-		return altitude;
+		return store.altitudes[slot];
+	}
+	
+	protected void setAltitude(double altitude)
+	{
+		store.altitudes[slot] = altitude;
 	}
 	
 	/**
@@ -218,10 +393,15 @@ public class Aircraft
 	
 	public double getAirborneTime()
 	{
-		synchronized(airborneTime)
-		{
-			return airborneTime;
-		}
+		return store.airborneTimes[slot];
+	}
+	
+	/**
+	 * Returns the rate of climb (positive) or descent (negative) over the last update, in feet per second
+	 */
+	public double getVerticalRate()
+	{
+		return store.verticalRates[slot];
 	}
 
 	private double toRadians(double angle)
@@ -233,4 +413,51 @@ public class Aircraft
 	{
 		return radians / (Math.PI / 180);
 	}
+	
+	/**
+	 * A command waiting in the aircraft's mailbox: an instruction to add, or null to clear all instructions
+	 */
+	static class Command
+	{
+		
+		final Instruction instruction;
+		
+		Command(Instruction instruction)
+		{
+			this.instruction = instruction;
+		}
+		
+	}
+	
+	/**
+	 * The aircraft's location, read from and written to the store
+	 */
+	private class Location extends Coordinate
+	{
+		
+		@Override
+		public double getLatitude()
+		{
+			return store.latitudes[slot];
+		}
+		
+		@Override
+		public void setLatitude(double latitude)
+		{
+			store.latitudes[slot] = latitude;
+		}
+		
+		@Override
+		public double getLongitude()
+		{
+			return store.longitudes[slot];
+		}
+		
+		@Override
+		public void setLongitude(double longitude)
+		{
+			store.longitudes[slot] = longitude;
+		}
+		
+	}
 }
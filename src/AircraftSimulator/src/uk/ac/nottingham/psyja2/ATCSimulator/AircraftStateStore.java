@@ -0,0 +1,70 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Holds the changing state of aircraft (position, altitude, heading, speed, airborne time and vertical rate)
+ * in packed arrays indexed by slot id, so the simulator can update and compare aircraft
+ * by walking arrays rather than following references to lots of small objects.<br>
+ * An Aircraft is a view onto one slot of a store
+ * @author Josh Argent
+ *
+ */
+class AircraftStateStore
+{
+
+	double[] latitudes;
+	double[] longitudes;
+	double[] altitudes;
+	double[] headings;
+	double[] speeds;
+	double[] airborneTimes;
+	double[] verticalRates; // Feet per second over the last update
+
+	/**
+	 * @param capacity the initial number of slots
+	 */
+	AircraftStateStore(int capacity)
+	{
+		latitudes = new double[capacity];
+		longitudes = new double[capacity];
+		altitudes = new double[capacity];
+		headings = new double[capacity];
+		speeds = new double[capacity];
+		airborneTimes = new double[capacity];
+		verticalRates = new double[capacity];
+	}
+
+	/**
+	 * Make sure the store has room for the given slot
+	 */
+	void ensureCapacity(int slot)
+	{
+		if(slot < latitudes.length)
+			return;
+		int capacity = Math.max(slot + 1, latitudes.length * 2);
+		latitudes = Arrays.copyOf(latitudes, capacity);
+		longitudes = Arrays.copyOf(longitudes, capacity);
+		altitudes = Arrays.copyOf(altitudes, capacity);
+		headings = Arrays.copyOf(headings, capacity);
+		speeds = Arrays.copyOf(speeds, capacity);
+		airborneTimes = Arrays.copyOf(airborneTimes, capacity);
+		verticalRates = Arrays.copyOf(verticalRates, capacity);
+	}
+
+	/**
+	 * Copy the state of a slot in another store into a slot of this store
+	 */
+	void copy(AircraftStateStore from, int fromSlot, int toSlot)
+	{
+		ensureCapacity(toSlot);
+		latitudes[toSlot] = from.latitudes[fromSlot];
+		longitudes[toSlot] = from.longitudes[fromSlot];
+		altitudes[toSlot] = from.altitudes[fromSlot];
+		headings[toSlot] = from.headings[fromSlot];
+		speeds[toSlot] = from.speeds[fromSlot];
+		airborneTimes[toSlot] = from.airborneTimes[fromSlot];
+		verticalRates[toSlot] = from.verticalRates[fromSlot];
+	}
+
+}
@@ -1,5 +1,8 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * An instruction to make an aircraft climb/decend to an assigned altitude
  * @author Josh Argent
@@ -8,6 +11,8 @@ package uk.ac.nottingham.psyja2.ATCSimulator;
 public class AltitudeInstruction extends Instruction
 {
 
+	private static double APPROACH_TIME = 1; // Seconds before reaching the altitude it is approached in normal updates
+	
 	private double altitude;
 	
 	/**
@@ -26,22 +31,44 @@ public class AltitudeInstruction extends Instruction
 		double climbAmount = (aircraft.profile.climbRate / 60) * time;
 		
 		// Climb or decend the aircraft
-		if(aircraft.altitude < altitude)
+		double currentAltitude = aircraft.getAltitude();
+		if(currentAltitude < altitude)
 		{
-			aircraft.altitude += Math.min(climbAmount, altitude - aircraft.altitude);
+			aircraft.setAltitude(currentAltitude + Math.min(climbAmount, altitude - currentAltitude));
 		}
-		else if(aircraft.altitude > altitude)
+		else if(currentAltitude > altitude)
 		{
-			aircraft.altitude -= Math.min(climbAmount, aircraft.altitude - altitude);
+			aircraft.setAltitude(currentAltitude - Math.min(climbAmount, currentAltitude - altitude));
 		}
 
 		// Test if the instruction is complete
-		if(aircraft.altitude == altitude)
+		if(aircraft.getAltitude() == altitude)
 		{
 			fireInstructionComplete(aircraft);
 		}
 	}
 
+	@Override
+	protected double getSteadyTime(Aircraft aircraft)
+	{
+		// Climbs or descends at a constant rate until it is about to reach the altitude
+		double timeToAltitude = Math.abs(altitude - aircraft.getAltitude()) / (aircraft.profile.climbRate / 60D);
+		return Math.max(0, timeToAltitude - APPROACH_TIME);
+	}
+
+	@Override
+	public int getSlot()
+	{
+		return VERTICAL;
+	}
+
+	@Override
+	protected void write(DataOutput out) throws IOException
+	{
+		out.writeByte(ALTITUDE_TYPE);
+		out.writeDouble(altitude);
+	}
+
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,98 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * A short term conflict alert: a prediction that two aircraft will lose separation
+ * (come within 1000ft and 5NM of each other) if they keep their current ground speed vectors and vertical rates.<br>
+ * Alerts are ordered by urgency, the soonest loss of separation first, then the closest approach
+ * @author Josh Argent
+ *
+ */
+public class ConflictAlert implements Comparable<ConflictAlert>
+{
+
+	private final Aircraft aircraftA;
+	private final Aircraft aircraftB;
+	private final double time;
+	private final double timeToLoss;
+	private final double timeToClosest;
+	private final double closestDistance;
+	private final double closestVerticalDistance;
+
+	ConflictAlert(Aircraft aircraftA, Aircraft aircraftB, double time, double timeToLoss, double timeToClosest,
+			double closestDistance, double closestVerticalDistance)
+	{
+		this.aircraftA = aircraftA;
+		this.aircraftB = aircraftB;
+		this.time = time;
+		this.timeToLoss = timeToLoss;
+		this.timeToClosest = timeToClosest;
+		this.closestDistance = closestDistance;
+		this.closestVerticalDistance = closestVerticalDistance;
+	}
+
+	public Aircraft getAircraftA()
+	{
+		return aircraftA;
+	}
+
+	public Aircraft getAircraftB()
+	{
+		return aircraftB;
+	}
+
+	/**
+	 * Returns the simulator time the prediction was made at (in seconds since start)
+	 */
+	public double getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the time until separation is lost (in seconds), 0 if it already has been
+	 */
+	public double getTimeToLoss()
+	{
+		return timeToLoss;
+	}
+
+	/**
+	 * Returns the time until the closest point of approach within the horizon (in seconds)
+	 */
+	public double getTimeToClosest()
+	{
+		return timeToClosest;
+	}
+
+	/**
+	 * Returns the horizontal distance between the aircraft at the closest point of approach (in metres)
+	 */
+	public double getClosestDistance()
+	{
+		return closestDistance;
+	}
+
+	/**
+	 * Returns the vertical distance between the aircraft at the closest point of approach (in feet)
+	 */
+	public double getClosestVerticalDistance()
+	{
+		return closestVerticalDistance;
+	}
+
+	@Override
+	public int compareTo(ConflictAlert alert)
+	{
+		if(timeToLoss != alert.timeToLoss)
+			return Double.compare(timeToLoss, alert.timeToLoss);
+		return Double.compare(closestDistance, alert.closestDistance);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%s/%s: separation lost in %.0fs, closest %.1fNM %.0fft in %.0fs", aircraftA.getCallsign(), aircraftB.getCallsign(),
+				timeToLoss, closestDistance / 1852, closestVerticalDistance, timeToClosest);
+	}
+
+}
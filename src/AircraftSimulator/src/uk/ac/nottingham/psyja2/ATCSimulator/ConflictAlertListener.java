@@ -0,0 +1,16 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Implementable interface to listen for short term conflict alerts,
+ * warnings that two aircraft are predicted to lose separation within the alert horizon
+ * @author Josh Argent
+ *
+ */
+public interface ConflictAlertListener
+{
+	/**
+	 * Called on the simulator thread when a pair of aircraft is first predicted to lose separation.
+	 * The new alerts of an update are given most urgent first
+	 */
+	void conflictAlert(ConflictAlert alert);
+}
@@ -0,0 +1,274 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.Arrays;
+import java.util.List;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
+
+/**
+ * A broad phase for conflict detection. Aircraft are bucketed by altitude band
+ * and by latitude/longitude cells at least as large as the separation distance,
+ * so only aircraft in neighbouring cells need to have their exact separation checked.<br>
+ * The candidate pairs are a superset of the conflicting pairs and are returned in the
+ * same order as the nested loop over the aircraft list would visit them
+ * @author Josh Argent
+ *
+ */
+public class ConflictGrid
+{
+
+	private static double EARTH_RADIUS = 6371e3;
+	private static double MARGIN = 1.001; // Cells are made slightly larger to absorb rounding errors
+	private static double MAX_LATITUDE = 80; // Beyond this the longitude cells get too wide to be useful
+
+	// Bits used for each part of a cell key, the remaining low bits hold the aircraft index
+	private static int BAND_BITS = 12;
+	private static int LAT_BITS = 12;
+	private static int LNG_BITS = 13;
+	private static int INDEX_BITS = 64 - 1 - BAND_BITS - LAT_BITS - LNG_BITS;
+
+	private final double distance;
+	private final double altitude;
+	private final double latCellSize;
+
+	// Positions of the aircraft being searched, by their index in the array
+	private double[] latitudes = new double[16];
+	private double[] longitudes = new double[16];
+	private double[] altitudes = new double[16];
+
+	private long[] entries = new long[16];
+	private long[] pairs = new long[16];
+	private int numberOfPairs;
+
+	/**
+	 * Create a grid for finding pairs of aircraft that may be within the given separation
+	 * @param distance the horizontal separation (in metres)
+	 * @param altitude the vertical separation (in feet)
+	 */
+	public ConflictGrid(double distance, double altitude)
+	{
+		this.distance = distance;
+		this.altitude = altitude;
+
+		// Two points less than the distance apart are less than this many degrees of latitude apart
+		latCellSize = Math.toDegrees(distance / EARTH_RADIUS) * MARGIN;
+	}
+
+	/**
+	 * Find all pairs of aircraft that are close enough to possibly be within separation.<br>
+	 * Afterwards, getPairCount(), getFirst() and getSecond() return the pairs (as indices into the array)
+	 * sorted by the first and then second index
+	 */
+	public void findCandidates(Aircraft[] aircrafts)
+	{
+		int n = aircrafts.length;
+		ensureCapacity(n);
+		for(int i = 0; i < n; i++)
+		{
+			Aircraft aircraft = aircrafts[i];
+			latitudes[i] = aircraft.store.latitudes[aircraft.slot];
+			longitudes[i] = aircraft.store.longitudes[aircraft.slot];
+			altitudes[i] = aircraft.store.altitudes[aircraft.slot];
+		}
+		findCandidates(latitudes, longitudes, altitudes, n);
+	}
+
+	/**
+	 * Find all pairs of aircraft in a snapshot that are close enough to possibly be within separation,
+	 * as findCandidates(Aircraft[]) with the pairs as indices into the list
+	 */
+	void findCandidates(List<AircraftState> states)
+	{
+		int n = states.size();
+		ensureCapacity(n);
+		for(int i = 0; i < n; i++)
+		{
+			AircraftState state = states.get(i);
+			latitudes[i] = state.getLatitude();
+			longitudes[i] = state.getLongitude();
+			altitudes[i] = state.getAltitude();
+		}
+		findCandidates(latitudes, longitudes, altitudes, n);
+	}
+
+	/**
+	 * Find all pairs of the first n positions that are close enough to possibly be within separation
+	 */
+	void findCandidates(double[] latitudes, double[] longitudes, double[] altitudes, int n)
+	{
+		numberOfPairs = 0;
+		if(n < 2)
+			return;
+		if(n >= 1 << INDEX_BITS)
+		{
+			bruteForce(n);
+			return;
+		}
+
+		// Find the extent of the traffic
+		double maxAbsLat = 0;
+		double minLng = Double.POSITIVE_INFINITY;
+		double maxLng = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < n; i++)
+		{
+			maxAbsLat = Math.max(maxAbsLat, Math.abs(latitudes[i]));
+			minLng = Math.min(minLng, longitudes[i]);
+			maxLng = Math.max(maxLng, longitudes[i]);
+		}
+
+		// The longitude cell width must hold at the highest latitude in use
+		// (haversine: sin(dLng/2) < sin(d/2R) / cos(lat) for any pair closer than d)
+		double sinHalf = Math.sin(distance / (2 * EARTH_RADIUS)) / Math.cos(Math.toRadians(maxAbsLat));
+		if(maxAbsLat > MAX_LATITUDE || sinHalf >= 1)
+		{
+			bruteForce(n);
+			return;
+		}
+		double lngCellSize = Math.toDegrees(2 * Math.asin(sinHalf)) * MARGIN;
+
+		// Pairs across the antimeridian are close but the cells would be far apart
+		if(minLng < -180 + lngCellSize || maxLng > 180 - lngCellSize)
+		{
+			bruteForce(n);
+			return;
+		}
+
+		// Bucket the aircraft by cell
+		if(entries.length < n)
+			entries = new long[n * 2];
+		int count = 0;
+		for(int i = 0; i < n; i++)
+		{
+			double lat = latitudes[i];
+			double lng = longitudes[i];
+			double alt = altitudes[i];
+
+			// Aircraft without a valid position can never conflict
+			if(Double.isNaN(lat) || Double.isNaN(lng) || Double.isNaN(alt))
+				continue;
+
+			long band = (long) Math.floor(alt / altitude) + (1L << (BAND_BITS - 1));
+			long latCell = (long) Math.floor((lat + 90) / latCellSize);
+			long lngCell = (long) Math.floor((lng + 180) / lngCellSize);
+			if(band < 1 || band >= (1L << BAND_BITS) - 1 || latCell < 1 || latCell >= (1L << LAT_BITS) - 1
+					|| lngCell < 1 || lngCell >= (1L << LNG_BITS) - 1)
+			{
+				bruteForce(n);
+				return;
+			}
+
+			entries[count++] = (cellKey(band, latCell, lngCell) << INDEX_BITS) | i;
+		}
+		Arrays.sort(entries, 0, count);
+
+		// Pair each aircraft with aircraft later in the list in the 27 neighbouring cells
+		long indexMask = (1L << INDEX_BITS) - 1;
+		for(int e = 0; e < count; e++)
+		{
+			long cell = entries[e] >>> INDEX_BITS;
+			int i = (int) (entries[e] & indexMask);
+			long band = cell >>> (LAT_BITS + LNG_BITS);
+			long latCell = (cell >>> LNG_BITS) & ((1L << LAT_BITS) - 1);
+			long lngCell = cell & ((1L << LNG_BITS) - 1);
+
+			for(long b = band - 1; b <= band + 1; b++)
+			{
+				for(long la = latCell - 1; la <= latCell + 1; la++)
+				{
+					long first = cellKey(b, la, lngCell - 1) << INDEX_BITS;
+					long last = (cellKey(b, la, lngCell + 1) << INDEX_BITS) | indexMask;
+
+					// Cells adjacent in longitude are adjacent in the sorted entries
+					for(int k = lowerBound(first, count); k < count && entries[k] <= last; k++)
+					{
+						int j = (int) (entries[k] & indexMask);
+						if(j > i)
+							addPair(i, j);
+					}
+				}
+			}
+		}
+
+		// Sort the pairs so they are visited in list order
+		Arrays.sort(pairs, 0, numberOfPairs);
+	}
+
+	/**
+	 * Returns the number of candidate pairs found by the last search
+	 */
+	public int getPairCount()
+	{
+		return numberOfPairs;
+	}
+
+	/**
+	 * Returns the index of the first aircraft of a candidate pair
+	 */
+	public int getFirst(int pair)
+	{
+		return (int) (pairs[pair] >>> 32);
+	}
+
+	/**
+	 * Returns the index of the second aircraft of a candidate pair
+	 */
+	public int getSecond(int pair)
+	{
+		return (int) pairs[pair];
+	}
+
+	/**
+	 * Every pair is a candidate
+	 */
+	private void bruteForce(int n)
+	{
+		numberOfPairs = 0;
+		for(int i = 0; i < n; i++)
+		{
+			for(int j = i + 1; j < n; j++)
+			{
+				addPair(i, j);
+			}
+		}
+	}
+
+	private void ensureCapacity(int n)
+	{
+		if(latitudes.length >= n)
+			return;
+		latitudes = new double[n * 2];
+		longitudes = new double[n * 2];
+		altitudes = new double[n * 2];
+	}
+
+	private void addPair(int i, int j)
+	{
+		if(numberOfPairs == pairs.length)
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+		pairs[numberOfPairs++] = ((long) i << 32) | j;
+	}
+
+	private static long cellKey(long band, long latCell, long lngCell)
+	{
+		return (band << (LAT_BITS + LNG_BITS)) | (latCell << LNG_BITS) | lngCell;
+	}
+
+	/**
+	 * Index of the first entry greater than or equal to the key
+	 */
+	private int lowerBound(long key, int count)
+	{
+		int low = 0;
+		int high = count;
+		while(low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if(entries[mid] < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+}
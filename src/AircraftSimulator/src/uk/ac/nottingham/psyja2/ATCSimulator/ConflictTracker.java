@@ -0,0 +1,348 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Keeps track of which pairs of aircraft are currently in conflict, keyed on the aircraft's
+ * integer slot ids.<br>
+ * Pairs are held in an open addressing hash table so that no objects are allocated
+ * while the set of conflicts is not changing. Each entry records the time the conflict
+ * episode started and the time it was last seen; when an episode ends its duration is recorded.<br>
+ * Not thread safe, apart from isInConflict() which reads a snapshot that is only replaced
+ * when the set of conflicting aircraft changes
+ * @author Josh Argent
+ *
+ */
+public class ConflictTracker
+{
+
+	private static long EMPTY = -1;
+	private static double MAX_LOAD = 0.5;
+
+	private long[] keys;
+	private double[] startTimes;
+	private double[] lastSeenTimes;
+	private int[] seenTicks;
+	private int size;
+	private int tick;
+	private boolean changed;
+
+	private volatile long[] conflictingSlots = new long[0];
+
+	private int numberOfEpisodes;
+	private double totalEpisodeTime;
+	private double longestEpisode;
+
+	public ConflictTracker()
+	{
+		allocate(64);
+	}
+
+	/**
+	 * Start a new round of conflict checks.
+	 * Any conflict not reported with conflict() before the next endTick() has ended
+	 */
+	public void beginTick()
+	{
+		tick++;
+	}
+
+	/**
+	 * Report that a pair of aircraft is in conflict
+	 * @param slotA the slot id of the first aircraft
+	 * @param slotB the slot id of the second aircraft
+	 * @param time the simulator time
+	 * @return true if this is a new conflict (the pair was not in conflict at the last check)
+	 */
+	public boolean conflict(int slotA, int slotB, double time)
+	{
+		long key = pairKey(slotA, slotB);
+		int index = find(key);
+		if(keys[index] == key)
+		{
+			// The conflict is still going on
+			lastSeenTimes[index] = time;
+			seenTicks[index] = tick;
+			return false;
+		}
+
+		// This is a new conflict!
+		if(size + 1 > keys.length * MAX_LOAD)
+		{
+			grow();
+			index = find(key);
+		}
+		keys[index] = key;
+		startTimes[index] = time;
+		lastSeenTimes[index] = time;
+		seenTicks[index] = tick;
+		size++;
+		changed = true;
+		return true;
+	}
+
+	/**
+	 * Finish a round of conflict checks, ending any conflict that was not reported
+	 */
+	public void endTick()
+	{
+		int i = 0;
+		while(i < keys.length)
+		{
+			if(keys[i] != EMPTY && seenTicks[i] != tick)
+			{
+				// Removal may shift another entry into this position, so check it again
+				remove(i);
+			}
+			else
+			{
+				i++;
+			}
+		}
+		publish();
+	}
+
+	/**
+	 * End all conflicts involving the given aircraft (eg. when it leaves the simulation)
+	 */
+	public void removeSlot(int slot)
+	{
+		int i = 0;
+		while(i < keys.length)
+		{
+			if(keys[i] != EMPTY && ((int) (keys[i] >>> 32) == slot || (int) keys[i] == slot))
+			{
+				remove(i);
+			}
+			else
+			{
+				i++;
+			}
+		}
+		publish();
+	}
+
+	/**
+	 * Returns true if the aircraft in the given slot was in conflict at the last check.
+	 * Safe to call from any thread
+	 */
+	public boolean isInConflict(int slot)
+	{
+		long[] snapshot = conflictingSlots;
+		int word = slot >>> 6;
+		if(slot < 0 || word >= snapshot.length)
+			return false;
+		return (snapshot[word] & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Returns the time the current conflict between the two aircraft started, or -1 if they are not in conflict
+	 */
+	public double getStartTime(int slotA, int slotB)
+	{
+		long key = pairKey(slotA, slotB);
+		int index = find(key);
+		if(keys[index] == key)
+			return startTimes[index];
+		return -1;
+	}
+
+	/**
+	 * Returns the number of pairs currently in conflict
+	 */
+	public int getNumberOfConflicts()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of conflict episodes that have ended
+	 */
+	public int getNumberOfEpisodes()
+	{
+		return numberOfEpisodes;
+	}
+
+	/**
+	 * Returns the total duration of all conflict episodes that have ended (in seconds)
+	 */
+	public double getTotalEpisodeTime()
+	{
+		return totalEpisodeTime;
+	}
+
+	/**
+	 * Returns the duration of the longest conflict episode that has ended (in seconds)
+	 */
+	public double getLongestEpisode()
+	{
+		return longestEpisode;
+	}
+
+	/**
+	 * Write the current conflicts and the episode totals, for a checkpoint.
+	 * Entries keep their position in the table, so a restored tracker ends conflicts in the same order
+	 */
+	void write(DataOutput out) throws IOException
+	{
+		out.writeInt(keys.length);
+		out.writeInt(size);
+		for(int i = 0; i < keys.length; i++)
+		{
+			if(keys[i] != EMPTY)
+			{
+				out.writeInt(i);
+				out.writeLong(keys[i]);
+				out.writeDouble(startTimes[i]);
+				out.writeDouble(lastSeenTimes[i]);
+			}
+		}
+		out.writeInt(numberOfEpisodes);
+		out.writeDouble(totalEpisodeTime);
+		out.writeDouble(longestEpisode);
+	}
+	
+	/**
+	 * Replace the state of the tracker with one written by write()
+	 */
+	void read(DataInput in) throws IOException
+	{
+		allocate(in.readInt());
+		size = in.readInt();
+		for(int n = 0; n < size; n++)
+		{
+			int i = in.readInt();
+			keys[i] = in.readLong();
+			startTimes[i] = in.readDouble();
+			lastSeenTimes[i] = in.readDouble();
+			seenTicks[i] = tick;
+		}
+		numberOfEpisodes = in.readInt();
+		totalEpisodeTime = in.readDouble();
+		longestEpisode = in.readDouble();
+		changed = true;
+		publish();
+	}
+
+	private static long pairKey(int slotA, int slotB)
+	{
+		int low = Math.min(slotA, slotB);
+		int high = Math.max(slotA, slotB);
+		return ((long) low << 32) | high;
+	}
+
+	/**
+	 * Returns the index holding the key, or the empty index where it would be inserted
+	 */
+	private int find(long key)
+	{
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while(keys[index] != EMPTY && keys[index] != key)
+		{
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Remove the entry at the given index, recording the episode and shifting
+	 * back any entries that would no longer be found
+	 */
+	private void remove(int index)
+	{
+		double duration = lastSeenTimes[index] - startTimes[index];
+		numberOfEpisodes++;
+		totalEpisodeTime += duration;
+		longestEpisode = Math.max(longestEpisode, duration);
+
+		int mask = keys.length - 1;
+		int hole = index;
+		int i = (index + 1) & mask;
+		while(keys[i] != EMPTY)
+		{
+			int home = hash(keys[i]) & mask;
+			// Move the entry into the hole if the hole lies between its home and its position
+			if(((i - home) & mask) >= ((i - hole) & mask))
+			{
+				keys[hole] = keys[i];
+				startTimes[hole] = startTimes[i];
+				lastSeenTimes[hole] = lastSeenTimes[i];
+				seenTicks[hole] = seenTicks[i];
+				hole = i;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[hole] = EMPTY;
+		size--;
+		changed = true;
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		startTimes = new double[capacity];
+		lastSeenTimes = new double[capacity];
+		seenTicks = new int[capacity];
+		for(int i = 0; i < capacity; i++)
+			keys[i] = EMPTY;
+	}
+
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		double[] oldStartTimes = startTimes;
+		double[] oldLastSeenTimes = lastSeenTimes;
+		int[] oldSeenTicks = seenTicks;
+		allocate(oldKeys.length * 2);
+		for(int i = 0; i < oldKeys.length; i++)
+		{
+			if(oldKeys[i] != EMPTY)
+			{
+				int index = find(oldKeys[i]);
+				keys[index] = oldKeys[i];
+				startTimes[index] = oldStartTimes[i];
+				lastSeenTimes[index] = oldLastSeenTimes[i];
+				seenTicks[index] = oldSeenTicks[i];
+			}
+		}
+	}
+
+	/**
+	 * Replace the snapshot of conflicting aircraft if the set of conflicts has changed
+	 */
+	private void publish()
+	{
+		if(!changed)
+			return;
+		changed = false;
+
+		int maxSlot = -1;
+		for(int i = 0; i < keys.length; i++)
+		{
+			if(keys[i] != EMPTY)
+				maxSlot = Math.max(maxSlot, (int) keys[i]); // the second slot is always the highest
+		}
+		long[] snapshot = new long[maxSlot < 0 ? 0 : (maxSlot >>> 6) + 1];
+		for(int i = 0; i < keys.length; i++)
+		{
+			if(keys[i] != EMPTY)
+			{
+				int slotA = (int) (keys[i] >>> 32);
+				int slotB = (int) keys[i];
+				snapshot[slotA >>> 6] |= 1L << slotA;
+				snapshot[slotB >>> 6] |= 1L << slotB;
+			}
+		}
+		conflictingSlots = snapshot;
+	}
+
+}
@@ -11,6 +11,13 @@ public class Coordinate
 	private double latitude;
 	private double longitude;
 	
+	/**
+	 * For subclasses that store the latitude and longitude elsewhere
+	 */
+	protected Coordinate()
+	{
+	}
+	
 	/**
 	 * Construct from decimal latitude and longitude values (in degrees)
 	 * @param lat
@@ -95,7 +102,7 @@ public class Coordinate
 	 */
 	protected double getX(double minLong, double maxLong, int displayWidth)
 	{
-		return displayWidth * ((longitude - minLong) / (maxLong - minLong));
+		return displayWidth * ((getLongitude() - minLong) / (maxLong - minLong));
 	}
 	
 	/**
@@ -103,7 +110,7 @@ public class Coordinate
 	 */
 	protected double getY(double minLat, double maxLat, int displayHeight)
 	{
-		return displayHeight - (displayHeight * ((latitude - minLat) / (maxLat - minLat)));
+		return displayHeight - (displayHeight * ((getLatitude() - minLat) / (maxLat - minLat)));
 	}
 	
 }
@@ -0,0 +1,119 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Chooses the length of the next update for an event driven simulator.<br>
+ * While every aircraft is flying steadily (straight, at a constant speed and rate of climb, see {@link Aircraft#getSteadyTime()})
+ * its path until the next event is a single great circle, so it can be moved there in one update rather than many small ones.
+ * The update is cut short so it ends before any aircraft's motion changes, before any pair of aircraft could lose
+ * separation and at any time asked for with {@link Simulator#requestUpdateAt(double)}.
+ * As soon as an aircraft starts to turn or change speed the simulator goes back to normal sized updates
+ * @author Josh Argent
+ *
+ */
+class EventStepper
+{
+
+	private static double EARTH_RADIUS = 6371e3;
+	private static double KNOTS_TO_METRES_PER_SECOND = 1852D / 3600D;
+	private static double SAFETY = 0.9; // Only use this much of the time before a pair could lose separation
+
+	private final double distance;
+	private final double altitude;
+	private final double timeStep;
+
+	private ConflictGrid grid;
+	private double gridDistance;
+	private double gridAltitude;
+	private double[] speeds = new double[16]; // Metres per second
+	private double[] verticalRates = new double[16]; // Feet per second, up or down
+
+	/**
+	 * @param distance the horizontal separation (in metres)
+	 * @param altitude the vertical separation (in feet)
+	 * @param timeStep the length of a normal update, all updates are a whole number of these
+	 */
+	EventStepper(double distance, double altitude, double timeStep)
+	{
+		this.distance = distance;
+		this.altitude = altitude;
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * Returns the length of the next update (in seconds), a whole number of time steps between one and maxTime
+	 * @param aircrafts the aircraft in the simulation, after their instructions have been applied
+	 * @param maxTime the longest the update can be (in seconds)
+	 */
+	double nextStep(Aircraft[] aircrafts, double maxTime)
+	{
+		// Until the first aircraft changes what it is doing
+		double step = maxTime;
+		int n = aircrafts.length;
+		if(speeds.length < n)
+		{
+			speeds = new double[n * 2];
+			verticalRates = new double[n * 2];
+		}
+		double maxSpeed = 0;
+		double maxVerticalRate = 0;
+		for(int i = 0; i < n && step >= timeStep * 2; i++)
+		{
+			Aircraft aircraft = aircrafts[i];
+			step = Math.min(step, aircraft.getSteadyTime());
+			speeds[i] = aircraft.getGroundSpeed() * KNOTS_TO_METRES_PER_SECOND;
+			verticalRates[i] = aircraft.instructions[Instruction.VERTICAL] != null ? aircraft.profile.climbRate / 60D : 0;
+			maxSpeed = Math.max(maxSpeed, speeds[i]);
+			maxVerticalRate = Math.max(maxVerticalRate, verticalRates[i]);
+		}
+		if(step < timeStep * 2 || n < 2)
+			return Math.max(timeStep, Math.floor(step / timeStep) * timeStep);
+
+		// Until the first pair could lose separation, if they flew straight at each other
+		double searchDistance = distance + 2 * maxSpeed * step;
+		double searchAltitude = altitude + 2 * maxVerticalRate * step;
+		if(grid == null || searchDistance > gridDistance || searchAltitude > gridAltitude
+				|| searchDistance * 2 < gridDistance || searchAltitude * 2 < gridAltitude)
+		{
+			gridDistance = searchDistance * 1.25;
+			gridAltitude = searchAltitude * 1.25;
+			grid = new ConflictGrid(gridDistance, gridAltitude);
+		}
+		grid.findCandidates(aircrafts);
+		for(int p = 0; p < grid.getPairCount(); p++)
+		{
+			int a = grid.getFirst(p);
+			int b = grid.getSecond(p);
+			Aircraft aircraftA = aircrafts[a];
+			Aircraft aircraftB = aircrafts[b];
+			
+			// Separation is only lost once they are both horizontally and vertically too close
+			double verticalDistance = Math.abs(aircraftA.store.altitudes[aircraftA.slot] - aircraftB.store.altitudes[aircraftB.slot]);
+			double verticalTime = 0;
+			if(verticalDistance >= altitude)
+			{
+				if(verticalRates[a] + verticalRates[b] == 0)
+					continue;
+				verticalTime = (verticalDistance - altitude) / (verticalRates[a] + verticalRates[b]);
+			}
+			double horizontalTime = (distanceBetween(aircraftA, aircraftB) - distance) / (speeds[a] + speeds[b]);
+			step = Math.min(step, Math.max(horizontalTime, verticalTime) * SAFETY);
+		}
+
+		return Math.max(timeStep, Math.floor(step / timeStep) * timeStep);
+	}
+
+	/**
+	 * Returns the distance between two aircraft (in metres)
+	 */
+	private static double distanceBetween(Aircraft aircraftA, Aircraft aircraftB)
+	{
+		// CREDIT: https://www.movable-type.co.uk/scripts/latlong.html
+		double lat1 = Math.toRadians(aircraftA.store.latitudes[aircraftA.slot]);
+		double lat2 = Math.toRadians(aircraftB.store.latitudes[aircraftB.slot]);
+		double deltaLat = lat2 - lat1;
+		double deltaLng = Math.toRadians(aircraftB.store.longitudes[aircraftB.slot] - aircraftA.store.longitudes[aircraftA.slot]);
+		double h = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
+		return EARTH_RADIUS * 2 * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+	}
+
+}
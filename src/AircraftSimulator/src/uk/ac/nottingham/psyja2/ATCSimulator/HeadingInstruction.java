@@ -1,5 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Instruction to make an aircraft turn to a given heading.
  * When the heading is reached, the instruction is complete
@@ -9,6 +13,8 @@ package uk.ac.nottingham.psyja2.ATCSimulator;
 public class HeadingInstruction extends Instruction
 {
 	
+	static double TURN_RATE = 3; // Degrees per second
+	
 	private double heading;
 	
 	/**
@@ -19,6 +25,15 @@ public class HeadingInstruction extends Instruction
 		this.heading = normaliseHeading(heading);
 	}
 
+	/**
+	 * Start turning to a new heading, reusing this instruction
+	 */
+	void restart(double heading)
+	{
+		this.heading = normaliseHeading(heading);
+		reset();
+	}
+
 	@Override
 	public void execute(Aircraft aircraft, double time)
 	{
@@ -26,33 +41,45 @@ public class HeadingInstruction extends Instruction
 		if(!isComplete())
 		{
 			// Calculate the angle to turn through
-			double changeAmount = time * 3;
+			double changeAmount = time * TURN_RATE;
 			
 			// Calculate the difference between the heading and target heading
-			double difference = heading - aircraft.heading;
+			double difference = heading - aircraft.getHeading();
 		    difference = normaliseHeading(difference);
 		    
-		    // See if the will complete this iteration or not
-		    if(difference < changeAmount)
+		    // See if the will complete this iteration or not, turning either way
+		    // (a long update must not carry the aircraft round past its heading)
+		    if(difference < changeAmount || 360 - difference < changeAmount)
 		    {
 		    	// Turn complete
-		    	aircraft.heading = heading;
+		    	aircraft.setHeading(heading);
 	    		fireInstructionComplete(aircraft);
 		    }
 		    else
 		    {
 			    // Work out which way to turn
 			    if(difference > 180)
-			    	aircraft.heading -= changeAmount; // right turn
+			    	aircraft.setHeading(aircraft.getHeading() - changeAmount); // right turn
 			    else
-			    	aircraft.heading += changeAmount; // left turn
+			    	aircraft.setHeading(aircraft.getHeading() + changeAmount); // left turn
 		    }
 		    
 		    // Normalise the heading value to 0 to 360
-		    aircraft.heading = normaliseHeading(aircraft.heading);
+		    aircraft.setHeading(normaliseHeading(aircraft.getHeading()));
 		}		
 	}
 	
+	/**
+	 * Returns the number of degrees the aircraft has left to turn, either way
+	 */
+	double getTurnRemaining(Aircraft aircraft)
+	{
+		if(isComplete())
+			return 0;
+		double difference = normaliseHeading(heading - aircraft.getHeading());
+		return Math.min(difference, 360 - difference);
+	}
+	
 	/*
 	 * Will take an angle and normalise it to between 1 and 360
 	 */
@@ -62,6 +89,27 @@ public class HeadingInstruction extends Instruction
 	}
 
 
+	@Override
+	public int getSlot()
+	{
+		return LATERAL;
+	}
+
+	@Override
+	protected void write(DataOutput out) throws IOException
+	{
+		out.writeByte(HEADING_TYPE);
+		out.writeDouble(heading);
+	}
+	
+	static HeadingInstruction readParameters(DataInput in) throws IOException
+	{
+		// The heading was normalised when it was written, normalising it again could change it slightly
+		HeadingInstruction instruction = new HeadingInstruction(0);
+		instruction.heading = in.readDouble();
+		return instruction;
+	}
+
 	@Override
 	public String toString()
 	{
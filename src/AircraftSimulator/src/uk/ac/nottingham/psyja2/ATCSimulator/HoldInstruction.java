@@ -1,5 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint.WaypointType;
 
 /**
@@ -20,6 +24,7 @@ public class HoldInstruction extends Instruction
 	private double clock; // used for tracking how long each leg has lasted
 	private HeadingInstruction headingInstruction;
 	private WaypointInstruction waypointInstruction;
+	private InstructionListener inboundListener;
 	private int currentLeg = 0; // The current leg of the pattern
 								// 0 = outbound, 1 inbound
 	
@@ -76,23 +81,16 @@ public class HoldInstruction extends Instruction
 				if(clock >= legLength)
 				{
 					// Time up, switch to flying inbound to the waypoint
-					waypointInstruction = new WaypointInstruction(holdingPoint);
-					waypointInstruction.addInstructionCompleteListener(new InstructionListener() {
-
-						@Override
-						public void onInstructionComplete(Instruction instruction, Aircraft aircraft)
-						{
-							// Simply revert to flying outbound again
-							// Turn aircraft to the outbound heading
-							headingInstruction = new HeadingInstruction(outboundHeading);
-							clock = 0; // reset the clock
-							currentLeg = 0;			
-							
-							// Announce that the instruction is complete
-							fireInstructionComplete(aircraft);
-						}
-						
-					});
+					// The waypoint instruction and its listener are reused on every lap
+					if(waypointInstruction == null)
+					{
+						waypointInstruction = new WaypointInstruction(holdingPoint);
+						listenToInboundLeg();
+					}
+					else
+					{
+						waypointInstruction.reset();
+					}
 					currentLeg = 1;
 				}
 			}
@@ -106,6 +104,80 @@ public class HoldInstruction extends Instruction
 
 	}
 
+	/**
+	 * Start flying outbound again when the aircraft reaches the holding point
+	 */
+	private void listenToInboundLeg()
+	{
+		inboundListener = new InstructionListener() {
+
+			@Override
+			public void onInstructionComplete(Instruction instruction, Aircraft aircraft)
+			{
+				// Simply revert to flying outbound again
+				// Turn aircraft to the outbound heading
+				headingInstruction.restart(outboundHeading);
+				clock = 0; // reset the clock
+				currentLeg = 0;			
+				
+				// Announce that the instruction is complete
+				fireInstructionComplete(aircraft);
+			}
+			
+		};
+		waypointInstruction.addInstructionCompleteListener(inboundListener);
+	}
+
+	@Override
+	public int getSlot()
+	{
+		return LATERAL;
+	}
+
+	@Override
+	protected void write(DataOutput out) throws IOException
+	{
+		out.writeByte(HOLD_TYPE);
+		out.writeInt(legLength);
+		out.writeBoolean(holdingPoint != null);
+		if(holdingPoint != null)
+			holdingPoint.write(out);
+	}
+	
+	@Override
+	protected void writeState(DataOutput out) throws IOException
+	{
+		super.writeState(out);
+		out.writeBoolean(initial);
+		out.writeDouble(clock);
+		out.writeDouble(outboundHeading);
+		out.writeInt(currentLeg);
+		writeCheckpoint(out, headingInstruction);
+		writeCheckpoint(out, waypointInstruction);
+	}
+	
+	@Override
+	protected void readState(DataInput in) throws IOException
+	{
+		super.readState(in);
+		initial = in.readBoolean();
+		clock = in.readDouble();
+		outboundHeading = in.readDouble();
+		currentLeg = in.readInt();
+		headingInstruction = (HeadingInstruction) readCheckpoint(in);
+		waypointInstruction = (WaypointInstruction) readCheckpoint(in);
+		if(waypointInstruction != null)
+			listenToInboundLeg();
+	}
+	
+	static HoldInstruction readParameters(DataInput in) throws IOException
+	{
+		int legLength = in.readInt();
+		if(in.readBoolean())
+			return new HoldInstruction(legLength, Waypoint.read(in));
+		return new HoldInstruction(legLength);
+	}
+
 	@Override
 	public String toString()
 	{
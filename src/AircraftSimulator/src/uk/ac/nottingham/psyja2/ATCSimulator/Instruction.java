@@ -1,6 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
-import java.util.HashSet;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A generic instruction that provides basic methods for implementing an instruction.
@@ -10,8 +13,23 @@ import java.util.HashSet;
 public abstract class Instruction
 {
 	
+	// The slots an aircraft executes instructions in, one instruction of each kind can be followed at a time
+	public static final int VERTICAL = 0;
+	public static final int LATERAL = 1;
+	public static final int SPEED = 2;
+	static final int NUMBER_OF_SLOTS = 3;
+	
+	// Type codes written before an instruction's parameters
+	static final byte ALTITUDE_TYPE = 1;
+	static final byte HEADING_TYPE = 2;
+	static final byte SPEED_TYPE = 3;
+	static final byte WAYPOINT_TYPE = 4;
+	static final byte HOLD_TYPE = 5;
+	
 	private boolean complete = false;
-	private HashSet<InstructionListener> instructionListeners = new HashSet<InstructionListener>();
+	boolean deferListeners = false; // Set for instructions sent to an aircraft, their listeners are fired by the simulator
+	private boolean listenersPending = false;
+	private volatile InstructionListener[] instructionListeners = new InstructionListener[0]; // Replaced, not modified, so firing needs no iterator
 	
 	/**
 	 * Execute the instruction on the aircraft over a specified amount of time (in seconds)
@@ -20,6 +38,24 @@ public abstract class Instruction
 	 */
 	public abstract void execute(Aircraft aircraft, double time);
 	
+	/**
+	 * Returns how long (in seconds) the instruction will leave the aircraft flying steadily (see {@link Aircraft#getSteadyTime()}),
+	 * used by an event driven simulator to move it in a single update. The default is 0: the instruction is changing the aircraft now
+	 */
+	protected double getSteadyTime(Aircraft aircraft)
+	{
+		return 0;
+	}
+	
+	/**
+	 * Returns the slot the instruction is executed in (VERTICAL, LATERAL or SPEED).
+	 * Sending an instruction replaces any instruction in the same slot
+	 */
+	public int getSlot()
+	{
+		return LATERAL;
+	}
+	
 	@Override
 	public abstract String toString();
 	
@@ -31,22 +67,121 @@ public abstract class Instruction
 		return complete;
 	}
 		
+	/**
+	 * Start the instruction again, so it can be reused rather than creating a new one
+	 */
+	protected void reset()
+	{
+		complete = false;
+		listenersPending = false;
+	}
+		
+	/**
+	 * Write the type code and parameters of the instruction, so that read() can create it again.
+	 * Only the parameters it was created with are written, not its progress
+	 * @throws IOException if the instruction can not be written
+	 */
+	protected void write(DataOutput out) throws IOException
+	{
+		throw new IOException(getClass().getName() + " can not be written");
+	}
+	
+	/**
+	 * Create a new instruction from one written by write()
+	 */
+	static Instruction read(DataInput in) throws IOException
+	{
+		byte type = in.readByte();
+		switch(type)
+		{
+			case ALTITUDE_TYPE: return new AltitudeInstruction(in.readDouble());
+			case HEADING_TYPE: return HeadingInstruction.readParameters(in);
+			case SPEED_TYPE: return new SpeedInstruction(in.readDouble());
+			case WAYPOINT_TYPE: return WaypointInstruction.readParameters(in);
+			case HOLD_TYPE: return HoldInstruction.readParameters(in);
+		}
+		throw new IOException("Unknown instruction type " + type);
+	}
+	
+	/**
+	 * Write the progress of the instruction, so that readState() can continue it from the same point.
+	 * Subclasses that keep their own progress write it after calling this
+	 */
+	protected void writeState(DataOutput out) throws IOException
+	{
+		out.writeBoolean(complete);
+		out.writeBoolean(deferListeners);
+		out.writeBoolean(listenersPending);
+	}
+	
+	/**
+	 * Continue from the progress written by writeState()
+	 */
+	protected void readState(DataInput in) throws IOException
+	{
+		complete = in.readBoolean();
+		deferListeners = in.readBoolean();
+		listenersPending = in.readBoolean();
+	}
+	
+	/**
+	 * Write an instruction (which may be null) with its progress, for a checkpoint
+	 */
+	static void writeCheckpoint(DataOutput out, Instruction instruction) throws IOException
+	{
+		out.writeBoolean(instruction != null);
+		if(instruction == null)
+			return;
+		instruction.write(out);
+		instruction.writeState(out);
+	}
+	
+	/**
+	 * Create an instruction written by writeCheckpoint(), with the same progress.
+	 * Its listeners are not restored, apart from the ones between the parts of an instruction
+	 */
+	static Instruction readCheckpoint(DataInput in) throws IOException
+	{
+		if(!in.readBoolean())
+			return null;
+		Instruction instruction = read(in);
+		instruction.readState(in);
+		return instruction;
+	}
+	
 	/**
 	 * Add an InstructionListener to this instruction
 	 * @param listener
 	 */
-	public void addInstructionCompleteListener(InstructionListener listener)
+	public synchronized void addInstructionCompleteListener(InstructionListener listener)
 	{
-		instructionListeners.add(listener);
+		for(InstructionListener l : instructionListeners)
+		{
+			if(l == listener)
+				return;
+		}
+		InstructionListener[] listeners = Arrays.copyOf(instructionListeners, instructionListeners.length + 1);
+		listeners[listeners.length - 1] = listener;
+		instructionListeners = listeners;
 	}
 	
 	/**
 	 * Remove an InstructionListener from this instruction
 	 * @param listener
 	 */
-	public void removeInstructionCompleteListener(InstructionListener listener)
+	public synchronized void removeInstructionCompleteListener(InstructionListener listener)
 	{
-		instructionListeners.remove(listener);
+		for(int i = 0; i < instructionListeners.length; i++)
+		{
+			if(instructionListeners[i] == listener)
+			{
+				InstructionListener[] listeners = new InstructionListener[instructionListeners.length - 1];
+				System.arraycopy(instructionListeners, 0, listeners, 0, i);
+				System.arraycopy(instructionListeners, i + 1, listeners, i, listeners.length - i);
+				instructionListeners = listeners;
+				return;
+			}
+		}
 	}
 	
 	/**
@@ -55,6 +190,28 @@ public abstract class Instruction
 	protected void fireInstructionComplete(Aircraft aircraft)
 	{
 		complete = true;
+		
+		// The simulator will fire the listeners once all aircraft have been updated
+		if(deferListeners)
+		{
+			listenersPending = true;
+			return;
+		}
+		
+		for(InstructionListener listener : instructionListeners)
+		{
+			listener.onInstructionComplete(this, aircraft);
+		}
+	}
+	
+	/**
+	 * Fire the InstructionListener's if the instruction completed during the last update
+	 */
+	void fireDeferredInstructionComplete(Aircraft aircraft)
+	{
+		if(!listenersPending)
+			return;
+		listenersPending = false;
 		for(InstructionListener listener : instructionListeners)
 		{
 			listener.onInstructionComplete(this, aircraft);
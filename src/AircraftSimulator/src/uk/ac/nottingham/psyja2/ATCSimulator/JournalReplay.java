@@ -0,0 +1,360 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import org.json.simple.parser.ParseException;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
+
+/**
+ * Plays back a journal written by {@link Simulator#startJournal(File)} into a fast time simulator,
+ * as fast as the CPU allows.<br>
+ * Each recorded event is fed in at the same update, and the same point within the update, as it happened,
+ * so the replay reproduces the positions of all aircraft and the conflicts between them exactly.
+ * The recorded conflicts are compared with the conflicts found by the replay
+ * @author Josh Argent
+ *
+ */
+public class JournalReplay
+{
+
+	private Simulator simulator;
+	private DataInputStream in;
+	private Aircraft[] aircraftBySlot = new Aircraft[64];
+
+	// The next record in the journal, read ahead of the simulator
+	private int nextType;
+	private int nextPhase;
+	private long nextTick;
+
+	private int matchedConflicts;
+	private int missingConflicts;
+	private int unexpectedConflicts;
+
+	/**
+	 * Open a journal and set the simulator to its starting conditions
+	 * @param file the journal file
+	 * @param simulator a fast time simulator that has not been started and has no aircraft
+	 * @throws IOException if the journal could not be read
+	 */
+	public JournalReplay(File file, Simulator simulator) throws IOException
+	{
+		if(!simulator.isFastTime() || simulator.isRunning())
+			throw new IllegalStateException("A journal can only be replayed by a fast time simulator that has not been started");
+		if(simulator.getNumberOfAircraft() > 0)
+			throw new IllegalStateException("A journal can only be replayed by a simulator without any aircraft");
+		this.simulator = simulator;
+
+		// Read the starting conditions
+		in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		if(in.readInt() != JournalWriter.MAGIC)
+		{
+			in.close();
+			throw new IOException(file.getName() + " is not a simulator journal");
+		}
+		boolean fixedTimeSteps = in.readBoolean();
+		double time = in.readDouble();
+		long tick = in.readLong();
+		simulator.setWindSpeed(in.readInt());
+		simulator.setWindDirection(in.readInt());
+		simulator.setTimeSpeed(in.readFloat());
+		nextTick = tick;
+		readNext();
+
+		simulator.startReplay(this, fixedTimeSteps, time, tick);
+		simulator.addConflictListener(new ConflictListener() {
+
+			@Override
+			public void conflictEvent(Aircraft aircraftA, Aircraft aircraftB)
+			{
+				checkConflict(aircraftA, aircraftB);
+			}
+
+		});
+	}
+
+	/**
+	 * Run the simulator until the end of the journal
+	 */
+	public void run() throws IOException
+	{
+		runUntil(Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Run the simulator until the given time or the end of the journal, whichever is first.
+	 * Can be called again to continue the replay
+	 * @param time the simulator time to stop at (in seconds since start)
+	 */
+	public void runUntil(double time) throws IOException
+	{
+		try
+		{
+			while(true)
+			{
+				// Feed in the events recorded between updates
+				replayEvents(simulator.getTick(), JournalWriter.BEFORE_UPDATE);
+				if(isFinished() || simulator.getTime() >= time)
+					break;
+				simulator.step();
+			}
+		} catch (UncheckedIOException e)
+		{
+			throw e.getCause();
+		}
+
+		if(isFinished())
+		{
+			simulator.stopReplay();
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns true when the simulator has reached the end of the journal
+	 */
+	public boolean isFinished()
+	{
+		return nextType == JournalWriter.END && simulator.getTick() >= nextTick;
+	}
+
+	/**
+	 * Returns the number of recorded conflicts that the replay also found
+	 */
+	public int getMatchedConflicts()
+	{
+		return matchedConflicts;
+	}
+
+	/**
+	 * Returns the number of recorded conflicts that the replay did not find
+	 */
+	public int getMissingConflicts()
+	{
+		return missingConflicts;
+	}
+
+	/**
+	 * Returns the number of conflicts found by the replay that were not recorded
+	 */
+	public int getUnexpectedConflicts()
+	{
+		return unexpectedConflicts;
+	}
+
+	/**
+	 * Feed in the events recorded up to the given phase of an update
+	 */
+	void replayEvents(long tick, int phase)
+	{
+		try
+		{
+			while(nextType != JournalWriter.END && (nextTick < tick || (nextTick == tick && nextPhase <= phase)))
+			{
+				if(nextType == JournalWriter.CONFLICT)
+				{
+					// A conflict from an earlier update that was not found again
+					readNumber();
+					readNumber();
+					missingConflicts++;
+				}
+				else
+				{
+					replayEvent();
+				}
+				readNext();
+			}
+		} catch (EOFException e)
+		{
+			// The journal was cut off part way through a record, end the replay here
+			nextType = JournalWriter.END;
+			nextTick = tick;
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Match a conflict found by the simulator with the next recorded conflict,
+	 * then feed in any events that were caused by it
+	 */
+	private void checkConflict(Aircraft aircraftA, Aircraft aircraftB)
+	{
+		try
+		{
+			long tick = simulator.getTick();
+			if(nextType == JournalWriter.CONFLICT && nextTick == tick)
+			{
+				int slotA = (int) readNumber();
+				int slotB = (int) readNumber();
+				readNext();
+				if(slotA == aircraftA.slot && slotB == aircraftB.slot)
+				{
+					matchedConflicts++;
+				}
+				else
+				{
+					missingConflicts++;
+					unexpectedConflicts++;
+				}
+			}
+			else
+			{
+				unexpectedConflicts++;
+			}
+
+			// Events from the conflict listeners
+			while(nextType != JournalWriter.END && nextType != JournalWriter.CONFLICT
+					&& nextTick == tick && nextPhase == JournalWriter.CONFLICT_CHECK)
+			{
+				replayEvent();
+				readNext();
+			}
+		} catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Apply the body of the current record to the simulator
+	 */
+	private void replayEvent() throws IOException
+	{
+		switch(nextType)
+		{
+			case JournalWriter.ADD:
+			{
+				int slot = (int) readNumber();
+				Aircraft aircraft = Aircraft.read(in);
+				simulator.addAircraft(aircraft);
+				if(aircraft.slot != slot)
+					throw new IOException("The journal does not match the simulator: " + aircraft.getCallsign() + " was added to slot " + aircraft.slot + " not " + slot);
+				if(slot >= aircraftBySlot.length)
+					aircraftBySlot = Arrays.copyOf(aircraftBySlot, Math.max(slot + 1, aircraftBySlot.length * 2));
+				aircraftBySlot[slot] = aircraft;
+				break;
+			}
+			case JournalWriter.REMOVE:
+			{
+				int slot = (int) readNumber();
+				simulator.removeAircraft(getAircraft(slot));
+				aircraftBySlot[slot] = null;
+				break;
+			}
+			case JournalWriter.INSTRUCTION:
+			{
+				Aircraft aircraft = getAircraft((int) readNumber());
+				simulator.sendInstruction(Instruction.read(in), aircraft);
+				break;
+			}
+			case JournalWriter.CLEAR:
+				getAircraft((int) readNumber()).clearInstructions();
+				break;
+			case JournalWriter.WIND_SPEED:
+				simulator.setWindSpeed(in.readInt());
+				break;
+			case JournalWriter.WIND_DIRECTION:
+				simulator.setWindDirection(in.readInt());
+				break;
+			case JournalWriter.TIME_SPEED:
+				simulator.setTimeSpeed(in.readFloat());
+				break;
+			default:
+				throw new IOException("Unknown journal record type " + nextType);
+		}
+	}
+
+	private Aircraft getAircraft(int slot) throws IOException
+	{
+		if(slot >= aircraftBySlot.length || aircraftBySlot[slot] == null)
+			throw new IOException("The journal refers to an aircraft that is not in the simulation (slot " + slot + ")");
+		return aircraftBySlot[slot];
+	}
+
+	/**
+	 * Read the type, phase and update number of the next record.
+	 * A journal that was not closed properly ends after its last complete record
+	 */
+	private void readNext() throws IOException
+	{
+		int header;
+		try
+		{
+			header = in.readUnsignedByte();
+		} catch (EOFException e)
+		{
+			nextType = JournalWriter.END;
+			nextPhase = JournalWriter.BEFORE_UPDATE;
+			nextTick++; // Finish the update the last record was in
+			return;
+		}
+		nextType = header & 0x0F;
+		nextPhase = header >>> 4;
+		nextTick += readNumber();
+	}
+
+	/**
+	 * Read a number written by JournalWriter.writeNumber()
+	 */
+	private long readNumber() throws IOException
+	{
+		long value = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while((b & 0x80) != 0);
+		return value;
+	}
+
+	/**
+	 * Replay a journal from the command line and print the final state of the simulation
+	 * @param args scenario_file journal_file [stop_time]
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if(args.length < 2)
+		{
+			System.out.println("Usage: JournalReplay scenario_file journal_file [stop_time]");
+			return;
+		}
+		Scenario scenario;
+		try
+		{
+			scenario = new Scenario(args[0]);
+		} catch (ParseException e)
+		{
+			System.out.println("Could not read the scenario file: " + e);
+			return;
+		}
+		double stopTime = args.length > 2 ? Double.valueOf(args[2]) : Double.POSITIVE_INFINITY;
+
+		long startTime = System.currentTimeMillis();
+		Simulator simulator = new Simulator(scenario, true, 1);
+		JournalReplay replay = new JournalReplay(new File(args[1]), simulator);
+		replay.runUntil(stopTime);
+		long duration = System.currentTimeMillis() - startTime;
+
+		System.out.println("Replayed " + simulator.getTick() + " updates to t=" + simulator.getTime() + "s in " + duration + "ms");
+		System.out.println("Conflicts: " + simulator.getNumberOfConflicts() + " (" + replay.getMatchedConflicts() + " matched, "
+				+ replay.getMissingConflicts() + " missing, " + replay.getUnexpectedConflicts() + " unexpected)");
+		for(AircraftState aircraft : simulator.getSnapshot().getAllAircraft())
+		{
+			System.out.println(aircraft.getCallsign() + " " + aircraft.getLatitude() + " " + aircraft.getLongitude() + " "
+					+ aircraft.getAltitude() + " " + aircraft.getHeading() + " " + aircraft.getSpeed());
+		}
+	}
+
+}
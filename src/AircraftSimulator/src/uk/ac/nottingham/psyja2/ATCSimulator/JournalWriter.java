@@ -0,0 +1,238 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes a compact binary journal of everything that changes the simulation from outside:
+ * aircraft added and removed, instructions, wind and time speed changes.<br>
+ * Every record is stamped with the number of simulator updates completed when it took effect,
+ * and the phase of the update it happened in, so {@link JournalReplay} can feed it back at exactly the same point.
+ * Conflicts are also recorded, so a replay can check that it reproduced the run.<br>
+ * Only called by the simulator while it holds its lock
+ * @author Josh Argent
+ *
+ */
+class JournalWriter
+{
+
+	static final int MAGIC = 0x41544A31; // "ATJ1"
+
+	// Record types
+	static final int ADD = 1;
+	static final int REMOVE = 2;
+	static final int INSTRUCTION = 3;
+	static final int CLEAR = 4;
+	static final int WIND_SPEED = 5;
+	static final int WIND_DIRECTION = 6;
+	static final int TIME_SPEED = 7;
+	static final int CONFLICT = 8;
+	static final int END = 9;
+
+	// Phases of an update, in the order they happen
+	static final int BEFORE_UPDATE = 0; // Between updates, or when instructions are applied at the start of an update
+	static final int AIRCRAFT_MOVED = 1; // While the listeners of completed instructions are fired
+	static final int CONFLICT_CHECK = 2; // While the conflict listeners are fired
+
+	private DataOutputStream out;
+	private long lastTick;
+	private boolean unflushed;
+
+	/**
+	 * Create the journal file and write the starting conditions of the simulation
+	 * @param fixedTimeSteps true if every update advances the time by a fixed step (fast time)
+	 */
+	JournalWriter(File file, boolean fixedTimeSteps, double time, long tick, int windSpeed, int windDirection, float timeSpeed) throws IOException
+	{
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeBoolean(fixedTimeSteps);
+		out.writeDouble(time);
+		out.writeLong(tick);
+		out.writeInt(windSpeed);
+		out.writeInt(windDirection);
+		out.writeFloat(timeSpeed);
+		lastTick = tick;
+	}
+
+	void aircraftAdded(long tick, int phase, Aircraft aircraft)
+	{
+		try
+		{
+			writeStamp(ADD, tick, phase);
+			writeNumber(aircraft.slot);
+			aircraft.write(out);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	void aircraftRemoved(long tick, int phase, Aircraft aircraft)
+	{
+		try
+		{
+			writeStamp(REMOVE, tick, phase);
+			writeNumber(aircraft.slot);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Record an instruction being applied to an aircraft (or its instructions being cleared if null)
+	 */
+	void instructionApplied(long tick, int phase, Aircraft aircraft, Instruction instruction)
+	{
+		try
+		{
+			if(instruction == null)
+			{
+				writeStamp(CLEAR, tick, phase);
+				writeNumber(aircraft.slot);
+				return;
+			}
+			writeStamp(INSTRUCTION, tick, phase);
+			writeNumber(aircraft.slot);
+			instruction.write(out);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	void windSpeedChanged(long tick, int phase, int windSpeed)
+	{
+		try
+		{
+			writeStamp(WIND_SPEED, tick, phase);
+			out.writeInt(windSpeed);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	void windDirectionChanged(long tick, int phase, int windDirection)
+	{
+		try
+		{
+			writeStamp(WIND_DIRECTION, tick, phase);
+			out.writeInt(windDirection);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	void timeSpeedChanged(long tick, int phase, float timeSpeed)
+	{
+		try
+		{
+			writeStamp(TIME_SPEED, tick, phase);
+			out.writeFloat(timeSpeed);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	void conflict(long tick, Aircraft aircraftA, Aircraft aircraftB)
+	{
+		try
+		{
+			writeStamp(CONFLICT, tick, CONFLICT_CHECK);
+			writeNumber(aircraftA.slot);
+			writeNumber(aircraftB.slot);
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Flush the records written during an update to the file,
+	 * so the journal is complete up to the last update if the program is killed
+	 */
+	void flush()
+	{
+		if(!unflushed || out == null)
+			return;
+		unflushed = false;
+		try
+		{
+			out.flush();
+		} catch (IOException e)
+		{
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Write the end of the journal and close the file
+	 * @param tick the number of updates completed, the replay runs until this point
+	 */
+	void close(long tick)
+	{
+		if(out == null)
+			return;
+		try
+		{
+			writeStamp(END, tick, BEFORE_UPDATE);
+			out.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		out = null;
+	}
+
+	/**
+	 * Write the record type and phase in a byte, followed by the number of updates since the last record
+	 */
+	private void writeStamp(int type, long tick, int phase) throws IOException
+	{
+		if(out == null)
+			throw new IOException("The journal is closed");
+		out.writeByte(type | (phase << 4));
+		writeNumber(tick - lastTick);
+		lastTick = tick;
+		unflushed = true;
+	}
+
+	/**
+	 * Write a non negative number in as few bytes as possible (7 bits per byte, high bit set if more follow)
+	 */
+	private void writeNumber(long value) throws IOException
+	{
+		while((value & ~0x7FL) != 0)
+		{
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * A journal with missing records can't be replayed, so stop writing it
+	 */
+	private void fail(IOException e)
+	{
+		if(out == null)
+			return;
+		e.printStackTrace();
+		try
+		{
+			out.close();
+		} catch (IOException e2)
+		{
+			e2.printStackTrace();
+		}
+		out = null;
+	}
+
+}
@@ -0,0 +1,66 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Solves when a pair of aircraft moving in straight lines at constant rates, relative to each other,
+ * are both horizontally and vertically too close. Used by the swept conflict check (over an update)
+ * and the short term conflict alert (over its horizon)
+ * @author Josh Argent
+ *
+ */
+final class LossOfSeparation
+{
+
+	private LossOfSeparation()
+	{
+	}
+
+	/**
+	 * Find the first time separation is lost between 0 and the given end time.
+	 * The position of B relative to A is (x, y, z) + (vx, vy, vz) t, horizontally in metres and vertically in feet
+	 * @param distance the horizontal separation (in metres)
+	 * @param altitude the vertical separation (in feet)
+	 * @return the first time separation is lost, or NaN if it is kept the whole time (or a position is NaN)
+	 */
+	static double findStart(double x, double y, double z, double vx, double vy, double vz,
+			double distance, double altitude, double endTime)
+	{
+		// Times the pair is horizontally within separation: |r + vt| < distance
+		double start = 0;
+		double end = endTime;
+		double speedSquared = vx * vx + vy * vy;
+		double dot = x * vx + y * vy;
+		double c = x * x + y * y - distance * distance;
+		if(speedSquared == 0)
+		{
+			if(c >= 0)
+				return Double.NaN;
+		}
+		else
+		{
+			double discriminant = dot * dot - speedSquared * c;
+			if(discriminant <= 0)
+				return Double.NaN;
+			double root = Math.sqrt(discriminant);
+			start = Math.max(start, (-dot - root) / speedSquared);
+			end = Math.min(end, (-dot + root) / speedSquared);
+		}
+
+		// Times the pair is vertically within separation: |z + vz t| < altitude
+		if(vz == 0)
+		{
+			if(Math.abs(z) >= altitude)
+				return Double.NaN;
+		}
+		else
+		{
+			double t1 = (-altitude - z) / vz;
+			double t2 = (altitude - z) / vz;
+			start = Math.max(start, Math.min(t1, t2));
+			end = Math.min(end, Math.max(t1, t2));
+		}
+
+		// Separation is lost if both happen at the same time (NaN positions fail this too)
+		return start < end ? start : Double.NaN;
+	}
+
+}
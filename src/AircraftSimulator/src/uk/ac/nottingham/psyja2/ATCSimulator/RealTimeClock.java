@@ -0,0 +1,167 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Keeps a real time simulator in step with the wall clock.<br>
+ * Each update has a deadline, worked out from when the clock was started (or the time speed last changed)
+ * rather than from when the last update finished, so the time taken by updates never builds up into drift.
+ * Updates that are missed are caught up at twice the normal rate rather than back to back, so a late update
+ * doesn't set off a burst of updates. If it falls more than a second behind it gives up on the missed time
+ * rather than trying to catch up forever.<br>
+ * Counts how often and by how much the updates are late, so a simulator that can't keep up is noticed.
+ * The counts can be read from any thread
+ * @author Josh Argent
+ *
+ */
+public class RealTimeClock
+{
+
+	private static long MAX_BACKLOG = 1000000000L; // Nanoseconds behind before the missed time is given up
+
+	private final double timeStep;
+
+	// The wall time (TimeSource.nanoTime()) that the simulator time was due, at the current speed
+	private volatile boolean started; // Can be stopped from outside the simulator thread
+	private long startNanos;
+	private double startTime;
+	private float speed;
+	private volatile long nextDeadline;
+	private long lastFinished; // When the last update finished, catching up updates are run at least half an interval apart
+	private volatile long interval; // Nanoseconds between updates at the current speed
+
+	private volatile long updates;
+	private volatile long overruns;
+	private volatile long worstLatency;
+	private volatile double lag;
+	private volatile double lostTime;
+
+	/**
+	 * @param timeStep the length of an update (in simulator seconds)
+	 */
+	RealTimeClock(double timeStep)
+	{
+		this.timeStep = timeStep;
+	}
+
+	/**
+	 * Returns when (in TimeSource.nanoTime()) the update that ends at the given time should be run.<br>
+	 * Starts the clock again if it was stopped or the speed has changed, and gives up on
+	 * the missed time if the simulator has fallen too far behind. A late update is run half an
+	 * interval after the last one finished, rather than straight away
+	 * @param time the simulator time now
+	 * @param speed the time speed, above 0
+	 * @param now TimeSource.nanoTime()
+	 */
+	long getDeadline(double time, float speed, long now)
+	{
+		if(!started || speed != this.speed)
+			start(time, speed, now);
+		long deadline = startNanos + (long) ((time + timeStep - startTime) / speed * 1e9);
+		if(now - deadline > MAX_BACKLOG)
+		{
+			// Due now, with the updates after it an interval apart again
+			lostTime += (now - deadline) / 1e9 * speed;
+			start(time, speed, now - interval);
+			deadline = now;
+		}
+		nextDeadline = deadline;
+		return Math.max(deadline, lastFinished + interval / 2);
+	}
+
+	/**
+	 * Record that the update has finished, its lateness is measured from when it was due rather than when it was run
+	 * @param now TimeSource.nanoTime()
+	 */
+	void updateFinished(long now)
+	{
+		long latency = now - nextDeadline;
+		lastFinished = now;
+		updates++;
+		if(latency > worstLatency)
+			worstLatency = latency;
+		// Finished after the next update was due
+		if(latency > interval)
+			overruns++;
+		lag = Math.max(0, latency - interval) / 1e9 * speed;
+	}
+
+	/**
+	 * Stop the clock while paused or when the simulator time jumps, it starts again from the simulator time at the next update
+	 */
+	void stop()
+	{
+		started = false;
+		lag = 0;
+	}
+
+	private void start(double time, float speed, long now)
+	{
+		// The next update is due one update from now
+		started = true;
+		startNanos = now;
+		startTime = time;
+		this.speed = speed;
+		interval = (long) (timeStep / speed * 1e9);
+		lastFinished = now - interval;
+	}
+
+	/**
+	 * Returns how much of the time until the next update has passed, from 0 to 1
+	 * @param now TimeSource.nanoTime()
+	 */
+	double getInterpolation(long now)
+	{
+		long interval = this.interval;
+		if(!started || interval <= 0)
+			return 0;
+		double fraction = 1 - (nextDeadline - now) / (double) interval;
+		return Math.min(1, Math.max(0, fraction));
+	}
+
+	/**
+	 * Returns the number of updates run by the clock
+	 */
+	public long getUpdates()
+	{
+		return updates;
+	}
+
+	/**
+	 * Returns the number of updates that finished after the next update was due
+	 */
+	public long getOverruns()
+	{
+		return overruns;
+	}
+
+	/**
+	 * Returns the longest time between an update being due and it finishing (in milliseconds)
+	 */
+	public double getWorstLatency()
+	{
+		return worstLatency / 1e6;
+	}
+
+	/**
+	 * Returns how far the simulator time was behind the wall clock after the last update (in simulator seconds)
+	 */
+	public double getLag()
+	{
+		return lag;
+	}
+
+	/**
+	 * Returns the total simulator time given up because the simulator fell too far behind to catch up (in seconds)
+	 */
+	public double getLostTime()
+	{
+		return lostTime;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%d updates, %d overruns, worst latency %.1fms, lag %.2fs, lost %.1fs",
+				updates, overruns, getWorstLatency(), lag, lostTime);
+	}
+
+}
@@ -0,0 +1,231 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
+
+/**
+ * Predicts losses of separation before they happen.<br>
+ * Each aircraft is assumed to keep its current ground speed vector and vertical rate. For each candidate pair
+ * the closest point of approach and the time separation is first lost are solved for directly, over a horizon of a few minutes.
+ * Candidates come from a ConflictGrid with cells widened by the distance the fastest aircraft could close within the horizon,
+ * so only nearby pairs are checked
+ * @author Josh Argent
+ *
+ */
+public class ShortTermConflictAlert
+{
+
+	private static double EARTH_RADIUS = 6371e3;
+	private static double KNOTS_TO_METRES_PER_SECOND = 1852D / 3600D;
+	private static double GRID_HEADROOM = 1.25; // Grids are made larger than needed, so they aren't rebuilt every update
+
+	private final double distance;
+	private final double altitude;
+
+	private ConflictGrid grid;
+	private double gridDistance;
+	private double gridAltitude;
+
+	// The aircraft being checked and their slots, positions and velocities by their index in the array
+	// (metres per second east/north, feet per second up)
+	private Aircraft[] aircraft = new Aircraft[16];
+	private int[] slots = new int[16];
+	private double[] latitudes = new double[16];
+	private double[] longitudes = new double[16];
+	private double[] altitudes = new double[16];
+	private double[] speeds = new double[16];
+	private double[] velocityX = new double[16];
+	private double[] velocityY = new double[16];
+	private double[] velocityZ = new double[16];
+
+	// Pairs of slots alerted in the last update, and the set the pairs of this update are collected in (swapped each update)
+	private HashSet<Long> alertedPairs = new HashSet<>();
+	private HashSet<Long> pairs = new HashSet<>();
+
+	/**
+	 * @param distance the horizontal separation (in metres)
+	 * @param altitude the vertical separation (in feet)
+	 */
+	public ShortTermConflictAlert(double distance, double altitude)
+	{
+		this.distance = distance;
+		this.altitude = altitude;
+	}
+
+	/**
+	 * Find all pairs of aircraft predicted to lose separation within the horizon
+	 * @param aircrafts the aircraft in the simulation
+	 * @param time the current simulator time
+	 * @param horizon how far ahead to look (in seconds)
+	 * @param newAlerts filled with the alerts for pairs that were not alerted by the last call, most urgent first
+	 * @return all the alerts, most urgent first
+	 */
+	public List<ConflictAlert> detect(Aircraft[] aircrafts, double time, double horizon, List<ConflictAlert> newAlerts)
+	{
+		int n = aircrafts.length;
+		ensureCapacity(n);
+		for(int i = 0; i < n; i++)
+		{
+			Aircraft aircraft = aircrafts[i];
+			setAircraft(i, aircraft, aircraft.slot, aircraft.store.latitudes[aircraft.slot], aircraft.store.longitudes[aircraft.slot],
+					aircraft.store.altitudes[aircraft.slot], aircraft.getGroundSpeed(), aircraft.getTrack(), aircraft.store.verticalRates[aircraft.slot]);
+		}
+		return detect(n, time, horizon, newAlerts);
+	}
+
+	/**
+	 * Find all pairs of aircraft in a snapshot predicted to lose separation within the horizon, as detect(Aircraft[], ...)
+	 */
+	List<ConflictAlert> detect(List<AircraftState> states, double time, double horizon, List<ConflictAlert> newAlerts)
+	{
+		int n = states.size();
+		ensureCapacity(n);
+		for(int i = 0; i < n; i++)
+		{
+			AircraftState state = states.get(i);
+			setAircraft(i, state.getAircraft(), state.slot, state.getLatitude(), state.getLongitude(), state.getAltitude(),
+					state.getGroundSpeed(), state.getTrack(), state.getVerticalRate());
+		}
+		return detect(n, time, horizon, newAlerts);
+	}
+
+	private List<ConflictAlert> detect(int n, double time, double horizon, List<ConflictAlert> newAlerts)
+	{
+		if(n < 2)
+		{
+			alertedPairs.clear();
+			return Collections.emptyList();
+		}
+
+		// The fastest rates of closure
+		double maxSpeed = 0;
+		double maxVerticalRate = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(!Double.isNaN(speeds[i]))
+				maxSpeed = Math.max(maxSpeed, speeds[i]);
+			if(!Double.isNaN(velocityZ[i]))
+				maxVerticalRate = Math.max(maxVerticalRate, Math.abs(velocityZ[i]));
+		}
+
+		// Any pair that could lose separation within the horizon is within these distances now
+		double searchDistance = distance + 2 * maxSpeed * horizon;
+		double searchAltitude = altitude + 2 * maxVerticalRate * horizon;
+		if(grid == null || searchDistance > gridDistance || searchAltitude > gridAltitude
+				|| searchDistance * GRID_HEADROOM * 2 < gridDistance || searchAltitude * GRID_HEADROOM * 2 < gridAltitude)
+		{
+			gridDistance = searchDistance * GRID_HEADROOM;
+			gridAltitude = searchAltitude * GRID_HEADROOM;
+			grid = new ConflictGrid(gridDistance, gridAltitude);
+		}
+		grid.findCandidates(latitudes, longitudes, altitudes, n);
+
+		// Solve each candidate pair, only allocating if there is something to alert
+		ArrayList<ConflictAlert> alerts = null;
+		pairs.clear();
+		for(int p = 0; p < grid.getPairCount(); p++)
+		{
+			int a = grid.getFirst(p);
+			int b = grid.getSecond(p);
+			ConflictAlert alert = predict(a, b, time, horizon);
+			if(alert != null)
+			{
+				if(alerts == null)
+					alerts = new ArrayList<>();
+				alerts.add(alert);
+				long key = ((long) slots[a] << 32) | slots[b];
+				pairs.add(key);
+				if(!alertedPairs.contains(key))
+					newAlerts.add(alert);
+			}
+		}
+		HashSet<Long> previousPairs = alertedPairs;
+		alertedPairs = pairs;
+		pairs = previousPairs;
+
+		if(alerts == null)
+			return Collections.emptyList();
+		Collections.sort(alerts);
+		Collections.sort(newAlerts);
+		return alerts;
+	}
+
+	/**
+	 * Predict if and when a pair will lose separation, in a flat plane around the first aircraft
+	 * @return the alert, or null if they stay separated for the whole horizon
+	 */
+	private ConflictAlert predict(int a, int b, double time, double horizon)
+	{
+		double latA = latitudes[a];
+
+		// Position and velocity of B relative to A
+		double x = Math.toRadians(longitudes[b] - longitudes[a]) * Math.cos(Math.toRadians((latA + latitudes[b]) / 2)) * EARTH_RADIUS;
+		double y = Math.toRadians(latitudes[b] - latA) * EARTH_RADIUS;
+		double z = altitudes[b] - altitudes[a];
+		double vx = velocityX[b] - velocityX[a];
+		double vy = velocityY[b] - velocityY[a];
+		double vz = velocityZ[b] - velocityZ[a];
+
+		double start = LossOfSeparation.findStart(x, y, z, vx, vy, vz, distance, altitude, horizon);
+		if(Double.isNaN(start))
+			return null;
+
+		// Closest point of approach within the horizon
+		double speedSquared = vx * vx + vy * vy;
+		double dot = x * vx + y * vy;
+		double timeToClosest = speedSquared == 0 ? 0 : Math.min(Math.max(-dot / speedSquared, 0), horizon);
+		double closestX = x + vx * timeToClosest;
+		double closestY = y + vy * timeToClosest;
+		double closestDistance = Math.sqrt(closestX * closestX + closestY * closestY);
+		double closestVerticalDistance = Math.abs(z + vz * timeToClosest);
+
+		return new ConflictAlert(aircraft[a], aircraft[b], time, start, timeToClosest, closestDistance, closestVerticalDistance);
+	}
+
+	/**
+	 * Record the position and velocity of the aircraft at an index
+	 */
+	private void setAircraft(int i, Aircraft aircraft, int slot, double latitude, double longitude, double altitude,
+			double groundSpeed, double track, double verticalRate)
+	{
+		double speed = groundSpeed * KNOTS_TO_METRES_PER_SECOND;
+		double trackRadians = Math.toRadians(track);
+		this.aircraft[i] = aircraft;
+		slots[i] = slot;
+		latitudes[i] = latitude;
+		longitudes[i] = longitude;
+		altitudes[i] = altitude;
+		speeds[i] = speed;
+		velocityX[i] = Math.sin(trackRadians) * speed;
+		velocityY[i] = Math.cos(trackRadians) * speed;
+		velocityZ[i] = verticalRate;
+	}
+
+	private void ensureCapacity(int n)
+	{
+		if(aircraft.length >= n)
+			return;
+		aircraft = new Aircraft[n * 2];
+		slots = new int[n * 2];
+		latitudes = new double[n * 2];
+		longitudes = new double[n * 2];
+		altitudes = new double[n * 2];
+		speeds = new double[n * 2];
+		velocityX = new double[n * 2];
+		velocityY = new double[n * 2];
+		velocityZ = new double[n * 2];
+	}
+
+	/**
+	 * Forget the alerts that have been given, so they are given again
+	 */
+	public void reset()
+	{
+		alertedPairs.clear();
+	}
+
+}
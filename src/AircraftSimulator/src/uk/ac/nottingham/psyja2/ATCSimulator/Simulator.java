@@ -1,20 +1,32 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
-import java.awt.EventQueue;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.json.simple.parser.ParseException;
 
 /**
- * A singleton class to represent an instance of a simulator
+ * Represents an instance of a simulator, with its own scenario, clock, wind, aircraft and listeners.<br>
+ * Any number of simulators can be created and run side by side. getInstance() returns a default
+ * instance configured through the static fields, which is used by the GUI application
  * @author Josh Argent
  *
  */
@@ -22,85 +34,317 @@ public class Simulator
 {
 	
 	private static Simulator instance;
+	/**
+	 * The scenario loaded by the default instance
+	 */
 	public static String SCENARIO_FILE = "C:/Users/Josh/Desktop/scenario.json";
+	
+	/**
+	 * When set before the default instance is created, it runs headless in fast time:
+	 * fixed 0.1 second steps are computed back to back without any wall clock sleeps,
+	 * and the simulator thread only starts when {@link #start()} is called
+	 */
+	public static boolean FAST_TIME = false;
+	/**
+	 * The number of threads used by the default instance to update aircraft positions, when set before it is created.
+	 * The results are identical to a single threaded update
+	 */
+	public static int PROPAGATION_THREADS = 1;
+	/**
+	 * When set before the default instance is created (with FAST_TIME), it is event driven (see {@link #setEventDriven(boolean)})
+	 */
+	public static boolean EVENT_DRIVEN = false;
+	/**
+	 * When set before the default instance is created, it checks for conflicts between updates (see {@link #setSweptConflicts(boolean)})
+	 */
+	public static boolean SWEPT_CONFLICTS = false;
+	/**
+	 * When set before the default instance is created, its updates are pipelined (see {@link #setPipelined(boolean)})
+	 */
+	public static boolean PIPELINED = false;
+	private static double TIME_STEP = 0.1D; // Length of a single update (in seconds)
+	private static long PAUSED_UPDATE_TIME = 40; // Real time between the updates of a paused real time simulator (in milliseconds)
+	private static int PROPAGATION_CHUNK = 64; // Number of aircraft updated by a single parallel task
+	private static double MAX_EVENT_STEP = 30; // Longest update of an event driven simulator (in seconds)
 	private static double EARTH_RADIUS = 6371e3;
 	private static double FIVE_MILES_METRES = 9260; // 5 nautical miles in metres
+	private static int CHECKPOINT_MAGIC = 0x41544331; // "ATC1"
 	
 	private List<Aircraft> aircrafts;
-	private int windSpeed;
-	private int windDirection;
+	private Aircraft[] aircraftCache = new Aircraft[0]; // Copy of the aircraft list, only made again when it changes
+	private AircraftStateStore store;
+	private BitSet usedSlots;
+	private volatile int windSpeed; // Read without locking by aircraft updated in parallel
+	private volatile int windDirection;
 	private Scenario scenario;
 	private float timeSpeed;
 	private SimulatorDisplay display;
 	private SimulatorControls controls;
+	private List<SimulatorObserver> observers;
 	private Thread simulatorThread;
+	private AircraftUpdateRunnable simulatorRunnable;
+	private boolean fastTime;
+	private boolean fixedTimeSteps; // Every update advances the time by TIME_STEP, false only to replay old journals
+	private ForkJoinPool propagationPool;
+	private EventStepper eventStepper; // Only for an event driven simulator
+	private double requestedUpdateTime = Double.POSITIVE_INFINITY; // The next update must not go past this time
 	private int numberOfInstructions;
-	private String instructionLog = "";
+	private StringBuilder instructionLog = new StringBuilder();
 	
 	private double time;
+	private long tick; // Number of updates completed
 	private Queue<Double> flowHistory;
 	
-	private int numberOfConflicts;
-	protected Map<String, Double> conflictingHistory; // Map an aircraft pair (eg. 'ABC/DEF' to time of last conflict)
+	private volatile int numberOfConflicts; // Counted by the conflict stage of a pipelined simulator
+	private ConflictTracker conflictTracker;
+	private ConflictGrid conflictGrid;
+	private SweptConflictCheck sweptCheck; // Only when checking for conflicts between updates
+	private boolean pipelined;
+	private ConflictStage conflictStage; // Started by the first pipelined update
+	private ConflictCheck pendingCheck; // Given to the conflict stage and not yet waited for
+	private ConflictCheck finishedCheck; // Finished, but its listeners have not been called yet
 	private List<ConflictListener> conflictListeners;	
+	private ShortTermConflictAlert conflictAlert;
+	private double alertHorizon = 120; // Seconds to look ahead for conflict alerts, 0 to turn them off
+	private volatile List<ConflictAlert> conflictAlerts = Collections.emptyList();
+	private final List<ConflictAlert> newAlerts = new ArrayList<ConflictAlert>(); // Reused by each update's conflict check
+	private List<ConflictAlertListener> conflictAlertListeners;
+	private List<TickListener> tickListeners;
+	private SimulatorEventBus events;
+	// The state at the end of the last update and the one before, read by other threads without locking
+	// The spare is only used by the simulator thread, it is filled with the next update before being swapped in
+	private volatile SnapshotBuffer snapshot = new SnapshotBuffer();
+	private volatile SnapshotBuffer previousSnapshot = new SnapshotBuffer();
+	private SnapshotBuffer spareSnapshot = new SnapshotBuffer();
+	private RealTimeClock clock;
+	private final TimeSource timeSource;
+	private Queue<Runnable> pendingTasks;
+	private JournalWriter journal;
+	private JournalReplay replay;
+	private int updatePhase = JournalWriter.BEFORE_UPDATE;
 	
 	/**
-	 * Returns the singleton instance of the Simulator
+	 * Returns the default instance of the Simulator, creating it from SCENARIO_FILE, FAST_TIME
+	 * and PROPAGATION_THREADS the first time it is called
 	 */
-	public static Simulator getInstance()
+	public static synchronized Simulator getInstance()
 	{
 		if(instance == null)
-			instance = new Simulator();
+		{
+			instance = new Simulator(loadScenario(SCENARIO_FILE), FAST_TIME, PROPAGATION_THREADS);
+			if(FAST_TIME && EVENT_DRIVEN)
+				instance.setEventDriven(true);
+			instance.setSweptConflicts(SWEPT_CONFLICTS);
+			instance.setPipelined(PIPELINED);
+		}
 		return instance;
 	}
 	
-	private Simulator()
+	private static Scenario loadScenario(String scenarioFile)
+	{
+		try
+		{
+			return new Scenario(scenarioFile);
+		} catch (IOException | ParseException e)
+		{
+			e.printStackTrace();
+		}
+		return null;
+	}
+	
+	/**
+	 * Create a simulator, independent of any other simulator.<br>
+	 * A fast time simulator waits for start() to be called, otherwise the simulator starts running in real time straight away.
+	 * Either way it is headless, until a GUI asks for the display or controls with getDisplay() or getControls()
+	 * @param scenario the scenario to simulate, which is only read so can be shared by several simulators
+	 * @param fastTime true to run headless in fast time (see FAST_TIME)
+	 * @param propagationThreads the number of threads used to update aircraft positions
+	 */
+	public Simulator(Scenario scenario, boolean fastTime, int propagationThreads)
+	{
+		this(scenario, fastTime, propagationThreads, TimeSource.SYSTEM);
+	}
+	
+	/**
+	 * Create a simulator that keeps real time by a given clock rather than the system clock
+	 * @param timeSource the clock read and waited on by a real time simulator
+	 */
+	public Simulator(Scenario scenario, boolean fastTime, int propagationThreads, TimeSource timeSource)
 	{
 		// Init variables
 		aircrafts = new CopyOnWriteArrayList<Aircraft>();
+		store = new AircraftStateStore(64);
+		usedSlots = new BitSet();
 		windSpeed = 0;
 		windDirection = 270;
 		timeSpeed = 1f;
 		numberOfInstructions = 0;
 		time = 0;
+		this.fastTime = fastTime;
+		fixedTimeSteps = true;
+		if(propagationThreads > 1)
+			propagationPool = new ForkJoinPool(propagationThreads);
+		clock = new RealTimeClock(TIME_STEP);
+		this.timeSource = timeSource;
+		this.scenario = scenario;
 		
-		// Load the scenario file
-		try
-		{
-			scenario = new Scenario(SCENARIO_FILE);
-		} catch (IOException | ParseException e)
-		{
-			e.printStackTrace();
-		}
-		
-		// Create a display object
-		display = new SimulatorDisplay();
-				
 		// Initialise the flow rate data structure
 		flowHistory = new LinkedList<Double>();
 		
 		// Initialise conflicting aircraft data structure
-		conflictingHistory = new HashMap<String, Double>();
+		conflictTracker = new ConflictTracker();
+		conflictGrid = new ConflictGrid(FIVE_MILES_METRES, 1000);
 		conflictListeners = new ArrayList<ConflictListener>();
+		conflictAlert = new ShortTermConflictAlert(FIVE_MILES_METRES, 1000);
+		conflictAlertListeners = new ArrayList<ConflictAlertListener>();
+		tickListeners = new CopyOnWriteArrayList<TickListener>();
+		events = new SimulatorEventBus(SimulatorEventBus.DEFAULT_CAPACITY);
+		observers = new CopyOnWriteArrayList<SimulatorObserver>();
+		pendingTasks = new ConcurrentLinkedQueue<Runnable>();
+		snapshot.fill(time, windSpeed, windDirection, new Aircraft[0], conflictTracker);
+		previousSnapshot.fill(time, windSpeed, windDirection, new Aircraft[0], conflictTracker);
 		
-		// Start the simulator thread
-		simulatorThread = new Thread(new AircraftUpdateRunnable());
+		// Start the simulator thread (fast time runs wait for start() to be called)
+		simulatorRunnable = new AircraftUpdateRunnable();
+		simulatorThread = new Thread(simulatorRunnable);
 		simulatorThread.setName("Simulator");
-		simulatorThread.start();
+		if(!fastTime)
+			start();
+	}
+	
+	/**
+	 * Start the simulator thread if it is not already running
+	 */
+	public synchronized void start()
+	{
+		if(!simulatorThread.isAlive())
+			simulatorThread.start();
+	}
+	
+	/**
+	 * Stop the simulator thread after the current update, and release the threads used to update aircraft positions.
+	 * A stopped simulator can not be started again
+	 */
+	public synchronized void stop()
+	{
+		simulatorRunnable.running = false;
+		
+		// A running simulator thread shuts the pools down when it finishes its update
+		if(!isRunning() && propagationPool != null)
+			propagationPool.shutdown();
+		if(!isRunning())
+			stopConflictStage();
+	}
+	
+	/**
+	 * Returns true if the simulator thread has been started
+	 */
+	public boolean isRunning()
+	{
+		return simulatorThread.isAlive();
+	}
+	
+	/**
+	 * Returns true if the simulator is running headless in fast time
+	 */
+	public boolean isFastTime()
+	{
+		return fastTime;
+	}
+	
+	/**
+	 * Make a fast time simulator event driven.<br>
+	 * While every aircraft is flying straight at a constant speed and rate of climb, each update jumps ahead to just before
+	 * the next time something changes: an aircraft nearing its waypoint, a pair of aircraft that could lose separation,
+	 * or a time asked for with {@link #requestUpdateAt(double)}, up to 30 seconds at a time.
+	 * Aircraft are moved along a single great circle for the whole update, rather than many short ones,
+	 * so the results are very close to, but not the same as, a simulator that is not event driven.
+	 * While any aircraft is turning or changing speed the updates are the normal length.<br>
+	 * A journal can not be recorded by an event driven simulator
+	 */
+	public synchronized void setEventDriven(boolean eventDriven)
+	{
+		if(eventDriven && !fastTime)
+			throw new IllegalStateException("Only a fast time simulator can be event driven");
+		if(eventDriven && journal != null)
+			throw new IllegalStateException("A journal can not be recorded by an event driven simulator");
+		eventStepper = eventDriven ? new EventStepper(FIVE_MILES_METRES, 1000, TIME_STEP) : null;
+	}
+	
+	/**
+	 * Check for conflicts between updates as well as at the end of each one.<br>
+	 * Each aircraft is taken to move in a straight line during an update, and a pair is conflicting if they were within
+	 * separation at any point along the way. This finds brief losses of separation between fast aircraft that would fall
+	 * between updates, at the cost of checking a few more pairs.
+	 * A journal recorded with this turned on should be replayed by a simulator with it turned on too
+	 */
+	public synchronized void setSweptConflicts(boolean sweptConflicts)
+	{
+		if(sweptConflicts && pipelined)
+			throw new IllegalStateException("A pipelined simulator can not check for conflicts between updates");
+		sweptCheck = sweptConflicts ? new SweptConflictCheck(FIVE_MILES_METRES, 1000) : null;
+	}
+	
+	/**
+	 * Returns true if the simulator checks for conflicts between updates
+	 */
+	public synchronized boolean isSweptConflicts()
+	{
+		return sweptCheck != null;
+	}
+	
+	/**
+	 * Pipeline the updates, so each update is checked for conflicts on a thread of its own while the next update is computed.<br>
+	 * The check reads an immutable copy of the aircraft taken at the end of the update, so it finds exactly the same
+	 * conflicts and alerts, but they are known one update later: the conflict and conflict alert listeners are called
+	 * (on the simulator thread) during the next update. The snapshot is published as soon as the aircraft have moved,
+	 * with the conflict flags of the update before, and published again with its own flags once the check has finished.
+	 * This only makes the updates faster when there is a spare processor for the check to run on.<br>
+	 * A pipelined simulator can not record a journal or check for conflicts between updates
+	 */
+	public synchronized void setPipelined(boolean pipelined)
+	{
+		if(pipelined && journal != null)
+			throw new IllegalStateException("A journal can not be recorded by a pipelined simulator");
+		if(pipelined && sweptCheck != null)
+			throw new IllegalStateException("A pipelined simulator can not check for conflicts between updates");
+		this.pipelined = pipelined;
+		if(!pipelined)
+			stopConflictStage();
+	}
+	
+	/**
+	 * Returns true if the simulator's updates are pipelined
+	 */
+	public synchronized boolean isPipelined()
+	{
+		return pipelined;
+	}
+	
+	/**
+	 * Returns true if the simulator is event driven
+	 */
+	public synchronized boolean isEventDriven()
+	{
+		return eventStepper != null;
+	}
+	
+	/**
+	 * Stop the next update of an event driven simulator from going past the given time, eg. so an aircraft can be
+	 * added on time. Only applies to the next update, so should be asked again after each one (eg. by a TickListener)
+	 */
+	public synchronized void requestUpdateAt(double time)
+	{
+		requestedUpdateTime = Math.min(requestedUpdateTime, time);
 	}
 	
 	private void updateUI()
 	{
-		// Run repaint/GUI updates on the UI thread
-		EventQueue.invokeLater(new Runnable()
+		// Nothing is done for a headless simulator, which has no observers
+		for(SimulatorObserver observer : observers)
 		{
-			@Override
-			public void run()
-			{
-				display.repaint();
-				getControls().updateControlValues();
-			}
-		});		
+			observer.simulatorChanged();
+		}
 	}
 	
 	/**
@@ -110,7 +354,15 @@ public class Simulator
 	{
 		synchronized(aircrafts)
 		{
+			// Move the aircraft's state into the lowest free slot of the store
+			int slot = usedSlots.nextClearBit(0);
+			usedSlots.set(slot);
+			aircraft.attach(this, store, slot);
 			aircrafts.add(aircraft);
+			aircraftCache = null;
+			if(journal != null)
+				journal.aircraftAdded(tick, updatePhase, aircraft);
+			publishEvent(SimulatorEvent.AIRCRAFT_ADDED, aircraft, null, null);
 		}
 		updateUI();	
 	}
@@ -140,7 +392,18 @@ public class Simulator
 		synchronized(aircrafts)
 		{
 			flowHistory.add(time);
-			aircrafts.remove(aircraft);
+			if(aircrafts.remove(aircraft))
+			{
+				aircraftCache = null;
+				if(journal != null)
+					journal.aircraftRemoved(tick, updatePhase, aircraft);
+				publishEvent(SimulatorEvent.AIRCRAFT_REMOVED, aircraft, null, null);
+				// Any conflicts it was in are over, and its slot can be reused
+				waitForConflicts();
+				conflictTracker.removeSlot(aircraft.slot);
+				usedSlots.clear(aircraft.slot);
+				aircraft.detach();
+			}
 		}
 		
 		updateUI();
@@ -154,6 +417,8 @@ public class Simulator
 	public synchronized void setTimeSpeed(float timeSpeed)
 	{
 		this.timeSpeed = timeSpeed;
+		if(journal != null)
+			journal.timeSpeedChanged(tick, updatePhase, timeSpeed);
 		updateUI();	
 	}
 	
@@ -175,19 +440,190 @@ public class Simulator
 		return time;
 	}
 	
+	/**
+	 * Returns the number of updates the simulator has completed
+	 */
+	public synchronized long getTick()
+	{
+		return tick;
+	}
+	
+	/**
+	 * Start recording a binary journal of every aircraft added and removed, every instruction,
+	 * and every wind and time speed change, which {@link JournalReplay} can play back exactly.<br>
+	 * The journal must be started before any aircraft are added
+	 * @param file the file to write the journal to
+	 * @throws IOException if the file could not be created
+	 */
+	public synchronized void startJournal(File file) throws IOException
+	{
+		if(getNumberOfAircraft() > 0)
+			throw new IllegalStateException("The journal must be started before any aircraft are added");
+		if(eventStepper != null)
+			throw new IllegalStateException("A journal can not be recorded by an event driven simulator");
+		if(pipelined)
+			throw new IllegalStateException("A journal can not be recorded by a pipelined simulator");
+		stopJournal();
+		journal = new JournalWriter(file, fixedTimeSteps, time, tick, windSpeed, windDirection, timeSpeed);
+	}
+	
+	/**
+	 * Finish and close the journal, if one is being recorded
+	 */
+	public synchronized void stopJournal()
+	{
+		if(journal == null)
+			return;
+		journal.close(tick);
+		journal = null;
+	}
+	
+	/**
+	 * Returns true if a journal is being recorded
+	 */
+	public synchronized boolean isJournalling()
+	{
+		return journal != null;
+	}
+	
+	/**
+	 * Write the full state of the simulation to a stream: the time, wind, every aircraft with the
+	 * progress of its instructions and the commands in its mailbox, the current and past conflicts,
+	 * the flow history and the instruction log.<br>
+	 * The state is taken between updates, so it is consistent. Listeners are not written
+	 * @param stream the stream to write to (it is flushed but not closed)
+	 */
+	public synchronized void saveCheckpoint(OutputStream stream) throws IOException
+	{
+		waitForConflicts();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(CHECKPOINT_MAGIC);
+		out.writeDouble(time);
+		out.writeLong(tick);
+		out.writeInt(windSpeed);
+		out.writeInt(windDirection);
+		out.writeFloat(timeSpeed);
+		out.writeInt(numberOfConflicts);
+		out.writeInt(numberOfInstructions);
+		byte[] log = instructionLog.toString().getBytes(StandardCharsets.UTF_8);
+		out.writeInt(log.length);
+		out.write(log);
+		out.writeInt(flowHistory.size());
+		for(double exitTime : flowHistory)
+		{
+			out.writeDouble(exitTime);
+		}
+		
+		synchronized(aircrafts)
+		{
+			out.writeInt(aircrafts.size());
+			for(Aircraft aircraft : aircrafts)
+			{
+				out.writeInt(aircraft.slot);
+				aircraft.write(out);
+				aircraft.writeInstructions(out);
+			}
+		}
+		conflictTracker.write(out);
+		out.flush();
+	}
+	
+	/**
+	 * Replace the state of the simulation with a checkpoint written by saveCheckpoint().
+	 * The simulation continues exactly as it would have from the point the checkpoint was taken.<br>
+	 * The restored aircraft are new objects, so any references to the old aircraft should be dropped,
+	 * and listeners must be added to them again
+	 * @param stream the stream to read from
+	 */
+	public synchronized void restoreCheckpoint(InputStream stream) throws IOException
+	{
+		if(journal != null)
+			throw new IllegalStateException("A checkpoint can not be restored while a journal is being recorded");
+		
+		// Read everything before changing anything, in case the checkpoint is incomplete
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if(in.readInt() != CHECKPOINT_MAGIC)
+			throw new IOException("Not a simulator checkpoint");
+		double restoredTime = in.readDouble();
+		long restoredTick = in.readLong();
+		int restoredWindSpeed = in.readInt();
+		int restoredWindDirection = in.readInt();
+		float restoredTimeSpeed = in.readFloat();
+		int restoredConflicts = in.readInt();
+		int restoredInstructions = in.readInt();
+		byte[] log = new byte[in.readInt()];
+		in.readFully(log);
+		Queue<Double> restoredFlowHistory = new LinkedList<Double>();
+		int numberOfExits = in.readInt();
+		for(int i = 0; i < numberOfExits; i++)
+		{
+			restoredFlowHistory.add(in.readDouble());
+		}
+		int numberOfAircraft = in.readInt();
+		int[] slots = new int[numberOfAircraft];
+		Aircraft[] restoredAircraft = new Aircraft[numberOfAircraft];
+		for(int i = 0; i < numberOfAircraft; i++)
+		{
+			slots[i] = in.readInt();
+			restoredAircraft[i] = Aircraft.read(in);
+			restoredAircraft[i].readInstructions(in);
+		}
+		ConflictTracker restoredTracker = new ConflictTracker();
+		restoredTracker.read(in);
+		waitForConflicts();
+		
+		synchronized(aircrafts)
+		{
+			// Take out the current aircraft
+			for(Aircraft aircraft : aircrafts)
+			{
+				aircraft.detach();
+			}
+			aircrafts.clear();
+			usedSlots.clear();
+			
+			// Put the restored aircraft in the slots they had, so conflicts and new aircraft use the same slots
+			for(int i = 0; i < numberOfAircraft; i++)
+			{
+				usedSlots.set(slots[i]);
+				restoredAircraft[i].attach(this, store, slots[i]);
+			}
+			aircrafts.addAll(Arrays.asList(restoredAircraft));
+			aircraftCache = null;
+		}
+		time = restoredTime;
+		tick = restoredTick;
+		windSpeed = restoredWindSpeed;
+		windDirection = restoredWindDirection;
+		timeSpeed = restoredTimeSpeed;
+		numberOfConflicts = restoredConflicts;
+		numberOfInstructions = restoredInstructions;
+		instructionLog = new StringBuilder(new String(log, StandardCharsets.UTF_8));
+		flowHistory = restoredFlowHistory;
+		conflictTracker = restoredTracker;
+		conflictAlerts = Collections.emptyList();
+		conflictAlert.reset();
+		clock.stop(); // The time has jumped, so start keeping time again from the restored time
+		
+		publishSnapshot(getAircraftArray());
+		updateUI();
+	}
+	
 	/**
 	 * Set the simulator wind speed (in knots)
 	 */
 	public synchronized void setWindSpeed(int speed)
 	{
 		windSpeed = speed;
+		if(journal != null)
+			journal.windSpeedChanged(tick, updatePhase, speed);
 		updateUI();	
 	}
 	
 	/**
 	 * Get the simulator wind speed (in knots)
 	 */
-	public synchronized int getWindSpeed()
+	public int getWindSpeed()
 	{
 		return windSpeed;
 	}
@@ -198,76 +634,162 @@ public class Simulator
 	public synchronized void setWindDirection(int direction)
 	{
 		windDirection = direction;
+		if(journal != null)
+			journal.windDirectionChanged(tick, updatePhase, direction);
 		updateUI();	
 	}
 	
 	/**
 	 * Get the simulator wind direction (in degrees 0 to 360)
 	 */
-	public synchronized int getWindDirection()
+	public int getWindDirection()
 	{
 		return windDirection;
 	}
 	
+	/**
+	 * Returns a read only view of the aircraft in the simulation.
+	 * Use getSnapshot() to read their state without the risk of seeing it change
+	 */
 	public synchronized List<Aircraft> getAllAircraft()
 	{
-		return aircrafts;
+		return Collections.unmodifiableList(aircrafts);
+	}
+	
+	/**
+	 * Returns the state of the simulation at the end of the last update.
+	 * Takes no locks, so can be called from any thread (eg. the GUI) without holding up an update or waiting for one.
+	 * The snapshot is made by the first caller after an update, later calls return the same one
+	 * (in a pipelined simulator, until the conflict stage has marked the aircraft in conflict)
+	 */
+	public WorldSnapshot getSnapshot()
+	{
+		return readSnapshot(false);
+	}
+	
+	/**
+	 * Returns the state of the simulation at the end of the update before the last one, to draw
+	 * the aircraft in between the two (see getInterpolation()). Takes no locks, like getSnapshot()
+	 */
+	public WorldSnapshot getPreviousSnapshot()
+	{
+		return readSnapshot(true);
+	}
+	
+	/**
+	 * Returns the snapshot of the last or previous update's buffer, copying the buffer on the calling thread if no one has yet
+	 */
+	private WorldSnapshot readSnapshot(boolean previous)
+	{
+		while(true)
+		{
+			SnapshotBuffer buffer = previous ? previousSnapshot : snapshot;
+			WorldSnapshot made = buffer.getMadeSnapshot();
+			if(made != null)
+				return made;
+			
+			// Pin the buffer so it isn't filled again while it is copied,
+			// and only copy it if it wasn't swapped out for the spare before it was pinned
+			buffer.readers.incrementAndGet();
+			try
+			{
+				if(buffer == snapshot || buffer == previousSnapshot)
+					return buffer.makeSnapshot();
+			}
+			finally
+			{
+				buffer.readers.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Returns how much of the real time until the next update has passed, from 0 to 1.<br>
+	 * A display drawing the aircraft this fraction of the way from the previous snapshot to the current one
+	 * shows them moving smoothly, whatever the time speed. Always 0 in fast time
+	 */
+	public double getInterpolation()
+	{
+		return fastTime ? 0 : clock.getInterpolation(timeSource.nanoTime());
+	}
+	
+	/**
+	 * Returns the clock that keeps a real time simulator in step with the wall clock,
+	 * with counts of how late its updates have been
+	 */
+	public RealTimeClock getClock()
+	{
+		return clock;
 	}
 	
 	
 	/**
-	 * Get the simulator GUI radar display
+	 * Get the simulator GUI radar display, creating it the first time it is asked for
 	 */
-	public SimulatorDisplay getDisplay()
+	public synchronized SimulatorDisplay getDisplay()
 	{
+		if(display == null)
+		{
+			// Create the display object and keep it up to date
+			display = new SimulatorDisplay(this);
+			addObserver(display);
+		}
 		return display;
 	}
 	
 	/**
-	 * Get the simulator controls GUI object
+	 * Get the simulator controls GUI object, creating it the first time it is asked for
 	 */
-	public SimulatorControls getControls()
+	public synchronized SimulatorControls getControls()
 	{
 		if(controls == null)
 		{
-			// Create the controls object
-			controls = new SimulatorControls();
+			// Create the controls object and keep it up to date
+			controls = new SimulatorControls(this);
+			addObserver(controls);
 		}
 		return controls;
 	}
 
 	/**
-	 * Issue an instruction to an aircraft
+	 * Issue an instruction to an aircraft.<br>
+	 * The instruction is queued and returns straight away, it is applied at the start of the next update
 	 * @param instruction the instruction to execute
 	 * @param aircraft the aircraft to execute the instruction on
 	 */
-	public synchronized void sendInstruction(Instruction instruction, Aircraft aircraft)
+	public void sendInstruction(Instruction instruction, Aircraft aircraft)
+	{
+		// Its listeners are fired after all aircraft have been updated
+		instruction.deferListeners = true;
+		aircraft.commands.add(new Aircraft.Command(instruction));
+		updateUI();	
+	}
+	
+	/**
+	 * Apply the commands waiting in an aircraft's mailbox, in the order they were sent.
+	 * An instruction replaces any instruction in the same slot
+	 */
+	private void applyCommands(Aircraft aircraft)
 	{
-		synchronized(aircraft.instructions)
+		Aircraft.Command command;
+		while((command = aircraft.commands.poll()) != null)
 		{
-			// Check if there are any conflicting instructions..
-			if(instruction instanceof HeadingInstruction || instruction instanceof WaypointInstruction ||
-					instruction instanceof HoldInstruction)
+			Instruction instruction = command.instruction;
+			if(instruction == null)
 			{
-				List<Instruction> instructionListCopy = new ArrayList<Instruction>(aircraft.instructions);
-				// Remove any 'HeadingInstruction' or 'WaypointInstruction' or 'HoldInstruction'
-				for(Instruction instr : aircraft.instructions)
-				{
-					if(instr instanceof HeadingInstruction || instr instanceof WaypointInstruction
-							|| instr instanceof HoldInstruction)
-					{
-						instructionListCopy.remove(instr);
-					}
-				}
-				aircraft.instructions = instructionListCopy;
+				if(journal != null)
+					journal.instructionApplied(tick, updatePhase, aircraft, null);
+				Arrays.fill(aircraft.instructions, null);
+				continue;
 			}
-			// Add the instruction to the aircraft's instruction list
-			aircraft.instructions.add(instruction);
-			instructionLog += aircraft.getCallsign() + ", " + instruction.toString() + "\n";
+			
+			// Put the instruction in its slot
+			if(journal != null)
+				journal.instructionApplied(tick, updatePhase, aircraft, instruction);
+			aircraft.instructions[instruction.getSlot()] = instruction;
+			instructionLog.append(aircraft.getCallsign()).append(", ").append(instruction.toString()).append("\n");
 			numberOfInstructions++;
 		}
-		
-		updateUI();	
 	}
 	
 	/**
@@ -315,9 +837,29 @@ public class Simulator
 	 */
 	public synchronized int getNumberOfConflicts()
 	{
+		waitForConflicts();
 		return numberOfConflicts;
 	}
 	
+	/**
+	 * Returns true if the aircraft was in conflict at the last update.
+	 * Safe to call from any thread (eg. the GUI)
+	 */
+	public boolean isInConflict(Aircraft aircraft)
+	{
+		return aircraft.store == store && conflictTracker.isInConflict(aircraft.slot);
+	}
+	
+	/**
+	 * Returns the conflict tracker, which holds the start times of current conflicts
+	 * and the durations of past conflicts
+	 */
+	public synchronized ConflictTracker getConflictTracker()
+	{
+		waitForConflicts();
+		return conflictTracker;
+	}
+	
 	/**
 	 * Returns the number of instructions/conflict resolution manoeuvres
 	 */
@@ -331,7 +873,7 @@ public class Simulator
 	 */
 	public synchronized String getInstructionLog()
 	{
-		return instructionLog;
+		return instructionLog.toString();
 	}
 	
 	/**
@@ -350,6 +892,110 @@ public class Simulator
 		conflictListeners.remove(listener);
 	}
 	
+	/**
+	 * Add a conflict alert listener to the Simulator
+	 */
+	public synchronized void addConflictAlertListener(ConflictAlertListener listener)
+	{
+		conflictAlertListeners.add(listener);
+	}
+	
+	/**
+	 * Remove a conflict alert listener from the Simulator
+	 */
+	public synchronized void removeConflictAlertListener(ConflictAlertListener listener)
+	{
+		conflictAlertListeners.remove(listener);
+	}
+	
+	/**
+	 * Set how far ahead short term conflict alerts look (in seconds), 0 turns them off
+	 */
+	public synchronized void setAlertHorizon(double seconds)
+	{
+		alertHorizon = Math.max(0, seconds);
+	}
+	
+	/**
+	 * Returns how far ahead short term conflict alerts look (in seconds)
+	 */
+	public synchronized double getAlertHorizon()
+	{
+		return alertHorizon;
+	}
+	
+	/**
+	 * Returns the short term conflict alerts from the last update, most urgent first.<br>
+	 * Safe to call from any thread
+	 */
+	public List<ConflictAlert> getConflictAlerts()
+	{
+		return conflictAlerts;
+	}
+	
+	/**
+	 * Add a tick listener to the Simulator
+	 */
+	public void addTickListener(TickListener listener)
+	{
+		tickListeners.add(listener);
+	}
+	
+	/**
+	 * Remove a tick listener from the Simulator
+	 */
+	public void removeTickListener(TickListener listener)
+	{
+		tickListeners.remove(listener);
+	}
+	
+	/**
+	 * Add an observer to the Simulator (eg. a GUI)
+	 */
+	public void addObserver(SimulatorObserver observer)
+	{
+		observers.add(observer);
+	}
+	
+	/**
+	 * Remove an observer from the Simulator
+	 */
+	public void removeObserver(SimulatorObserver observer)
+	{
+		observers.remove(observer);
+	}
+	
+	/**
+	 * Run a task on the simulator thread once the current update has finished.
+	 * Tasks run in the order they were submitted, before the tick listeners are fired
+	 */
+	public void invokeLater(Runnable task)
+	{
+		pendingTasks.add(task);
+	}
+	
+	/**
+	 * Returns the event bus, which delivers conflicts, completed instructions and aircraft being added and removed
+	 * to listeners on their own threads
+	 */
+	public SimulatorEventBus getEventBus()
+	{
+		return events;
+	}
+	
+	/**
+	 * Queue an event on the event bus, copying the state of the aircraft involved.
+	 * Nothing is copied if no one is listening to the event's channel
+	 */
+	void publishEvent(int type, Aircraft aircraftA, Aircraft aircraftB, Instruction instruction)
+	{
+		if(!events.hasListeners(SimulatorEvent.getChannel(type)))
+			return;
+		WorldSnapshot.AircraftState stateA = new WorldSnapshot.AircraftState(aircraftA, conflictTracker.isInConflict(aircraftA.slot));
+		WorldSnapshot.AircraftState stateB = aircraftB == null ? null : new WorldSnapshot.AircraftState(aircraftB, true);
+		events.publish(new SimulatorEvent(type, time, tick, stateA, stateB, instruction));
+	}
+	
 	/**
 	 * Fires all the conflict listeners
 	 */
@@ -368,21 +1014,31 @@ public class Simulator
 	 * Conflict minima = within 1000ft AND less than 5NM apart
 	 */
 	private boolean isConflicting(Aircraft aircraftA, Aircraft aircraftB)
+	{
+		int a = aircraftA.slot;
+		int b = aircraftB.slot;
+		return isConflicting(store.latitudes[a], store.longitudes[a], store.altitudes[a], store.latitudes[b], store.longitudes[b], store.altitudes[b]);
+	}
+	
+	/**
+	 * Returns true/false for if aircraft at the given positions are conflicting
+	 */
+	private static boolean isConflicting(double latA, double lngA, double altA, double latB, double lngB, double altB)
 	{
 		// First check if the aircraft are vertically within 1000ft of each other
-		if(aircraftA.altitude - 1000 >= aircraftB.altitude || aircraftA.altitude + 1000 <= aircraftB.altitude)
+		if(altA - 1000 >= altB || altA + 1000 <= altB)
 		{
 			return false;
 		}
 		
 		// Now check if the aircraft 
 		// CREDIT: https://www.movable-type.co.uk/scripts/latlong.html
-		double lat1 = toRadians(aircraftA.getLocation().getLatitude());
-		double lat2 = toRadians(aircraftB.getLocation().getLatitude());
-		double deltaLat = toRadians(aircraftB.getLocation().getLatitude() - aircraftA.getLocation().getLatitude());
-		double deltaLng = toRadians(aircraftB.getLocation().getLongitude() - aircraftA.getLocation().getLongitude());
-		double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
-		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		double lat1 = toRadians(latA);
+		double lat2 = toRadians(latB);
+		double deltaLat = toRadians(latB - latA);
+		double deltaLng = toRadians(lngB - lngA);
+		double h = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
+		double c = 2 * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
 		double distanceBetweenAircraft = EARTH_RADIUS * c;
 		if(distanceBetweenAircraft < FIVE_MILES_METRES)
 			return true;
@@ -391,7 +1047,7 @@ public class Simulator
 		return false;
 	}
 	
-	private double toRadians(double angle)
+	private static double toRadians(double angle)
 	{
 		return angle * (Math.PI / 180);
 	}
@@ -402,80 +1058,493 @@ public class Simulator
 	private synchronized void update()
 	{
 		// Update the time
+		// The time speed only changes how often updates happen, so a run gives the same results at any speed
 		double previousTime = time;
-		double timeElapsed = 0.1D * getTimeSpeed();
+		double timeElapsed;
+		if(fixedTimeSteps)
+			timeElapsed = getTimeSpeed() > 0 ? TIME_STEP : 0;
+		else
+			timeElapsed = TIME_STEP * getTimeSpeed(); // a journal recorded before fixed steps were used everywhere
 		time += timeElapsed;
 		
 		// Update the position of all aircraft and execute instructions
 		synchronized(aircrafts)
 		{
-			for (Iterator<Aircraft> it = aircrafts.iterator(); it.hasNext();)
+			Aircraft[] moving = getAircraftArray();
+			
+			// Apply any instructions sent since the last update
+			for(Aircraft aircraft : moving)
+			{
+				applyCommands(aircraft);
+			}
+			
+			// An event driven simulator jumps ahead while all the aircraft are flying steadily
+			if(eventStepper != null && timeElapsed > 0)
+			{
+				timeElapsed = eventStepper.nextStep(moving, Math.min(MAX_EVENT_STEP, requestedUpdateTime - previousTime));
+				time = previousTime + timeElapsed;
+			}
+			requestedUpdateTime = Double.POSITIVE_INFINITY;
+			
+			if(sweptCheck != null)
+				sweptCheck.recordStart(moving);
+			
+			if(propagationPool == null || moving.length <= PROPAGATION_CHUNK)
+			{
+				for(Aircraft aircraft : moving)
+				{
+					aircraft.updatePosition(timeElapsed);
+				}
+			}
+			else
+			{
+				// Each aircraft only changes its own state, so they can be updated in parallel
+				// invoke() waits for every aircraft to be updated
+				propagationPool.invoke(new PropagationTask(moving, 0, moving.length, timeElapsed));
+			}
+			
+			// Fire the listeners of completed instructions in list order, on this thread
+			updatePhase = JournalWriter.AIRCRAFT_MOVED;
+			for(Aircraft aircraft : moving)
 			{
-				Aircraft aircraft = it.next();
-				aircraft.updatePosition(timeElapsed);
+				aircraft.fireCompletedInstructions();
 			}
+			// Feed in the events a journal recorded at this point
+			if(replay != null)
+				replay.replayEvents(tick, JournalWriter.AIRCRAFT_MOVED);
+		}
+		
+		Aircraft[] aircraftArray = getAircraftArray(); // listeners may have removed aircraft
+		if(pipelined)
+		{
+			// Publish the new state, and check it for conflicts while the next update is computed
+			// The conflict stage only takes one update at a time
+			waitForConflicts();
+			publishSnapshot(aircraftArray);
+			if(conflictStage == null)
+				conflictStage = new ConflictStage();
+			pendingCheck = new ConflictCheck(snapshot, tick, alertHorizon);
+			conflictStage.submit(pendingCheck);
+			updatePhase = JournalWriter.BEFORE_UPDATE;
+			tick++;
+		}
+		else
+		{
+			checkConflicts(aircraftArray);
 		}
 		
-		// Check for conflicts after all aircraft have moved
-		for(int i = 0; i < aircrafts.size(); i++)
+		// Tell the listeners about the conflicts found by the conflict stage
+		fireFinishedCheck();
+		
+		// Let the observers (if any) show the new positions
+		for(SimulatorObserver observer : observers)
 		{
-			for(int j = i + 1; j < aircrafts.size(); j++)
+			observer.simulatorUpdated();
+		}
+	}
+	
+	/**
+	 * Check for conflicts after all aircraft have moved, look ahead for conflict alerts and publish the snapshot
+	 */
+	private void checkConflicts(Aircraft[] aircraftArray)
+	{
+		// Only pairs in neighbouring grid cells can be conflicting
+		ConflictGrid candidates = conflictGrid;
+		if(sweptCheck == null)
+			conflictGrid.findCandidates(aircraftArray);
+		else
+			candidates = sweptCheck.findCandidates(aircraftArray); // wider cells, for the distance moved in the update
+		conflictTracker.beginTick();
+		updatePhase = JournalWriter.CONFLICT_CHECK;
+		for(int p = 0; p < candidates.getPairCount(); p++)
+		{
+			Aircraft aircraftA = aircraftArray[candidates.getFirst(p)];
+			Aircraft aircraftB = aircraftArray[candidates.getSecond(p)];
+			boolean conflicting = isConflicting(aircraftA, aircraftB) || (sweptCheck != null && sweptCheck.lostSeparation(aircraftA, aircraftB));
+			if(conflicting && conflictTracker.conflict(aircraftA.slot, aircraftB.slot, time))
 			{
-				boolean conflicting = isConflicting(aircrafts.get(i), aircrafts.get(j));
-				if(conflicting)
+				// This is a new conflict!
+				if(journal != null)
+					journal.conflict(tick, aircraftA, aircraftB);
+				fireConflictListeners(aircraftA, aircraftB);
+				publishEvent(SimulatorEvent.CONFLICT, aircraftA, aircraftB, null);
+				numberOfConflicts++;
+			}
+		}
+		
+		// Look ahead for pairs that will lose separation if nothing changes
+		if(alertHorizon > 0)
+		{
+			newAlerts.clear();
+			List<ConflictAlert> alerts = conflictAlert.detect(aircraftArray, time, alertHorizon, newAlerts);
+			conflictAlerts = alerts.isEmpty() ? Collections.<ConflictAlert>emptyList() : Collections.unmodifiableList(alerts);
+			for(ConflictAlert alert : newAlerts)
+			{
+				for(ConflictAlertListener listener : conflictAlertListeners)
 				{
-					String pair = aircrafts.get(i).callsign + "/" + aircrafts.get(j).callsign;
-					if(conflictingHistory.containsKey(pair))
+					listener.conflictAlert(alert);
+				}
+			}
+		}
+		else if(!conflictAlerts.isEmpty())
+		{
+			conflictAlerts = Collections.emptyList();
+			conflictAlert.reset();
+		}
+		
+		// Aircraft no longer conflicting are removed from the tracker
+		conflictTracker.endTick();
+		updatePhase = JournalWriter.BEFORE_UPDATE;
+		tick++;
+		if(journal != null)
+			journal.flush();
+		
+		// Publish the new state for other threads to read
+		publishSnapshot(aircraftArray);
+	}
+	
+	/**
+	 * Wait for the conflict stage of a pipelined simulator to finish checking the update it was last given.
+	 * The conflict stage never takes the simulator's lock, so this can be called while holding it
+	 */
+	private void waitForConflicts()
+	{
+		if(pendingCheck == null)
+			return;
+		
+		conflictStage.await();
+		finishedCheck = pendingCheck;
+		pendingCheck = null;
+	}
+	
+	/**
+	 * Stop the thread of the conflict stage once it has finished its check, a pipelined simulator starts it again if it is needed
+	 */
+	private synchronized void stopConflictStage()
+	{
+		if(conflictStage == null)
+			return;
+		
+		// The last check's listeners are still called by the next update
+		waitForConflicts();
+		conflictStage.stop();
+		conflictStage = null;
+	}
+	
+	/**
+	 * Call the conflict and conflict alert listeners for the check the conflict stage last finished
+	 */
+	private void fireFinishedCheck()
+	{
+		ConflictCheck check = finishedCheck;
+		if(check == null)
+			return;
+		finishedCheck = null; // the listeners may wait for the next check
+		
+		for(int i = 0; i < check.conflicts.size(); i += 2)
+		{
+			fireConflictListeners(check.conflicts.get(i), check.conflicts.get(i + 1));
+		}
+		for(ConflictAlert alert : check.newAlerts)
+		{
+			for(ConflictAlertListener listener : conflictAlertListeners)
+			{
+				listener.conflictAlert(alert);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the aircraft as an array, only copying the list if it has changed
+	 */
+	private Aircraft[] getAircraftArray()
+	{
+		synchronized(aircrafts)
+		{
+			if(aircraftCache == null)
+				aircraftCache = aircrafts.toArray(new Aircraft[0]);
+			return aircraftCache;
+		}
+	}
+	
+	/**
+	 * Copy the state of the simulation into the spare buffer and make it the one getSnapshot() reads.
+	 * Allocates nothing, the snapshot is only made if someone asks for it.
+	 * If a slow reader is still copying the spare, it is left to them and a new one is used instead
+	 */
+	private void publishSnapshot(Aircraft[] aircraftArray)
+	{
+		if(spareSnapshot.readers.get() > 0)
+			spareSnapshot = new SnapshotBuffer();
+		spareSnapshot.fill(time, windSpeed, windDirection, aircraftArray, conflictTracker);
+		SnapshotBuffer oldest = previousSnapshot;
+		previousSnapshot = snapshot;
+		snapshot = spareSnapshot;
+		spareSnapshot = oldest;
+	}
+	
+	/**
+	 * Run a single update on the calling thread, followed by the tasks and tick listeners.
+	 * Used to replay a journal as fast as possible without starting the simulator thread
+	 */
+	void step()
+	{
+		update();
+		afterUpdate();
+	}
+	
+	/**
+	 * Prepare the simulator to play back a journal, starting from the journal's starting conditions
+	 */
+	synchronized void startReplay(JournalReplay replay, boolean fixedTimeSteps, double time, long tick)
+	{
+		this.replay = replay;
+		this.fixedTimeSteps = fixedTimeSteps;
+		this.time = time;
+		this.tick = tick;
+	}
+	
+	/**
+	 * Stop feeding events from a journal into the simulator
+	 */
+	synchronized void stopReplay()
+	{
+		replay = null;
+		fixedTimeSteps = true;
+	}
+	
+	/**
+	 * Runs the tasks queued with invokeLater() and then fires the tick listeners.
+	 * Called on the simulator thread between updates, without holding the simulator lock
+	 */
+	private void afterUpdate()
+	{
+		Runnable task;
+		while((task = pendingTasks.poll()) != null)
+		{
+			task.run();
+		}
+		
+		double now = getTime();
+		for(TickListener listener : tickListeners)
+		{
+			listener.tickEvent(now);
+		}
+	}
+	
+	/**
+	 * The conflict stage of a pipelined simulator: checks the snapshot of an update for conflicts and conflict alerts,
+	 * the same way as checkConflicts(), then publishes it again with the aircraft in conflict.<br>
+	 * Runs while the simulator thread computes the next update, so it only reads the snapshot and only changes the
+	 * conflict state, which the simulator thread leaves alone until it has waited for the check to finish
+	 */
+	private class ConflictCheck implements Runnable
+	{
+		
+		private final SnapshotBuffer update;
+		private final double time;
+		private final long tick;
+		private final double alertHorizon;
+		private final List<WorldSnapshot.AircraftState> states;
+		
+		// Found by the check, for the simulator thread to pass on to the listeners
+		private final List<Aircraft> conflicts = new ArrayList<Aircraft>(); // Pairs of aircraft in new conflicts
+		private final List<ConflictAlert> newAlerts = new ArrayList<ConflictAlert>();
+		
+		ConflictCheck(SnapshotBuffer update, long tick, double alertHorizon)
+		{
+			this.update = update;
+			this.time = update.getTime();
+			this.tick = tick;
+			this.alertHorizon = alertHorizon;
+			this.states = update.getStates();
+		}
+		
+		@Override
+		public void run()
+		{
+			// Only pairs in neighbouring grid cells can be conflicting
+			conflictGrid.findCandidates(states);
+			conflictTracker.beginTick();
+			for(int p = 0; p < conflictGrid.getPairCount(); p++)
+			{
+				WorldSnapshot.AircraftState stateA = states.get(conflictGrid.getFirst(p));
+				WorldSnapshot.AircraftState stateB = states.get(conflictGrid.getSecond(p));
+				if(isConflicting(stateA.getLatitude(), stateA.getLongitude(), stateA.getAltitude(),
+						stateB.getLatitude(), stateB.getLongitude(), stateB.getAltitude())
+						&& conflictTracker.conflict(stateA.slot, stateB.slot, time))
+				{
+					// This is a new conflict!
+					conflicts.add(stateA.getAircraft());
+					conflicts.add(stateB.getAircraft());
+					if(events.hasListeners(SimulatorEventBus.CONFLICTS))
+					{
+						events.publish(new SimulatorEvent(SimulatorEvent.CONFLICT, time, tick,
+								new WorldSnapshot.AircraftState(stateA, conflictTracker.isInConflict(stateA.slot)),
+								new WorldSnapshot.AircraftState(stateB, true), null));
+					}
+					numberOfConflicts++;
+				}
+			}
+			
+			// Look ahead for pairs that will lose separation if nothing changes
+			if(alertHorizon > 0)
+			{
+				conflictAlerts = Collections.unmodifiableList(conflictAlert.detect(states, time, alertHorizon, newAlerts));
+			}
+			else if(!conflictAlerts.isEmpty())
+			{
+				conflictAlerts = Collections.emptyList();
+				conflictAlert.reset();
+			}
+			conflictTracker.endTick();
+			
+			// Publish the update again with the aircraft now known to be in conflict
+			// The simulator thread waits for this before publishing the next update, so the buffer is still the latest
+			update.markConflicts(conflictTracker);
+		}
+		
+	}
+	
+	/**
+	 * The thread the conflict checks of a pipelined simulator run on, one at a time.<br>
+	 * Only hands over checks through its own lock, so it never changes anything on the simulator thread
+	 * (eg. the identity hash codes the planner's maps depend on)
+	 */
+	private static class ConflictStage implements Runnable
+	{
+		
+		private ConflictCheck check; // Waiting to run or running, null once it has finished
+		private RuntimeException failure;
+		private boolean running = true;
+		
+		ConflictStage()
+		{
+			Thread thread = new Thread(this);
+			thread.setName("Simulator Conflicts");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		synchronized void submit(ConflictCheck check)
+		{
+			this.check = check;
+			notifyAll();
+		}
+		
+		/**
+		 * Wait for the check that was submitted to finish
+		 */
+		synchronized void await()
+		{
+			boolean interrupted = false;
+			while(check != null)
+			{
+				try
+				{
+					wait();
+				} catch (InterruptedException e)
+				{
+					// The conflict state has to be left consistent, so keep waiting
+					interrupted = true;
+				}
+			}
+			if(interrupted)
+				Thread.currentThread().interrupt();
+			if(failure != null)
+			{
+				RuntimeException e = failure;
+				failure = null;
+				throw new IllegalStateException("The conflict stage failed", e);
+			}
+		}
+		
+		synchronized void stop()
+		{
+			running = false;
+			notifyAll();
+		}
+		
+		@Override
+		public void run()
+		{
+			while(true)
+			{
+				ConflictCheck next;
+				synchronized(this)
+				{
+					while(running && check == null)
 					{
-						// Check if this is a new conflict
-						if(conflictingHistory.get(pair) > previousTime)
+						try
 						{
-							// This is a new conflict!
-							fireConflictListeners(aircrafts.get(i), aircrafts.get(j));
-							// Update the time reference
-							conflictingHistory.remove(pair);
-							conflictingHistory.put(pair, time);
-							numberOfConflicts++;
-						}
-						else
+							wait();
+						} catch (InterruptedException e)
 						{
-							// Conflict happened last iteration, not a new conflict
-							// Update the time reference
-							conflictingHistory.remove(pair);
-							conflictingHistory.put(pair, time);
-							continue;
+							e.printStackTrace();
 						}
 					}
-					else
-					{
-						// This is a new conflict!
-						fireConflictListeners(aircrafts.get(i), aircrafts.get(j));
-						conflictingHistory.put(pair, time);
-						numberOfConflicts++;
-					}
+					if(!running)
+						return;
+					next = check;
 				}
-				else
+				
+				RuntimeException error = null;
+				try
+				{
+					next.run();
+				} catch (RuntimeException e)
+				{
+					error = e;
+				}
+				
+				synchronized(this)
 				{
-					// Aircraft not conflicting, remove any history of it
-					String key1 = aircrafts.get(i).callsign + "/" + aircrafts.get(j).callsign;
-					String key2 = aircrafts.get(j).callsign + "/" + aircrafts.get(i).callsign;
-					if(conflictingHistory.containsKey(key1))
-						conflictingHistory.remove(key1);
-					if(conflictingHistory.containsKey(key2))
-						conflictingHistory.remove(key2);
+					failure = error;
+					check = null;
+					notifyAll();
 				}
 			}
 		}
 		
-		// Run repaint/GUI updates on the UI thread
-		EventQueue.invokeLater(new Runnable()
+	}
+	
+	/**
+	 * Updates the positions of a range of aircraft, splitting the range into chunks run in parallel
+	 */
+	private static class PropagationTask extends RecursiveAction
+	{
+		
+		private static final long serialVersionUID = 1L;
+		private Aircraft[] aircraft;
+		private int from;
+		private int to;
+		private double timeElapsed;
+		
+		PropagationTask(Aircraft[] aircraft, int from, int to, double timeElapsed)
+		{
+			this.aircraft = aircraft;
+			this.from = from;
+			this.to = to;
+			this.timeElapsed = timeElapsed;
+		}
+
+		@Override
+		protected void compute()
 		{
-			@Override
-			public void run()
+			if(to - from <= PROPAGATION_CHUNK)
 			{
-				display.repaint();
+				for(int i = from; i < to; i++)
+				{
+					aircraft[i].updatePosition(timeElapsed);
+				}
+				return;
 			}
-		});
+			
+			int middle = (from + to) >>> 1;
+			invokeAll(new PropagationTask(aircraft, from, middle, timeElapsed),
+					new PropagationTask(aircraft, middle, to, timeElapsed));
+		}
+		
 	}
 	
 	/**
@@ -484,14 +1553,32 @@ public class Simulator
 	private class AircraftUpdateRunnable implements Runnable
 	{
 
-		public boolean running = true;
+		public volatile boolean running = true;
 		
 		@Override
 		public void run()
+		{
+			if(fastTime)
+				runFastTime();
+			else
+				runRealTime();
+			
+			if(propagationPool != null)
+				propagationPool.shutdown();
+			stopConflictStage();
+		}
+		
+		private void runFastTime()
 		{
 			while(running)
 			{
 				update();
+				afterUpdate();
+				
+				// The next step is computed straight away (unless paused)
+				if(getTimeSpeed() > 0)
+					continue;
+				
 				try
 				{
 					Thread.sleep(100);
@@ -501,6 +1588,51 @@ public class Simulator
 				}
 			}
 		}
+		
+		/**
+		 * Run each update when it is due by the clock. Updates that are late are run sooner than usual,
+		 * but not back to back, until the simulator has caught up
+		 */
+		private void runRealTime()
+		{
+			while(running)
+			{
+				float speed = getTimeSpeed();
+				if(speed <= 0)
+				{
+					// Paused, instructions are still applied and the listeners called
+					clock.stop();
+					update();
+					afterUpdate();
+					sleep(PAUSED_UPDATE_TIME * 1000000);
+					continue;
+				}
+				
+				long deadline = clock.getDeadline(getTime(), speed, timeSource.nanoTime());
+				long wait = deadline - timeSource.nanoTime();
+				if(wait > 0)
+				{
+					// Check again when it is due, in case the speed changes in the meantime
+					sleep(wait);
+					continue;
+				}
+				
+				update();
+				afterUpdate();
+				clock.updateFinished(timeSource.nanoTime());
+			}
+		}
+		
+		private void sleep(long nanos)
+		{
+			try
+			{
+				timeSource.sleep(nanos);
+			} catch (InterruptedException e)
+			{
+				e.printStackTrace();
+			}
+		}
 	}
 
 }
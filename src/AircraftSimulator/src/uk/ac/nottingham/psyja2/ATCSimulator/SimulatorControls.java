@@ -27,16 +27,25 @@ import javax.swing.Box;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.ChangeEvent;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.Timer;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import java.util.List;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
 
 /**
  * The GUI controls for the simulator
  * @author Josh Argent
  *
  */
-public class SimulatorControls extends JPanel
+public class SimulatorControls extends JPanel implements SimulatorObserver
 {
 
 	private static final long serialVersionUID = 1L;
+	private Simulator simulator;
 	private JPanel panel;
 	private JLabel lblWind;
 	private JLabel label;
@@ -66,6 +75,12 @@ public class SimulatorControls extends JPanel
 	private JPanel panel_8;
 	private JLabel lblNumberOfCrms;
 	private JLabel CRMLabel;
+	private JPanel panel_14;
+	private JLabel lblLateUpdates;
+	private JLabel lateUpdatesLabel;
+	private JPanel panel_15;
+	private JLabel lblLag;
+	private JLabel lagLabel;
 	private JLabel lblAircraft;
 	private String aircraftListCache[];
 	private JList<String> aircraftList;
@@ -86,9 +101,11 @@ public class SimulatorControls extends JPanel
 
 	/**
 	 * Create the panel.
+	 * @param simulator the simulator to show and control
 	 */
-	protected SimulatorControls()
+	protected SimulatorControls(Simulator simulator)
 	{
+		this.simulator = simulator;
 		try
 		{
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -120,7 +137,7 @@ public class SimulatorControls extends JPanel
 		
 		this.windDirectionSpinner = new JSpinner();
 	
-		this.windDirectionSpinner.setModel(new SpinnerNumberModel(Simulator.getInstance().getWindDirection(), 0, 359, 1));
+		this.windDirectionSpinner.setModel(new SpinnerNumberModel(simulator.getWindDirection(), 0, 359, 1));
 		this.windDirectionSpinner.addChangeListener(new ChangeListener() {
 			public void stateChanged(ChangeEvent e)
 			{
@@ -131,7 +148,7 @@ public class SimulatorControls extends JPanel
 						// Update the simulator wind direction with the selected value
 						int value = (Integer)windDirectionSpinner.getValue();
 						if(value >= 0 && value < 360)
-							Simulator.getInstance().setWindDirection(value);		
+							simulator.setWindDirection(value);		
 					}
 				});
 			}
@@ -164,13 +181,13 @@ public class SimulatorControls extends JPanel
 						// Update the simulator wind speed with the selected value
 						int value = (Integer)windSpeedSpinner.getValue();
 						if(value >= 0 && value < 100) // Limit speed to 100kt
-							Simulator.getInstance().setWindSpeed(value);			
+							simulator.setWindSpeed(value);			
 					}
 				});
 			}
 		});
 		this.panel_2.add(this.windSpeedSpinner);
-		this.windSpeedSpinner.setModel(new SpinnerNumberModel(Simulator.getInstance().getWindSpeed(), 0, 100, 1));
+		this.windSpeedSpinner.setModel(new SpinnerNumberModel(simulator.getWindSpeed(), 0, 100, 1));
 		this.windSpeedSpinner.setFont(new Font("Tahoma", Font.PLAIN, 12));
 		
 		this.lblKts = new JLabel("kts");
@@ -218,7 +235,7 @@ public class SimulatorControls extends JPanel
 						// Update the simulator speed with the selected value
 						int value = speedSlider.getValue();
 						if(value >= 0 && value <= 32)
-							Simulator.getInstance().setTimeSpeed((float) value);	
+							simulator.setTimeSpeed((float) value);	
 						
 						// Update the label
 						speedSliderLabel.setText("x" + value);											
@@ -255,7 +272,7 @@ public class SimulatorControls extends JPanel
 		
 		this.panel_3 = new JPanel();
 		add(this.panel_3);
-		this.panel_3.setLayout(new GridLayout(4, 1, 0, 0));
+		this.panel_3.setLayout(new GridLayout(6, 1, 0, 0));
 		
 		this.panel_6 = new JPanel();
 		FlowLayout flowLayout_5 = (FlowLayout) this.panel_6.getLayout();
@@ -321,6 +338,38 @@ public class SimulatorControls extends JPanel
 		this.CRMLabel.setFont(new Font("Tahoma", Font.PLAIN, 12));
 		this.panel_8.add(this.CRMLabel);
 		
+		this.panel_14 = new JPanel();
+		FlowLayout flowLayout_11 = (FlowLayout) this.panel_14.getLayout();
+		flowLayout_11.setAlignment(FlowLayout.LEFT);
+		this.panel_3.add(this.panel_14);
+		
+		this.lblLateUpdates = new JLabel("Late updates:");
+		this.lblLateUpdates.setVerticalAlignment(SwingConstants.BOTTOM);
+		this.lblLateUpdates.setFont(new Font("Tahoma", Font.PLAIN, 12));
+		this.panel_14.add(this.lblLateUpdates);
+		
+		this.lateUpdatesLabel = new JLabel("0");
+		this.lateUpdatesLabel.setVerticalAlignment(SwingConstants.BOTTOM);
+		this.lateUpdatesLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+		this.lateUpdatesLabel.setFont(new Font("Tahoma", Font.PLAIN, 12));
+		this.panel_14.add(this.lateUpdatesLabel);
+		
+		this.panel_15 = new JPanel();
+		FlowLayout flowLayout_12 = (FlowLayout) this.panel_15.getLayout();
+		flowLayout_12.setAlignment(FlowLayout.LEFT);
+		this.panel_3.add(this.panel_15);
+		
+		this.lblLag = new JLabel("Behind real time:");
+		this.lblLag.setVerticalAlignment(SwingConstants.BOTTOM);
+		this.lblLag.setFont(new Font("Tahoma", Font.PLAIN, 12));
+		this.panel_15.add(this.lblLag);
+		
+		this.lagLabel = new JLabel("0");
+		this.lagLabel.setVerticalAlignment(SwingConstants.BOTTOM);
+		this.lagLabel.setHorizontalAlignment(SwingConstants.RIGHT);
+		this.lagLabel.setFont(new Font("Tahoma", Font.PLAIN, 12));
+		this.panel_15.add(this.lagLabel);
+		
 		this.verticalStrut_2 = Box.createVerticalStrut(5);
 		add(this.verticalStrut_2);
 		
@@ -371,6 +420,37 @@ public class SimulatorControls extends JPanel
 		add(this.scrollPane);
 		
 		updateControlValues();
+		
+		// The clock's counts change during updates, so are refreshed every second rather than when the simulation changes
+		Timer clockTimer = new Timer(1000, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				updateClockValues();
+			}
+		});
+		clockTimer.start();
+	}
+	
+	@Override
+	public void simulatorUpdated()
+	{
+		// The controls only show values that change outside of an update
+	}
+	
+	@Override
+	public void simulatorChanged()
+	{
+		// Update the controls on the UI thread
+		EventQueue.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				updateControlValues();
+			}
+		});
 	}
 	
 	protected void updateControlValues()
@@ -378,34 +458,33 @@ public class SimulatorControls extends JPanel
 		isUpdating = true;
 		
 		// Set the wind control values
-		this.windDirectionSpinner.setValue(Simulator.getInstance().getWindDirection());
-		this.windSpeedSpinner.setValue(Simulator.getInstance().getWindSpeed());
+		this.windDirectionSpinner.setValue(simulator.getWindDirection());
+		this.windSpeedSpinner.setValue(simulator.getWindSpeed());
 		
 		// Set the simulation speed slider
-		this.speedSlider.setValue((int)Simulator.getInstance().getTimeSpeed());
+		this.speedSlider.setValue((int)simulator.getTimeSpeed());
 		
 		// Update the statistics
-		this.numberOfAircraftLabel.setText(String.valueOf(Simulator.getInstance().getNumberOfAircraft()));
-		this.conflictsLabel.setText(String.valueOf(Simulator.getInstance().getNumberOfConflicts()));
-		if(Simulator.getInstance().getFlowRate() == -1)
+		this.numberOfAircraftLabel.setText(String.valueOf(simulator.getNumberOfAircraft()));
+		this.conflictsLabel.setText(String.valueOf(simulator.getNumberOfConflicts()));
+		if(simulator.getFlowRate() == -1)
 			this.flowRateLabel.setText("Not available");
 		else
-			this.flowRateLabel.setText(String.valueOf(Simulator.getInstance().getFlowRate()));
-		this.CRMLabel.setText(String.valueOf(Simulator.getInstance().getNumberOfInstructions()));
+			this.flowRateLabel.setText(String.valueOf(simulator.getFlowRate()));
+		this.CRMLabel.setText(String.valueOf(simulator.getNumberOfInstructions()));
+		updateClockValues();
 		
 		// Update the instruction log
-		instructionLogTextarea.setText(Simulator.getInstance().getInstructionLog());
+		instructionLogTextarea.setText(simulator.getInstructionLog());
 		
 		// Update the aircraft list
-		String aircrafts[] = new String[Simulator.getInstance().getNumberOfAircraft()];
+		List<AircraftState> states = simulator.getSnapshot().getAllAircraft();
+		String aircrafts[] = new String[states.size()];
 		int i = 0;
-		for(Aircraft aircraft : Simulator.getInstance().getAllAircraft())
+		for(AircraftState aircraft : states)
 		{
-			if(aircrafts.length > i)
-			{
-				aircrafts[i] = aircraft.getCallsign() + " (" + aircraft.profile.type + ")";
-				i++;
-			}
+			aircrafts[i] = aircraft.getCallsign() + " (" + aircraft.getProfile().type + ")";
+			i++;
 		}
 		// Keep a cache of the array to prevent it continually updating the aircraft list
 		// Will only update if there has been a change
@@ -422,6 +501,22 @@ public class SimulatorControls extends JPanel
 		isUpdating = false;
 	}
 	
+	/**
+	 * Show how late the real time updates have been
+	 */
+	private void updateClockValues()
+	{
+		if(simulator.isFastTime())
+		{
+			this.lateUpdatesLabel.setText("Fast time");
+			this.lagLabel.setText("Fast time");
+			return;
+		}
+		RealTimeClock clock = simulator.getClock();
+		this.lateUpdatesLabel.setText(String.format("%d (worst %.0fms)", clock.getOverruns(), clock.getWorstLatency()));
+		this.lagLabel.setText(String.format("%.1fs (%.0fs lost)", clock.getLag(), clock.getLostTime()));
+	}
+	
 	/*
 	 * Will compare two arrays
 	 * If they are exactly the same (same item, same order) will return true
@@ -1,12 +1,15 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
 import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.RenderingHints;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.awt.event.MouseEvent;
@@ -19,15 +22,17 @@ import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
 
 import javax.swing.JComponent;
+import javax.swing.Timer;
 
 import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint.WaypointType;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
 
 /**
  * The GUI radar display for the simulator
  * @author Josh Argent
  *
  */
-public class SimulatorDisplay extends JComponent implements MouseListener, MouseMotionListener, MouseWheelListener, ComponentListener
+public class SimulatorDisplay extends JComponent implements MouseListener, MouseMotionListener, MouseWheelListener, ComponentListener, SimulatorObserver
 {
 
 	private static final long serialVersionUID = 1L;
@@ -35,7 +40,9 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 	private static final Color SYMBOLS_COLOUR = new Color(116, 126, 138);
 	private static final Color AIRCRAFT_COLOUR = new Color(0, 220, 20);
 	private static final Color CONFLICT_COLOUR = Color.RED;
+	private static final int FRAME_TIME = 40; // Milliseconds between frames while the aircraft are moving
 	
+	private Simulator simulator;
 	private float zoom = 4f;
 	private int scrollX = 0;
 	private int scrollY = 0;
@@ -45,13 +52,34 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 	private BufferedImage backgroundBuffer;
 	private boolean invalidateBackground = true;
 	
-	protected SimulatorDisplay()
+	// What was last painted, so frames are only painted when something has moved
+	private WorldSnapshot paintedSnapshot;
+	private double paintedInterpolation;
+	
+	/**
+	 * @param simulator the simulator to display
+	 */
+	protected SimulatorDisplay(Simulator simulator)
 	{
+		this.simulator = simulator;
+		
 		// Attach mouse listener
 		addMouseListener(this);
 		addMouseMotionListener(this);
 		addMouseWheelListener(this);
 		addComponentListener(this);
+		
+		// Paint frames at a steady rate, however many updates happen between them
+		Timer frameTimer = new Timer(FRAME_TIME, new ActionListener()
+		{
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				if(simulator.getSnapshot() != paintedSnapshot || simulator.getInterpolation() != paintedInterpolation)
+					repaint();
+			}
+		});
+		frameTimer.start();
 	}
 	
 	@Override
@@ -75,11 +103,11 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 			backgroundG2.setColor(BACKGROUND_COLOUR);
 			backgroundG2.fillRect(0, 0, getWidth(), getHeight());
 			// Draw the waypoints and airways
-			for(Airway airway : Simulator.getInstance().getScenario().airways)
+			for(Airway airway : simulator.getScenario().airways)
 			{
 				drawAirway(backgroundG2, airway);
 			}
-			for(Waypoint waypoint : Simulator.getInstance().getScenario().waypoints.values())
+			for(Waypoint waypoint : simulator.getScenario().waypoints.values())
 			{
 				drawWaypoint(backgroundG2, waypoint);
 			}
@@ -89,26 +117,40 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 		// Draw the background buffer to the screen
 		g2.drawImage(backgroundBuffer, 0, 0, this);
 		
-		// Draw the aircraft
-		for(Aircraft aircraft : Simulator.getInstance().getAllAircraft())
+		// Draw the aircraft part of the way between the last two updates, as far as the real time has got to the next one
+		WorldSnapshot current = simulator.getSnapshot();
+		WorldSnapshot previous = simulator.getPreviousSnapshot();
+		double fraction = simulator.getInterpolation();
+		boolean interpolate = fraction > 0 && current.getTime() > previous.getTime() && current.getTime() - previous.getTime() <= 1;
+		paintedSnapshot = current;
+		paintedInterpolation = fraction;
+		for(AircraftState aircraft : current.getAllAircraft())
 		{
+			double heading = aircraft.getHeading();
+			Coordinate location = aircraft.getLocation();
+			AircraftState before = interpolate ? previous.getAircraft(aircraft.getAircraft()) : null;
+			if(before != null)
+			{
+				double turn = (heading - before.getHeading() + 540) % 360 - 180; // the short way round
+				heading = (before.getHeading() + turn * fraction + 360) % 360;
+				location = new Coordinate(before.getLatitude() + (location.getLatitude() - before.getLatitude()) * fraction,
+						before.getLongitude() + (location.getLongitude() - before.getLongitude()) * fraction);
+			}
+			
 			// Calculate the x,y coordinates of the aircraft from it's lat/lng values
-			double x = (zoom * (scrollX + aircraft.getLocation().getX(Simulator.getInstance().getScenario().displayMin.getLongitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLongitude(), getWidth())));
-			double y = (zoom * (scrollY + aircraft.getLocation().getY(Simulator.getInstance().getScenario().displayMin.getLatitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLatitude(), getHeight())));	
+			double x = (zoom * (scrollX + location.getX(simulator.getScenario().displayMin.getLongitude(), 
+				simulator.getScenario().displayMax.getLongitude(), getWidth())));
+			double y = (zoom * (scrollY + location.getY(simulator.getScenario().displayMin.getLatitude(), 
+				simulator.getScenario().displayMax.getLatitude(), getHeight())));	
 			
 			// If the aircraft is not conflicting paint it green, otherwise make it red
 			Color aircraftColour = AIRCRAFT_COLOUR;
-			for(String conflictingPair : Simulator.getInstance().conflictingHistory.keySet())
-			{
-				if(conflictingPair.contains(aircraft.getCallsign()))
-					aircraftColour = CONFLICT_COLOUR;
-			}
+			if(aircraft.isInConflict())
+				aircraftColour = CONFLICT_COLOUR;
 			g.setColor(aircraftColour);
 			
 			// Draw the aircraft's heading line
-			double radians = aircraft.getHeading() * (Math.PI / 180) - Math.PI / 2;
+			double radians = heading * (Math.PI / 180) - Math.PI / 2;
 			double u = x + 30 * Math.cos(radians);
 			double v = y + 30 * Math.sin(radians);
 			g2.draw(new Line2D.Double(x, y, u, v));
@@ -130,9 +172,9 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 			
 			// Draw the text label for the aircraft
 			String line1 = aircraft.getCallsign();
-			String line2 = aircraft.profile.type;
+			String line2 = aircraft.getProfile().type;
 			String line3 = aircraft.getFlightLevel() + "  " + ((int)aircraft.getGroundSpeed()) + "kt";
-			if(aircraft.getHeading() > 180)
+			if(heading > 180)
 			{
 				FontMetrics fontMetrics = g2.getFontMetrics();
 				g.drawString(line1, (int) u - 5 - fontMetrics.stringWidth(line1), (int) v);
@@ -151,10 +193,10 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 	private void drawWaypoint(Graphics g, Waypoint waypoint)
 	{		
 		// Calculate the waypoint x and y position
-		int x = (int) (zoom * (scrollX + waypoint.getLocation().getX(Simulator.getInstance().getScenario().displayMin.getLongitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLongitude(), getWidth())));
-		int y = (int) (zoom * (scrollY + waypoint.getLocation().getY(Simulator.getInstance().getScenario().displayMin.getLatitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLatitude(), getHeight())));
+		int x = (int) (zoom * (scrollX + waypoint.getLocation().getX(simulator.getScenario().displayMin.getLongitude(), 
+				simulator.getScenario().displayMax.getLongitude(), getWidth())));
+		int y = (int) (zoom * (scrollY + waypoint.getLocation().getY(simulator.getScenario().displayMin.getLatitude(), 
+				simulator.getScenario().displayMax.getLatitude(), getHeight())));
 		
 		// Draw the waypoint icon
 		if(waypoint.getType() == WaypointType.INTERSECTION)
@@ -199,14 +241,14 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 	private void drawAirway(Graphics g, Airway airway)
 	{
 		g.setColor(SYMBOLS_COLOUR);
-		int x1 = (int) (zoom * (scrollX + airway.getFrom().getLocation().getX(Simulator.getInstance().getScenario().displayMin.getLongitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLongitude(), getWidth())));
-		int y1 = (int) (zoom * (scrollY + airway.getFrom().getLocation().getY(Simulator.getInstance().getScenario().displayMin.getLatitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLatitude(), getHeight())));
-		int x2 = (int) (zoom * (scrollX + airway.getTo().getLocation().getX(Simulator.getInstance().getScenario().displayMin.getLongitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLongitude(), getWidth())));
-		int y2 = (int) (zoom * (scrollY + airway.getTo().getLocation().getY(Simulator.getInstance().getScenario().displayMin.getLatitude(), 
-				Simulator.getInstance().getScenario().displayMax.getLatitude(), getHeight())));
+		int x1 = (int) (zoom * (scrollX + airway.getFrom().getLocation().getX(simulator.getScenario().displayMin.getLongitude(), 
+				simulator.getScenario().displayMax.getLongitude(), getWidth())));
+		int y1 = (int) (zoom * (scrollY + airway.getFrom().getLocation().getY(simulator.getScenario().displayMin.getLatitude(), 
+				simulator.getScenario().displayMax.getLatitude(), getHeight())));
+		int x2 = (int) (zoom * (scrollX + airway.getTo().getLocation().getX(simulator.getScenario().displayMin.getLongitude(), 
+				simulator.getScenario().displayMax.getLongitude(), getWidth())));
+		int y2 = (int) (zoom * (scrollY + airway.getTo().getLocation().getY(simulator.getScenario().displayMin.getLatitude(), 
+				simulator.getScenario().displayMax.getLatitude(), getHeight())));
 		g.drawLine(x1, y1, x2, y2);
 	}
 
@@ -277,6 +319,33 @@ public class SimulatorDisplay extends JComponent implements MouseListener, Mouse
 		repaint();
 	}
 	
+	@Override
+	public void simulatorUpdated()
+	{
+		// Painted by the frame timer, rather than after each of the many updates a frame can have at high time speeds
+	}
+	
+	@Override
+	public void simulatorChanged()
+	{
+		repaintLater();
+	}
+	
+	/**
+	 * Repaint on the UI thread
+	 */
+	private void repaintLater()
+	{
+		EventQueue.invokeLater(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				repaint();
+			}
+		});
+	}
+	
 	protected void invalidateBackgroundBuffer()
 	{
 		invalidateBackground = true;
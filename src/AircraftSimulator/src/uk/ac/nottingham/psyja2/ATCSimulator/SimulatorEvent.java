@@ -0,0 +1,116 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
+
+/**
+ * An immutable record of something that happened in the simulation, delivered by the {@link SimulatorEventBus}.<br>
+ * Events are delivered after the simulator has moved on, so they carry copies of the state of the
+ * aircraft involved as it was when the event happened
+ * @author Josh Argent
+ *
+ */
+public class SimulatorEvent
+{
+
+	// Event types
+	public static final int CONFLICT = 0;
+	public static final int INSTRUCTION_COMPLETE = 1;
+	public static final int AIRCRAFT_ADDED = 2;
+	public static final int AIRCRAFT_REMOVED = 3;
+
+	private final int type;
+	private final double time;
+	private final long tick;
+	private final AircraftState stateA;
+	private final AircraftState stateB;
+	private final Instruction instruction;
+
+	SimulatorEvent(int type, double time, long tick, AircraftState stateA, AircraftState stateB, Instruction instruction)
+	{
+		this.type = type;
+		this.time = time;
+		this.tick = tick;
+		this.stateA = stateA;
+		this.stateB = stateB;
+		this.instruction = instruction;
+	}
+
+	/**
+	 * Returns the type of event (CONFLICT, INSTRUCTION_COMPLETE, AIRCRAFT_ADDED or AIRCRAFT_REMOVED)
+	 */
+	public int getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Returns the simulator time the event happened at (in seconds since start)
+	 */
+	public double getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the number of updates the simulator had completed when the event happened
+	 */
+	public long getTick()
+	{
+		return tick;
+	}
+
+	/**
+	 * Returns the state of the aircraft the event is about (the first aircraft of a conflict)
+	 */
+	public AircraftState getAircraftA()
+	{
+		return stateA;
+	}
+
+	/**
+	 * Returns the state of the second aircraft of a conflict, or null for other events
+	 */
+	public AircraftState getAircraftB()
+	{
+		return stateB;
+	}
+
+	/**
+	 * Returns the instruction that completed, or null for other events
+	 */
+	public Instruction getInstruction()
+	{
+		return instruction;
+	}
+
+	/**
+	 * Returns the channel of the {@link SimulatorEventBus} this event is delivered on
+	 */
+	int getChannel()
+	{
+		return getChannel(type);
+	}
+
+	/**
+	 * Returns the channel of the {@link SimulatorEventBus} events of the given type are delivered on
+	 */
+	static int getChannel(int type)
+	{
+		switch(type)
+		{
+			case CONFLICT: return SimulatorEventBus.CONFLICTS;
+			case INSTRUCTION_COMPLETE: return SimulatorEventBus.INSTRUCTIONS;
+			default: return SimulatorEventBus.AIRCRAFT;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		String name = (type == CONFLICT) ? "Conflict" : (type == INSTRUCTION_COMPLETE) ? "Instruction complete"
+				: (type == AIRCRAFT_ADDED) ? "Aircraft added" : "Aircraft removed";
+		String aircraft = stateA.getCallsign() + (stateB != null ? "/" + stateB.getCallsign() : "");
+		return String.format("%s at %.1fs: %s%s", name, time, aircraft, instruction != null ? " " + instruction : "");
+	}
+
+}
@@ -0,0 +1,233 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers simulator events to listeners on their own threads, so slow listeners (eg. ones writing files)
+ * never hold up a simulator update.<br>
+ * There is a channel for conflicts, one for completed instructions and one for aircraft being added and removed.
+ * Each channel has a fixed size ring buffer and a consumer thread, started when the first listener is added.
+ * Publishing never waits: if a channel's consumer falls so far behind that its ring is full, the new event
+ * is dropped and counted instead.<br>
+ * The simulator does no work for a channel without listeners
+ * @author Josh Argent
+ *
+ */
+public class SimulatorEventBus
+{
+
+	// Channels
+	public static final int CONFLICTS = 0;
+	public static final int INSTRUCTIONS = 1;
+	public static final int AIRCRAFT = 2;
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final String CHANNEL_NAMES[] = { "conflicts", "instructions", "aircraft" };
+
+	private final Channel[] channels;
+
+	/**
+	 * @param capacity the number of events each channel can hold before new events are dropped (rounded up to a power of 2)
+	 */
+	public SimulatorEventBus(int capacity)
+	{
+		channels = new Channel[CHANNEL_NAMES.length];
+		for(int i = 0; i < channels.length; i++)
+		{
+			channels[i] = new Channel(CHANNEL_NAMES[i], capacity);
+		}
+	}
+
+	/**
+	 * Add a listener to a channel (CONFLICTS, INSTRUCTIONS or AIRCRAFT)
+	 */
+	public void addListener(int channel, SimulatorEventListener listener)
+	{
+		channels[channel].addListener(listener);
+	}
+
+	/**
+	 * Remove a listener from a channel
+	 */
+	public void removeListener(int channel, SimulatorEventListener listener)
+	{
+		channels[channel].listeners.remove(listener);
+	}
+
+	/**
+	 * Returns true if a channel has any listeners, so events for it need to be made
+	 */
+	boolean hasListeners(int channel)
+	{
+		return !channels[channel].listeners.isEmpty();
+	}
+
+	/**
+	 * Queue an event for its channel's listeners. Never waits
+	 * @return false if the channel was full and the event was dropped
+	 */
+	boolean publish(SimulatorEvent event)
+	{
+		return channels[event.getChannel()].offer(event);
+	}
+
+	/**
+	 * Returns the number of events that have been queued on a channel
+	 */
+	public long getPublished(int channel)
+	{
+		return channels[channel].published;
+	}
+
+	/**
+	 * Returns the number of events that were dropped because the channel was full
+	 */
+	public long getDropped(int channel)
+	{
+		return channels[channel].dropped;
+	}
+
+	/**
+	 * Returns the number of events that have been given to the listeners of a channel
+	 */
+	public long getDelivered(int channel)
+	{
+		return channels[channel].delivered;
+	}
+
+	/**
+	 * Wait until every event queued so far has been given to the listeners (or a channel's consumer has stopped)
+	 */
+	public void flush()
+	{
+		for(Channel channel : channels)
+		{
+			long target = channel.published;
+			while(channel.delivered < target && channel.thread != null && !channel.stopped)
+			{
+				try
+				{
+					Thread.sleep(1);
+				} catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A ring buffer of events with a single consumer thread
+	 */
+	private static class Channel implements Runnable
+	{
+
+		private final String name;
+		private final SimulatorEvent[] ring;
+		private final int mask;
+		private final List<SimulatorEventListener> listeners = new CopyOnWriteArrayList<SimulatorEventListener>();
+		private Thread thread;
+
+		// Positions are counted from the start and never wrap, the slot is position & mask
+		private volatile long head; // Next event to deliver, only moved by the consumer
+		private volatile long tail; // Next free position, only moved by producers
+		private volatile boolean waiting; // The consumer is (about to be) parked
+		private volatile boolean stopped; // The consumer has died, so nothing more will be delivered
+
+		private volatile long published;
+		private volatile long dropped;
+		private volatile long delivered;
+
+		Channel(String name, int capacity)
+		{
+			this.name = name;
+			int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+			ring = new SimulatorEvent[size];
+			mask = size - 1;
+		}
+
+		synchronized void addListener(SimulatorEventListener listener)
+		{
+			listeners.add(listener);
+			if(thread == null)
+			{
+				thread = new Thread(this);
+				thread.setName("Simulator Events (" + name + ")");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+
+		/**
+		 * Called by the simulator (usually its own thread), only holds the lock long enough to copy a reference
+		 */
+		synchronized boolean offer(SimulatorEvent event)
+		{
+			long position = tail;
+			if(position - head == ring.length)
+			{
+				dropped++;
+				return false;
+			}
+			ring[(int) position & mask] = event;
+			tail = position + 1;
+			published++;
+			if(waiting)
+				LockSupport.unpark(thread);
+			return true;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				deliver();
+			}
+			finally
+			{
+				stopped = true;
+			}
+		}
+
+		private void deliver()
+		{
+			while(true)
+			{
+				long position = head;
+				if(position == tail)
+				{
+					// Nothing to deliver, check again after saying we are waiting so a new event can't be missed
+					waiting = true;
+					if(position == tail)
+						LockSupport.park(this);
+					waiting = false;
+					continue;
+				}
+
+				SimulatorEvent event = ring[(int) position & mask];
+				ring[(int) position & mask] = null;
+				head = position + 1;
+
+				for(SimulatorEventListener listener : listeners)
+				{
+					try
+					{
+						listener.simulatorEvent(event);
+					} catch (Throwable e)
+					{
+						// One broken listener shouldn't stop the others getting events (or stop the channel)
+						e.printStackTrace();
+					}
+				}
+				delivered++;
+			}
+		}
+
+	}
+
+}
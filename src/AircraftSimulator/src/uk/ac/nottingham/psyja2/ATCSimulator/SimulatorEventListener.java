@@ -0,0 +1,15 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Implementable interface to receive events from a {@link SimulatorEventBus}
+ * @author Josh Argent
+ *
+ */
+public interface SimulatorEventListener
+{
+	/**
+	 * Called on the consumer thread of the event's channel, in the order the events happened.
+	 * Can take as long as it needs without holding up the simulator
+	 */
+	void simulatorEvent(SimulatorEvent event);
+}
@@ -0,0 +1,22 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Implementable interface for a view of the simulator, such as the GUI display and controls.<br>
+ * Observers are only attached when a GUI asks for them, so a simulator without any does no work to keep them up to date.
+ * They are called on the thread that changed the simulator, so should hand any work over to their own thread (eg. the UI thread)
+ * @author Josh Argent
+ *
+ */
+public interface SimulatorObserver
+{
+	/**
+	 * Called after every simulator update, once the aircraft have moved
+	 */
+	void simulatorUpdated();
+
+	/**
+	 * Called when the simulation is changed from outside an update: aircraft added or removed,
+	 * instructions sent, conflicts, or the wind and time speed changed
+	 */
+	void simulatorChanged();
+}
@@ -0,0 +1,164 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot.AircraftState;
+
+/**
+ * A reusable copy of the state of the simulation at the end of an update.<br>
+ * The simulator keeps three of these: the last update, the one before it, and a spare it fills with the next update
+ * before swapping it in. Filling one only copies values into states that already exist, so an update allocates nothing.
+ * A WorldSnapshot is only made from a buffer the first time a reader asks for it, by the reader.
+ * The reader pins the buffer while it copies it, and the simulator never fills a pinned buffer again,
+ * so neither has to lock or wait for the other
+ * @author Josh Argent
+ *
+ */
+final class SnapshotBuffer
+{
+
+	final AtomicInteger readers = new AtomicInteger(); // Readers copying the buffer, it can't be filled again until they finish
+	
+	private double time;
+	private int windSpeed;
+	private int windDirection;
+	private AircraftState[] states = new AircraftState[0];
+	private int size = 0;
+	
+	// Whether each aircraft was in conflict, once when the buffer was filled and again once the conflict stage has checked it.
+	// The array in use is swapped rather than changed, so a reader sees all of one or all of the other
+	private boolean[] filledConflicts = new boolean[0];
+	private boolean[] markedConflicts = new boolean[0];
+	private volatile boolean[] conflicts = filledConflicts;
+	
+	private volatile WorldSnapshot snapshot; // Made from the buffer the first time it is asked for, until the buffer is filled or marked again
+
+	// A read only view of the states in use
+	private final List<AircraftState> view = new AbstractList<AircraftState>() {
+
+		@Override
+		public AircraftState get(int index)
+		{
+			if(index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return states[index];
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+	};
+
+	/**
+	 * Copy the state of the aircraft, only allocating if there are more aircraft than ever before.
+	 * The buffer must not be pinned by a reader
+	 */
+	void fill(double time, int windSpeed, int windDirection, Aircraft[] aircraftArray, ConflictTracker conflictTracker)
+	{
+		this.time = time;
+		this.windSpeed = windSpeed;
+		this.windDirection = windDirection;
+		if(aircraftArray.length > states.length)
+		{
+			AircraftState[] grown = new AircraftState[Math.max(aircraftArray.length, states.length * 2)];
+			System.arraycopy(states, 0, grown, 0, states.length);
+			for(int i = states.length; i < grown.length; i++)
+			{
+				grown[i] = new AircraftState();
+			}
+			states = grown;
+			filledConflicts = new boolean[grown.length];
+			markedConflicts = new boolean[grown.length];
+		}
+		for(int i = 0; i < aircraftArray.length; i++)
+		{
+			boolean inConflict = conflictTracker.isInConflict(aircraftArray[i].slot);
+			states[i].set(aircraftArray[i], inConflict);
+			filledConflicts[i] = inConflict;
+		}
+		size = aircraftArray.length;
+		conflicts = filledConflicts;
+		snapshot = null;
+	}
+
+	/**
+	 * Update which aircraft are in conflict, once the conflict stage of a pipelined simulator has checked the buffer.
+	 * A snapshot already made of the buffer is replaced the next time one is asked for
+	 */
+	synchronized void markConflicts(ConflictTracker conflictTracker)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			markedConflicts[i] = conflictTracker.isInConflict(states[i].slot);
+		}
+		conflicts = markedConflicts;
+		snapshot = null;
+	}
+
+	double getTime()
+	{
+		return time;
+	}
+
+	int getWindSpeed()
+	{
+		return windSpeed;
+	}
+
+	int getWindDirection()
+	{
+		return windDirection;
+	}
+
+	/**
+	 * Returns the states of the aircraft, which change when the buffer is filled again
+	 */
+	List<AircraftState> getStates()
+	{
+		return view;
+	}
+
+	/**
+	 * Returns the snapshot already made of the buffer, or null if there isn't one yet
+	 */
+	WorldSnapshot getMadeSnapshot()
+	{
+		return snapshot;
+	}
+
+	/**
+	 * Returns an immutable snapshot of the buffer, making it if it hasn't been made yet.
+	 * Called by readers without locking the simulator, the buffer must be pinned while it is copied
+	 */
+	WorldSnapshot makeSnapshot()
+	{
+		WorldSnapshot made = snapshot;
+		if(made != null)
+			return made;
+		
+		boolean[] inConflict = conflicts;
+		List<AircraftState> copies = new ArrayList<AircraftState>(size);
+		for(int i = 0; i < size; i++)
+		{
+			copies.add(new AircraftState(states[i], inConflict[i]));
+		}
+		made = new WorldSnapshot(time, windSpeed, windDirection, copies);
+		
+		// Keep it for the next reader, unless the conflicts were marked while it was being made
+		synchronized(this)
+		{
+			if(conflicts != inConflict)
+				return made;
+			if(snapshot == null)
+				snapshot = made;
+			return snapshot;
+		}
+	}
+
+}
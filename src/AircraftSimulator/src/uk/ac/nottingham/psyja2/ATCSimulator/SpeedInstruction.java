@@ -1,5 +1,8 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * An instruction to make an aircraft reduce/increase its speed to an assigned value
  * @author Josh Argent
@@ -40,21 +43,35 @@ public class SpeedInstruction extends Instruction
 			targetSpeed = aircraft.profile.minSpeed - (aircraft.getAltitude() / 200);
 
 		// Determine if the speed should increase or decrease
-		if(aircraft.speed < targetSpeed)
+		double speed = aircraft.getSpeed();
+		if(speed < targetSpeed)
 		{
 			// Acceleration
-			aircraft.speed += Math.min(targetSpeed - aircraft.speed, accel);
+			aircraft.setSpeed(speed + Math.min(targetSpeed - speed, accel));
 		}
-		else if(aircraft.speed > targetSpeed)
+		else if(speed > targetSpeed)
 		{
 			// Deceleration
-			aircraft.speed -= Math.min(aircraft.speed - targetSpeed, accel);
+			aircraft.setSpeed(speed - Math.min(speed - targetSpeed, accel));
 		}
 		
-		if(aircraft.speed == targetSpeed)
+		if(aircraft.getSpeed() == targetSpeed)
 			fireInstructionComplete(aircraft);
 	}
 
+	@Override
+	public int getSlot()
+	{
+		return SPEED;
+	}
+
+	@Override
+	protected void write(DataOutput out) throws IOException
+	{
+		out.writeByte(SPEED_TYPE);
+		out.writeDouble(targetSpeed);
+	}
+
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,145 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Checks for losses of separation between updates, as well as at the end of them.<br>
+ * The aircraft's positions at the start of an update are recorded, and during the update each aircraft is taken
+ * to move in a straight line at a constant rate from there to where it ends up. For each candidate pair the times
+ * they are horizontally and vertically too close are solved for directly, so a pair that closes at speed and passes
+ * through each other's separation within a single update is still found.
+ * Candidates come from a ConflictGrid with cells widened by the furthest any aircraft moved in the update
+ * @author Josh Argent
+ *
+ */
+public class SweptConflictCheck
+{
+
+	private static double EARTH_RADIUS = 6371e3;
+	private static double GRID_HEADROOM = 1.25; // Grids are made larger than needed, so they aren't rebuilt every update
+
+	private final double distance;
+	private final double altitude;
+
+	private ConflictGrid grid;
+	private double gridDistance;
+	private double gridAltitude;
+
+	// Position of each slot at the start of the update, only valid if its stamp is the current one
+	private double[] startLatitudes = new double[16];
+	private double[] startLongitudes = new double[16];
+	private double[] startAltitudes = new double[16];
+	private int[] startStamps = new int[16];
+	private int stamp;
+
+	/**
+	 * @param distance the horizontal separation (in metres)
+	 * @param altitude the vertical separation (in feet)
+	 */
+	public SweptConflictCheck(double distance, double altitude)
+	{
+		this.distance = distance;
+		this.altitude = altitude;
+	}
+
+	/**
+	 * Record where the aircraft (all in the same simulator) are before they are moved. Aircraft added after this
+	 * are taken to have been where they end up for the whole update
+	 */
+	public void recordStart(Aircraft[] aircrafts)
+	{
+		stamp++;
+		for(Aircraft aircraft : aircrafts)
+		{
+			int slot = aircraft.slot;
+			if(slot >= startStamps.length)
+			{
+				int size = Math.max(slot + 1, startStamps.length * 2);
+				startLatitudes = Arrays.copyOf(startLatitudes, size);
+				startLongitudes = Arrays.copyOf(startLongitudes, size);
+				startAltitudes = Arrays.copyOf(startAltitudes, size);
+				startStamps = Arrays.copyOf(startStamps, size);
+			}
+			startLatitudes[slot] = aircraft.store.latitudes[slot];
+			startLongitudes[slot] = aircraft.store.longitudes[slot];
+			startAltitudes[slot] = aircraft.store.altitudes[slot];
+			startStamps[slot] = stamp;
+		}
+	}
+
+	/**
+	 * Find all pairs of aircraft that could have been within separation at some point in the update
+	 * @return the grid holding the candidate pairs
+	 */
+	public ConflictGrid findCandidates(Aircraft[] aircrafts)
+	{
+		// Any pair that was within separation during the update ends up no further apart than the separation
+		// plus the distance both moved
+		double maxMove = 0;
+		double maxClimb = 0;
+		for(Aircraft aircraft : aircrafts)
+		{
+			int slot = aircraft.slot;
+			if(!hasStart(slot))
+				continue;
+			double lat = aircraft.store.latitudes[slot];
+			double x = Math.toRadians(aircraft.store.longitudes[slot] - startLongitudes[slot]) * Math.cos(Math.toRadians(lat)) * EARTH_RADIUS;
+			double y = Math.toRadians(lat - startLatitudes[slot]) * EARTH_RADIUS;
+			double move = Math.sqrt(x * x + y * y);
+			double climb = Math.abs(aircraft.store.altitudes[slot] - startAltitudes[slot]);
+			if(!Double.isNaN(move))
+				maxMove = Math.max(maxMove, move);
+			if(!Double.isNaN(climb))
+				maxClimb = Math.max(maxClimb, climb);
+		}
+
+		double searchDistance = distance + 2 * maxMove;
+		double searchAltitude = altitude + 2 * maxClimb;
+		if(grid == null || searchDistance > gridDistance || searchAltitude > gridAltitude
+				|| searchDistance * GRID_HEADROOM * 2 < gridDistance || searchAltitude * GRID_HEADROOM * 2 < gridAltitude)
+		{
+			gridDistance = searchDistance * GRID_HEADROOM;
+			gridAltitude = searchAltitude * GRID_HEADROOM;
+			grid = new ConflictGrid(gridDistance, gridAltitude);
+		}
+		grid.findCandidates(aircrafts);
+		return grid;
+	}
+
+	/**
+	 * Returns true if a pair of aircraft were within separation at any time during the update,
+	 * in a flat plane around the first aircraft's starting position
+	 */
+	public boolean lostSeparation(Aircraft aircraftA, Aircraft aircraftB)
+	{
+		AircraftStateStore storeA = aircraftA.store;
+		AircraftStateStore storeB = aircraftB.store;
+		int a = aircraftA.slot;
+		int b = aircraftB.slot;
+
+		// Where each aircraft started, or where it is now if it was added during the update
+		double startLatA = hasStart(a) ? startLatitudes[a] : storeA.latitudes[a];
+		double startLngA = hasStart(a) ? startLongitudes[a] : storeA.longitudes[a];
+		double startAltA = hasStart(a) ? startAltitudes[a] : storeA.altitudes[a];
+		double startLatB = hasStart(b) ? startLatitudes[b] : storeB.latitudes[b];
+		double startLngB = hasStart(b) ? startLongitudes[b] : storeB.longitudes[b];
+		double startAltB = hasStart(b) ? startAltitudes[b] : storeB.altitudes[b];
+		double cosLat = Math.cos(Math.toRadians(startLatA));
+
+		// Position of B relative to A at the start, and how that changes over the update (t from 0 to 1)
+		double x = Math.toRadians(startLngB - startLngA) * cosLat * EARTH_RADIUS;
+		double y = Math.toRadians(startLatB - startLatA) * EARTH_RADIUS;
+		double z = startAltB - startAltA;
+		double vx = Math.toRadians((storeB.longitudes[b] - startLngB) - (storeA.longitudes[a] - startLngA)) * cosLat * EARTH_RADIUS;
+		double vy = Math.toRadians((storeB.latitudes[b] - startLatB) - (storeA.latitudes[a] - startLatA)) * EARTH_RADIUS;
+		double vz = (storeB.altitudes[b] - startAltB) - (storeA.altitudes[a] - startAltA);
+
+		return !Double.isNaN(LossOfSeparation.findStart(x, y, z, vx, vy, vz, distance, altitude, 1));
+	}
+
+	private boolean hasStart(int slot)
+	{
+		return slot < startStamps.length && startStamps[slot] == stamp;
+	}
+
+}
@@ -0,0 +1,16 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * Implementable interface to listen for each step of the simulator clock.
+ * Listeners are called on the simulator thread, so in fast time they are driven by simulated time
+ * @author Josh Argent
+ *
+ */
+public interface TickListener
+{
+	/**
+	 * Called after every simulator update
+	 * @param time the simulator time (in seconds since start)
+	 */
+	void tickEvent(double time);
+}
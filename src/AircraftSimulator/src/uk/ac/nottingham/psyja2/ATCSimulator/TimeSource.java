@@ -0,0 +1,39 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+/**
+ * The wall clock a real time simulator keeps in step with, and waits on until its updates are due.
+ * Tests give a simulator their own, so its timing doesn't depend on how busy the machine is
+ * @author Josh Argent
+ *
+ */
+public interface TimeSource
+{
+	/**
+	 * The system clock
+	 */
+	public static final TimeSource SYSTEM = new TimeSource() {
+
+		@Override
+		public long nanoTime()
+		{
+			return System.nanoTime();
+		}
+
+		@Override
+		public void sleep(long nanos) throws InterruptedException
+		{
+			Thread.sleep(nanos / 1000000, (int) (nanos % 1000000));
+		}
+
+	};
+
+	/**
+	 * Returns the time now (in nanoseconds), only the difference between two times means anything
+	 */
+	long nanoTime();
+
+	/**
+	 * Wait for a number of nanoseconds
+	 */
+	void sleep(long nanos) throws InterruptedException;
+}
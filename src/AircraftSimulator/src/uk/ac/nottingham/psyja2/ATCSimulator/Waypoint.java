@@ -1,5 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Waypoint represents a single navigational waypoint used in a {@link uk.ac.nottingham.psyja2.ATCSimulator.Scenario}
  * @author Josh Argent
@@ -48,6 +52,27 @@ public class Waypoint
 		return type;
 	}
 	
+	/**
+	 * Write the name, location and type of the waypoint
+	 */
+	void write(DataOutput out) throws IOException
+	{
+		out.writeUTF(name);
+		out.writeDouble(location.getLatitude());
+		out.writeDouble(location.getLongitude());
+		out.writeByte(type.ordinal());
+	}
+	
+	/**
+	 * Create a new waypoint from one written by write()
+	 */
+	static Waypoint read(DataInput in) throws IOException
+	{
+		String name = in.readUTF();
+		Coordinate location = new Coordinate(in.readDouble(), in.readDouble());
+		return new Waypoint(name, location, WaypointType.values()[in.readByte()]);
+	}
+	
 	/**
 	 * An enum of the types of waypoint/navigation beacon
 	 * @author Josh Argent
@@ -1,5 +1,9 @@
 package uk.ac.nottingham.psyja2.ATCSimulator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 
 /**
  * An instruction to make an aircraft fly directly to a navigation {@link uk.ac.nottingham.psyja2.ATCSimulator.Waypoint}
@@ -11,6 +15,9 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 {
 
 	private static double EARTH_RADIUS = 6371e3; // earth radius in metres
+	private static double KNOTS_TO_METRES_PER_SECOND = 1852D / 3600D;
+	private static double STEADY_TURN = 0.1; // Seconds of turning that still count as flying straight
+	private static double APPROACH_TIME = 1; // Seconds before reaching the waypoint it is approached in normal updates
 	private Waypoint waypoint;
 	private double targetHeading;
 	private HeadingInstruction headingInstr;
@@ -37,8 +44,7 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 			calculateBearing(aircraft);
 			
 			// Turn the aircraft to the heading of the bearing
-			headingInstr = new HeadingInstruction(targetHeading);
-			headingInstr.addInstructionCompleteListener(this);
+			startTurn();
 			
 			initial = false;
 		}
@@ -48,15 +54,7 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 			headingInstr.execute(aircraft, time);
 		
 		// Check if the aircraft is at the waypoint yet
-		// Calculate the distance from aircraft to waypoint
-		// CREDIT: https://www.movable-type.co.uk/scripts/latlong.html
-		double lat1 = toRadians(aircraft.getLocation().getLatitude());
-		double lat2 = toRadians(waypoint.getLocation().getLatitude());
-		double deltaLat = toRadians(waypoint.getLocation().getLatitude() - aircraft.getLocation().getLatitude());
-		double deltaLng = toRadians(waypoint.getLocation().getLongitude() - aircraft.getLocation().getLongitude());
-		double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
-		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-		double distanceToWaypoint = EARTH_RADIUS * c;
+		double distanceToWaypoint = getDistanceToWaypoint(aircraft);
 		if(distanceToWaypoint <= completionDistance)
 		{
 			fireInstructionComplete(aircraft);
@@ -80,6 +78,35 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 		}
 	}
 	
+	/**
+	 * Calculate the distance from aircraft to waypoint (in metres)
+	 */
+	private double getDistanceToWaypoint(Aircraft aircraft)
+	{
+		// CREDIT: https://www.movable-type.co.uk/scripts/latlong.html
+		double lat1 = toRadians(aircraft.getLocation().getLatitude());
+		double lat2 = toRadians(waypoint.getLocation().getLatitude());
+		double deltaLat = toRadians(waypoint.getLocation().getLatitude() - aircraft.getLocation().getLatitude());
+		double deltaLng = toRadians(waypoint.getLocation().getLongitude() - aircraft.getLocation().getLongitude());
+		double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
+		double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		return EARTH_RADIUS * c;
+	}
+	
+	@Override
+	protected double getSteadyTime(Aircraft aircraft)
+	{
+		// Once it has turned onto the bearing of the waypoint it flies a great circle to it,
+		// steady until it is about to reach it
+		if(initial || headingInstr == null || headingInstr.getTurnRemaining(aircraft) > HeadingInstruction.TURN_RATE * STEADY_TURN)
+			return 0;
+		double speed = aircraft.getGroundSpeed() * KNOTS_TO_METRES_PER_SECOND;
+		if(!(speed > 0))
+			return 0;
+		double timeToWaypoint = (getDistanceToWaypoint(aircraft) - completionDistance) / speed;
+		return Math.max(0, timeToWaypoint - APPROACH_TIME);
+	}
+	
 	/**
 	 * Calculates the bearing to the waypoint from the aircrafts position
 	 */
@@ -100,8 +127,9 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 		targetBearing = (360 - ((targetBearing + 360) % 360));
 		
 		// Make a correction for the wind
-		double maxWindCorrectionAngle = Math.asin(Simulator.getInstance().getWindSpeed() / aircraft.getTrueAirSpeed());
-		double correctionAngle = maxWindCorrectionAngle * Math.cos(toRadians(Simulator.getInstance().getWindDirection()) - toRadians(targetBearing));
+		Simulator simulator = aircraft.getSimulator();
+		double maxWindCorrectionAngle = Math.asin(simulator.getWindSpeed() / aircraft.getTrueAirSpeed());
+		double correctionAngle = maxWindCorrectionAngle * Math.cos(toRadians(simulator.getWindDirection()) - toRadians(targetBearing));
 		targetHeading = targetBearing - toDegrees(correctionAngle);
 	}
 	
@@ -110,8 +138,77 @@ public class WaypointInstruction extends Instruction implements InstructionListe
 	{
 		// When the heading instruction completes, recalculate the bearing and issue a new instruction
 		calculateBearing(aircraft);
-		headingInstr = new HeadingInstruction(targetHeading);
-		headingInstr.addInstructionCompleteListener(this);
+		startTurn();
+	}
+	
+	/**
+	 * Turn to the target heading, reusing the heading instruction if there is one
+	 */
+	private void startTurn()
+	{
+		if(headingInstr == null)
+		{
+			headingInstr = new HeadingInstruction(targetHeading);
+			headingInstr.addInstructionCompleteListener(this);
+		}
+		else
+		{
+			headingInstr.restart(targetHeading);
+		}
+	}
+	
+	@Override
+	protected void reset()
+	{
+		super.reset();
+		initial = true;
+		prevDistance = -1;
+		onCourse = false;
+	}
+	
+	@Override
+	public int getSlot()
+	{
+		return LATERAL;
+	}
+
+	@Override
+	protected void write(DataOutput out) throws IOException
+	{
+		out.writeByte(WAYPOINT_TYPE);
+		waypoint.write(out);
+		out.writeDouble(completionDistance);
+	}
+	
+	@Override
+	protected void writeState(DataOutput out) throws IOException
+	{
+		super.writeState(out);
+		out.writeDouble(targetHeading);
+		out.writeBoolean(initial);
+		out.writeDouble(prevDistance);
+		out.writeBoolean(onCourse);
+		writeCheckpoint(out, headingInstr);
+	}
+	
+	@Override
+	protected void readState(DataInput in) throws IOException
+	{
+		super.readState(in);
+		targetHeading = in.readDouble();
+		initial = in.readBoolean();
+		prevDistance = in.readDouble();
+		onCourse = in.readBoolean();
+		headingInstr = (HeadingInstruction) readCheckpoint(in);
+		if(headingInstr != null)
+			headingInstr.addInstructionCompleteListener(this);
+	}
+	
+	static WaypointInstruction readParameters(DataInput in) throws IOException
+	{
+		WaypointInstruction instruction = new WaypointInstruction(Waypoint.read(in));
+		instruction.completionDistance = in.readDouble();
+		return instruction;
 	}
 
 	@Override
@@ -0,0 +1,294 @@
+package uk.ac.nottingham.psyja2.ATCSimulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the state of the simulation at the end of an update.<br>
+ * The simulator copies the state into a reusable buffer after every update, and the first reader to ask for
+ * a snapshot makes it from the buffer, so it can be read from any thread without locking the
+ * simulator or seeing an aircraft half way through being moved.
+ * The instructions are copied as their descriptions, as the instructions themselves change while they are followed
+ * @author Josh Argent
+ *
+ */
+public class WorldSnapshot
+{
+
+	private final double time;
+	private final int windSpeed;
+	private final int windDirection;
+	private final List<AircraftState> aircraft;
+	private final Map<Aircraft, AircraftState> aircraftStates;
+
+	WorldSnapshot(double time, int windSpeed, int windDirection, List<AircraftState> aircraft)
+	{
+		this.time = time;
+		this.windSpeed = windSpeed;
+		this.windDirection = windDirection;
+		this.aircraft = Collections.unmodifiableList(aircraft);
+		this.aircraftStates = new IdentityHashMap<Aircraft, AircraftState>(aircraft.size() * 2);
+		for(AircraftState state : aircraft)
+		{
+			aircraftStates.put(state.getAircraft(), state);
+		}
+	}
+
+	/**
+	 * Returns the simulator time of the snapshot (in seconds since start)
+	 */
+	public double getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the wind speed (in knots)
+	 */
+	public int getWindSpeed()
+	{
+		return windSpeed;
+	}
+
+	/**
+	 * Returns the wind direction (in degrees 0 to 360)
+	 */
+	public int getWindDirection()
+	{
+		return windDirection;
+	}
+
+	/**
+	 * Returns the state of all aircraft in the simulation, in the order they were added
+	 */
+	public List<AircraftState> getAllAircraft()
+	{
+		return aircraft;
+	}
+
+	/**
+	 * Returns the state of the given aircraft, or null if it was not in the simulation
+	 */
+	public AircraftState getAircraft(Aircraft aircraft)
+	{
+		return aircraftStates.get(aircraft);
+	}
+
+	/**
+	 * The state of a single aircraft at the time of the snapshot
+	 */
+	public static class AircraftState
+	{
+
+		// Only set again while the state is in one of the simulator's buffers, a snapshot's states never change
+		private Aircraft aircraft;
+		int slot; // Slot of the aircraft in the simulator's store at the time
+		private double latitude;
+		private double longitude;
+		private double altitude;
+		private double heading;
+		private double speed;
+		private double groundSpeed;
+		private double track;
+		private double verticalRate;
+		private double airborneTime;
+		boolean inConflict;
+		private List<String> instructions;
+		private final Instruction[] instructionSlots; // Only in a buffer, the instructions are described when it is snapshotted
+
+		/**
+		 * A state in one of the simulator's buffers, to be filled by set()
+		 */
+		AircraftState()
+		{
+			this.instructionSlots = new Instruction[Instruction.NUMBER_OF_SLOTS];
+		}
+
+		AircraftState(Aircraft aircraft, boolean inConflict)
+		{
+			this.instructionSlots = null;
+			set(aircraft, inConflict);
+			this.instructions = describe(aircraft.getInstructions());
+		}
+
+		/**
+		 * Copy a state, changing whether the aircraft was in conflict
+		 */
+		AircraftState(AircraftState state, boolean inConflict)
+		{
+			this.aircraft = state.aircraft;
+			this.slot = state.slot;
+			this.latitude = state.latitude;
+			this.longitude = state.longitude;
+			this.altitude = state.altitude;
+			this.heading = state.heading;
+			this.speed = state.speed;
+			this.groundSpeed = state.groundSpeed;
+			this.track = state.track;
+			this.verticalRate = state.verticalRate;
+			this.airborneTime = state.airborneTime;
+			this.inConflict = inConflict;
+			this.instructionSlots = null;
+			if(state.instructionSlots == null)
+			{
+				this.instructions = state.instructions;
+			}
+			else
+			{
+				this.instructions = describe(Arrays.asList(state.instructionSlots));
+			}
+		}
+		
+		/**
+		 * Returns an unmodifiable list of the descriptions of the instructions, leaving out empty slots
+		 */
+		private static List<String> describe(List<Instruction> instructions)
+		{
+			List<String> descriptions = new ArrayList<String>(instructions.size());
+			for(Instruction instruction : instructions)
+			{
+				if(instruction != null)
+					descriptions.add(instruction.toString());
+			}
+			return Collections.unmodifiableList(descriptions);
+		}
+
+		/**
+		 * Copy the aircraft's current state, without allocating anything
+		 */
+		void set(Aircraft aircraft, boolean inConflict)
+		{
+			this.aircraft = aircraft;
+			this.slot = aircraft.slot;
+			this.latitude = aircraft.getLocation().getLatitude();
+			this.longitude = aircraft.getLocation().getLongitude();
+			this.altitude = aircraft.getAltitude();
+			this.heading = aircraft.getHeading();
+			this.speed = aircraft.getSpeed();
+			this.groundSpeed = aircraft.getGroundSpeed();
+			this.track = aircraft.getTrack();
+			this.verticalRate = aircraft.getVerticalRate();
+			this.airborneTime = aircraft.getAirborneTime();
+			this.inConflict = inConflict;
+			if(instructionSlots != null)
+				System.arraycopy(aircraft.instructions, 0, instructionSlots, 0, instructionSlots.length);
+		}
+
+		/**
+		 * Returns the aircraft this is the state of
+		 */
+		public Aircraft getAircraft()
+		{
+			return aircraft;
+		}
+
+		public String getCallsign()
+		{
+			return aircraft.getCallsign();
+		}
+
+		public AircraftProfile getProfile()
+		{
+			return aircraft.getProfile();
+		}
+
+		/**
+		 * Returns a copy of the aircraft's location
+		 */
+		public Coordinate getLocation()
+		{
+			return new Coordinate(latitude, longitude);
+		}
+
+		public double getLatitude()
+		{
+			return latitude;
+		}
+
+		public double getLongitude()
+		{
+			return longitude;
+		}
+
+		/**
+		 * Returns the altitude in feet
+		 */
+		public double getAltitude()
+		{
+			return altitude;
+		}
+
+		/**
+		 * Returns the flight level in string format (eg. 30,000ft = FL300)
+		 */
+		public String getFlightLevel()
+		{
+			int hundredsFeet = (int) Math.round(altitude / 100f);
+			return "FL" + String.valueOf(hundredsFeet);
+		}
+
+		/**
+		 * Returns the heading [0 to 360]
+		 */
+		public double getHeading()
+		{
+			return heading;
+		}
+
+		/**
+		 * Returns the indicated airspeed
+		 */
+		public double getSpeed()
+		{
+			return speed;
+		}
+
+		public double getGroundSpeed()
+		{
+			return groundSpeed;
+		}
+
+		/**
+		 * Returns the track (the direction of the path it was moving) [0 to 360]
+		 */
+		public double getTrack()
+		{
+			return track;
+		}
+
+		/**
+		 * Returns the rate of climb (positive) or descent (negative) over the last update, in feet per second
+		 */
+		public double getVerticalRate()
+		{
+			return verticalRate;
+		}
+
+		public double getAirborneTime()
+		{
+			return airborneTime;
+		}
+
+		/**
+		 * Returns true if the aircraft was in conflict
+		 */
+		public boolean isInConflict()
+		{
+			return inConflict;
+		}
+
+		/**
+		 * Returns the descriptions of the instructions the aircraft was executing (eg. "fly heading 90")
+		 */
+		public List<String> getInstructions()
+		{
+			return instructions;
+		}
+
+	}
+
+}
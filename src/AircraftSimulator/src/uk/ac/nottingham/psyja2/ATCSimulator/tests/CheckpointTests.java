@@ -0,0 +1,151 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.AltitudeInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictTracker;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.HoldInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Instruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint;
+import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint.WaypointType;
+import uk.ac.nottingham.psyja2.ATCSimulator.WaypointInstruction;
+
+public class CheckpointTests
+{
+
+	private static final long CHECKPOINT_TICK = 1200; // 2 minutes in
+	private static final long END_TICK = 4200; // 5 minutes after the checkpoint, past the next conflict
+
+	/*
+	 * Test that a simulator restored from a checkpoint taken mid-run, with hold, waypoint and heading
+	 * instructions in progress, continues exactly as the simulator it was taken from
+	 */
+	@Test
+	public void testCheckpointForksExactly() throws IOException, ParseException, InterruptedException
+	{
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		simulator.setWindSpeed(30);
+		simulator.setWindDirection(250);
+		
+		// Holding, and flying to a waypoint
+		Aircraft holding = new Aircraft(simulator, "HOLD1", new Coordinate(57, -5), 90, 220, 15000, AircraftProfile.A321);
+		simulator.addAircraft(holding);
+		simulator.sendInstruction(new HoldInstruction(60), holding);
+		final Aircraft direct = new Aircraft(simulator, "DCT1", new Coordinate(58, -6), 0, 250, 25000, AircraftProfile.A321);
+		simulator.addAircraft(direct);
+		simulator.sendInstruction(new WaypointInstruction(new Waypoint("TESTWP", new Coordinate(55, -2), WaypointType.INTERSECTION)), direct);
+		
+		// A pair already in conflict when the checkpoint is taken, which must not be counted again
+		Aircraft turning = new Aircraft(simulator, "TURN1", new Coordinate(56, -7), 90, 250, 20000, AircraftProfile.A321);
+		simulator.addAircraft(turning);
+		simulator.addAircraft(new Aircraft(simulator, "TURN2", new Coordinate(56.01, -7), 90, 250, 20000, AircraftProfile.A321));
+		
+		// A head-on pair 40nm apart, that lose separation after the checkpoint
+		simulator.addAircraft(new Aircraft(simulator, "HEAD1", new Coordinate(56, -3), 180, 250, 30000, AircraftProfile.A321));
+		simulator.addAircraft(new Aircraft(simulator, "HEAD2", new Coordinate(55 + 1 / 3.0, -3), 0, 250, 30000, AircraftProfile.A321));
+		
+		// Take the checkpoint mid-turn, with an instruction still waiting to be applied
+		final ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+		final int[] conflictsAtCheckpoint = new int[1];
+		final HeadingInstruction turn = new HeadingInstruction(180);
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				long tick = simulator.getTick();
+				if(tick == CHECKPOINT_TICK - 50)
+					simulator.sendInstruction(turn, simulator.getAircraft("TURN1"));
+				else if(tick == CHECKPOINT_TICK)
+				{
+					simulator.sendInstruction(new AltitudeInstruction(29000), direct);
+					conflictsAtCheckpoint[0] = simulator.getNumberOfConflicts();
+					try
+					{
+						simulator.saveCheckpoint(checkpoint);
+					} catch (IOException e)
+					{
+						throw new UncheckedIOException(e);
+					}
+				}
+			}
+
+		});
+		SimulatorFixture.runUntil(simulator, untilTick(END_TICK), SimulatorFixture.TIMEOUT);
+		
+		// Check the checkpoint caught the instructions part way through
+		assertTrue(checkpoint.size() > 0);
+		assertTrue(conflictsAtCheckpoint[0] > 0);
+		assertTrue(simulator.getNumberOfConflicts() > conflictsAtCheckpoint[0]);
+		assertTrue(turn.isComplete());
+		
+		// Restore it into a new simulator and run the rest of the way
+		Simulator restored = SimulatorFixture.createSimulator(true);
+		restored.restoreCheckpoint(new ByteArrayInputStream(checkpoint.toByteArray()));
+		assertEquals(CHECKPOINT_TICK, restored.getTick());
+		assertEquals(conflictsAtCheckpoint[0], restored.getNumberOfConflicts());
+		SimulatorFixture.runUntil(restored, untilTick(END_TICK), SimulatorFixture.TIMEOUT);
+		
+		assertEquals(simulator.getTick(), restored.getTick());
+		assertEquals(simulator.getTime(), restored.getTime(), 0);
+		assertEquals(simulator.getNumberOfAircraft(), restored.getNumberOfAircraft());
+		for(Aircraft aircraft : simulator.getAllAircraft())
+		{
+			Aircraft fork = restored.getAircraft(aircraft.getCallsign());
+			assertNotNull(fork);
+			assertEquals(aircraft.getLocation().getLatitude(), fork.getLocation().getLatitude(), 0);
+			assertEquals(aircraft.getLocation().getLongitude(), fork.getLocation().getLongitude(), 0);
+			assertEquals(aircraft.getAltitude(), fork.getAltitude(), 0);
+			assertEquals(aircraft.getHeading(), fork.getHeading(), 0);
+			assertEquals(aircraft.getSpeed(), fork.getSpeed(), 0);
+			
+			List<Instruction> instructions = aircraft.getInstructions();
+			List<Instruction> forkInstructions = fork.getInstructions();
+			assertEquals(instructions.size(), forkInstructions.size());
+			for(int i = 0; i < instructions.size(); i++)
+			{
+				assertEquals(instructions.get(i).toString(), forkInstructions.get(i).toString());
+				assertEquals(instructions.get(i).isComplete(), forkInstructions.get(i).isComplete());
+			}
+			assertEquals(simulator.isInConflict(aircraft), restored.isInConflict(fork));
+		}
+		
+		assertEquals(simulator.getNumberOfConflicts(), restored.getNumberOfConflicts());
+		ConflictTracker tracker = simulator.getConflictTracker();
+		ConflictTracker forkTracker = restored.getConflictTracker();
+		assertEquals(tracker.getNumberOfConflicts(), forkTracker.getNumberOfConflicts());
+		assertEquals(tracker.getNumberOfEpisodes(), forkTracker.getNumberOfEpisodes());
+		assertEquals(tracker.getLongestEpisode(), forkTracker.getLongestEpisode(), 0);
+		assertEquals(simulator.getNumberOfInstructions(), restored.getNumberOfInstructions());
+		assertEquals(simulator.getInstructionLog(), restored.getInstructionLog());
+	}
+	
+	private static SimulatorFixture.StopCondition untilTick(final long tick)
+	{
+		return new SimulatorFixture.StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double time)
+			{
+				return simulator.getTick() >= tick;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,65 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictAlert;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.ShortTermConflictAlert;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+
+public class ConflictAlertTests
+{
+
+	/*
+	 * Test that two aircraft flying head on are alerted with the right time to loss of separation,
+	 * a pair flying apart is not, and an alert is only new the first time it is given
+	 */
+	@Test
+	public void testHeadOnAlert()
+	{
+		Simulator.getInstance().setWindSpeed(0);
+		
+		// 20NM apart on the same latitude, at the same altitude and speed
+		Aircraft[] aircrafts = new Aircraft[4];
+		aircrafts[0] = new Aircraft("TEST0", new Coordinate(55, -4), 90, 250, 10000, AircraftProfile.A321);
+		aircrafts[1] = new Aircraft("TEST1", new Coordinate(55, -4 + 20D / 60 / Math.cos(Math.toRadians(55))), 270, 250, 10000, AircraftProfile.A321);
+		// Flying away from each other
+		aircrafts[2] = new Aircraft("TEST2", new Coordinate(56, -4), 0, 250, 10000, AircraftProfile.A321);
+		aircrafts[3] = new Aircraft("TEST3", new Coordinate(56 - 6D / 60, -4), 180, 250, 10000, AircraftProfile.A321);
+		
+		ShortTermConflictAlert alerter = new ShortTermConflictAlert(9260, 1000);
+		List<ConflictAlert> newAlerts = new ArrayList<ConflictAlert>();
+		List<ConflictAlert> alerts = alerter.detect(aircrafts, 0, 300, newAlerts);
+		
+		assertEquals(1, alerts.size());
+		assertEquals(1, newAlerts.size());
+		ConflictAlert alert = alerts.get(0);
+		assertSame(aircrafts[0], alert.getAircraftA());
+		assertSame(aircrafts[1], alert.getAircraftB());
+		
+		// Closing at twice the ground speed, separation is lost after 15NM and the closest point is after 20NM
+		double closingSpeed = 2 * aircrafts[0].getGroundSpeed() / 3600;
+		assertEquals(15 / closingSpeed, alert.getTimeToLoss(), 2);
+		assertEquals(20 / closingSpeed, alert.getTimeToClosest(), 2);
+		assertEquals(0, alert.getClosestDistance(), 100);
+		assertEquals(0, alert.getClosestVerticalDistance(), 1);
+		
+		// Too far to lose separation within a short horizon
+		newAlerts.clear();
+		assertTrue(alerter.detect(aircrafts, 0, 60, newAlerts).isEmpty());
+		
+		// The same alert again is not new
+		alerter.detect(aircrafts, 0, 300, newAlerts);
+		newAlerts.clear();
+		assertEquals(1, alerter.detect(aircrafts, 0, 300, newAlerts).size());
+		assertTrue(newAlerts.isEmpty());
+	}
+	
+}
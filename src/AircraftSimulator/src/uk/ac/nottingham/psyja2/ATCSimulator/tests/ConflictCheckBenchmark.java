@@ -0,0 +1,87 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.json.simple.parser.ParseException;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+
+/**
+ * Compares the cost of a simulator update with the normal conflict check against the swept check,
+ * for a random busy sky of aircraft flying straight at max cruise speed (with the conflict alert turned off).<br>
+ * Usage: ConflictCheckBenchmark [aircraft] [updates]
+ * @author Josh Argent
+ *
+ */
+public class ConflictCheckBenchmark
+{
+
+	private static int WARM_UP = 500; // Updates run before timing, so the JIT has compiled the update
+	private static long TIMEOUT = 30 * 60 * 1000; // Milliseconds a run can take before the benchmark gives up
+
+	public static void main(String[] args) throws IOException, ParseException, InterruptedException
+	{
+		int numberOfAircraft = args.length > 0 ? Integer.valueOf(args[0]) : 1000;
+		int updates = args.length > 1 ? Integer.valueOf(args[1]) : 2000;
+		Scenario scenario = new Scenario(Simulator.SCENARIO_FILE);
+		
+		System.out.println(numberOfAircraft + " aircraft, " + updates + " updates");
+		for(int run = 0; run < 2; run++)
+		{
+			// The same aircraft each time, point check first
+			for(boolean swept : new boolean[] { false, true })
+			{
+				Simulator simulator = new Simulator(scenario, true, 1);
+				simulator.setSweptConflicts(swept);
+				simulator.setAlertHorizon(0); // Only time the conflict check
+				Random random = new Random(1);
+				for(int i = 0; i < numberOfAircraft; i++)
+				{
+					Coordinate start = new Coordinate(54 + random.nextDouble() * 7, -8 + random.nextDouble() * 10);
+					simulator.addAircraft(new Aircraft(simulator, "TEST" + i, start, random.nextInt(360), Aircraft.MAX_CRUISE_SPEED,
+							20000 + random.nextInt(21) * 1000, AircraftProfile.A321));
+				}
+				
+				double nanosPerUpdate = time(simulator, updates);
+				System.out.println(String.format("%s check: %.1f us per update, %d conflicts", swept ? "Swept" : "Point",
+						nanosPerUpdate / 1000, simulator.getNumberOfConflicts()));
+			}
+		}
+	}
+	
+	/**
+	 * Run the simulator for the warm up and then the given number of updates
+	 * @return the average time of the timed updates (in nanoseconds)
+	 */
+	private static double time(final Simulator simulator, final int updates) throws InterruptedException
+	{
+		final long[] startTime = new long[1];
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				if(simulator.getTick() == WARM_UP)
+					startTime[0] = System.nanoTime();
+			}
+			
+		});
+		SimulatorFixture.runUntil(simulator, new SimulatorFixture.StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double time)
+			{
+				return simulator.getTick() >= WARM_UP + updates;
+			}
+
+		}, TIMEOUT);
+		return (System.nanoTime() - startTime[0]) / (double) updates;
+	}
+	
+}
@@ -0,0 +1,75 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictGrid;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+
+public class ConflictGridTests
+{
+
+	/*
+	 * Test that every pair within 5NM and 1000ft is a candidate and that the
+	 * candidates are in the same order as a nested loop over the aircraft
+	 */
+	@Test
+	public void testCandidatesIncludeAllConflicts()
+	{
+		Random random = new Random(1);
+		Aircraft[] aircrafts = new Aircraft[400];
+		for(int i = 0; i < aircrafts.length; i++)
+		{
+			Coordinate location = new Coordinate(55 + random.nextDouble(), -4 + random.nextDouble() * 2);
+			aircrafts[i] = new Aircraft("TEST" + i, location, 0, 250, 5000 + random.nextInt(6000), AircraftProfile.A321);
+		}
+		
+		ConflictGrid grid = new ConflictGrid(9260, 1000);
+		grid.findCandidates(aircrafts);
+		
+		Set<Long> candidates = new HashSet<Long>();
+		long previous = -1;
+		for(int p = 0; p < grid.getPairCount(); p++)
+		{
+			long pair = ((long) grid.getFirst(p) << 32) | grid.getSecond(p);
+			assertTrue(grid.getFirst(p) < grid.getSecond(p));
+			assertTrue(pair > previous);
+			candidates.add(pair);
+			previous = pair;
+		}
+		
+		int conflicts = 0;
+		for(int i = 0; i < aircrafts.length; i++)
+		{
+			for(int j = i + 1; j < aircrafts.length; j++)
+			{
+				if(Math.abs(aircrafts[i].getAltitude() - aircrafts[j].getAltitude()) < 1000
+						&& distance(aircrafts[i].getLocation(), aircrafts[j].getLocation()) < 9260)
+				{
+					assertTrue(candidates.contains(((long) i << 32) | j));
+					conflicts++;
+				}
+			}
+		}
+		assertTrue(conflicts > 0);
+		assertTrue(grid.getPairCount() < aircrafts.length * (aircrafts.length - 1) / 2);
+	}
+	
+	private double distance(Coordinate a, Coordinate b)
+	{
+		double lat1 = Math.toRadians(a.getLatitude());
+		double lat2 = Math.toRadians(b.getLatitude());
+		double deltaLat = Math.toRadians(b.getLatitude() - a.getLatitude());
+		double deltaLng = Math.toRadians(b.getLongitude() - a.getLongitude());
+		double h = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) + Math.cos(lat1) * Math.cos(lat2) * Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
+		return 6371e3 * 2 * Math.atan2(Math.sqrt(h), Math.sqrt(1 - h));
+	}
+	
+}
@@ -0,0 +1,75 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictTracker;
+
+public class ConflictTrackerTests
+{
+
+	/*
+	 * Test that a conflict is only new on the first tick it is seen,
+	 * and that its episode is recorded when it ends
+	 */
+	@Test
+	public void testConflictEpisode()
+	{
+		ConflictTracker tracker = new ConflictTracker();
+		for(int t = 0; t < 5; t++)
+		{
+			tracker.beginTick();
+			boolean isNew = tracker.conflict(3, 1, t);
+			assertEquals(t == 0, isNew);
+			tracker.endTick();
+			assertTrue(tracker.isInConflict(1));
+			assertTrue(tracker.isInConflict(3));
+			assertFalse(tracker.isInConflict(2));
+		}
+		assertEquals(0, tracker.getStartTime(1, 3), 0);
+		
+		// The pair is no longer in conflict
+		tracker.beginTick();
+		tracker.endTick();
+		assertFalse(tracker.isInConflict(1));
+		assertEquals(-1, tracker.getStartTime(1, 3), 0);
+		assertEquals(1, tracker.getNumberOfEpisodes());
+		assertEquals(4, tracker.getLongestEpisode(), 0);
+	}
+	
+	/*
+	 * Test that many conflicts can be added and removed without losing any
+	 */
+	@Test
+	public void testManyConflicts()
+	{
+		ConflictTracker tracker = new ConflictTracker();
+		tracker.beginTick();
+		for(int i = 0; i < 500; i++)
+		{
+			assertTrue(tracker.conflict(i, i + 1000, 0));
+		}
+		tracker.endTick();
+		assertEquals(500, tracker.getNumberOfConflicts());
+		
+		// Keep every other conflict
+		tracker.beginTick();
+		for(int i = 0; i < 500; i += 2)
+		{
+			assertFalse(tracker.conflict(i + 1000, i, 1));
+		}
+		tracker.endTick();
+		assertEquals(250, tracker.getNumberOfConflicts());
+		for(int i = 0; i < 500; i++)
+		{
+			assertEquals(i % 2 == 0, tracker.isInConflict(i));
+		}
+		
+		// An aircraft leaving ends its conflicts
+		tracker.removeSlot(1000);
+		assertFalse(tracker.isInConflict(0));
+		assertEquals(249, tracker.getNumberOfConflicts());
+	}
+	
+}
@@ -0,0 +1,118 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEvent;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEventBus;
+import uk.ac.nottingham.psyja2.ATCSimulator.SimulatorEventListener;
+
+public class EventBusTests
+{
+
+	/*
+	 * Test that a listener that is stuck doesn't hold up the simulator, the events that don't fit
+	 * are dropped and counted, and the rest are delivered in order once the listener carries on
+	 */
+	@Test
+	public void testSlowListenerDropsEvents() throws IOException, ParseException, InterruptedException
+	{
+		Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), true, 1);
+		SimulatorEventBus events = simulator.getEventBus();
+		
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> callsigns = new ArrayList<String>();
+		final List<Integer> types = new ArrayList<Integer>();
+		events.addListener(SimulatorEventBus.AIRCRAFT, new SimulatorEventListener() {
+
+			@Override
+			public void simulatorEvent(SimulatorEvent event)
+			{
+				try
+				{
+					blocked.countDown();
+					release.await();
+				} catch (InterruptedException e)
+				{
+					e.printStackTrace();
+				}
+				// Only recorded here, a failed assert on the bus thread wouldn't fail the test
+				types.add(event.getType());
+				callsigns.add(event.getAircraftA().getCallsign());
+			}
+			
+		});
+		
+		// Wait until the listener is stuck on the first event, so the rest fill the ring and nothing is freed until it is released
+		int numberOfAircraft = SimulatorEventBus.DEFAULT_CAPACITY * 2;
+		simulator.addAircraft(new Aircraft("TEST0", new Coordinate(55, -4), 0, 250, 10000, AircraftProfile.A321));
+		assertTrue(blocked.await(SimulatorFixture.TIMEOUT, TimeUnit.MILLISECONDS));
+		for(int i = 1; i < numberOfAircraft; i++)
+		{
+			simulator.addAircraft(new Aircraft("TEST" + i, new Coordinate(55, -4), 0, 250, 10000, AircraftProfile.A321));
+		}
+		long published = events.getPublished(SimulatorEventBus.AIRCRAFT);
+		assertEquals(SimulatorEventBus.DEFAULT_CAPACITY + 1, published);
+		assertEquals(numberOfAircraft, published + events.getDropped(SimulatorEventBus.AIRCRAFT));
+		
+		release.countDown();
+		events.flush();
+		assertEquals(published, events.getDelivered(SimulatorEventBus.AIRCRAFT));
+		assertEquals(published, callsigns.size());
+		for(int i = 0; i < callsigns.size(); i++)
+		{
+			assertEquals(SimulatorEvent.AIRCRAFT_ADDED, (int) types.get(i));
+			assertEquals("TEST" + i, callsigns.get(i));
+		}
+		
+		// Nothing is published on channels without listeners
+		assertEquals(0, events.getPublished(SimulatorEventBus.CONFLICTS));
+	}
+	
+	/*
+	 * Test that a listener throwing an error doesn't stop the channel, so the other events are
+	 * still delivered and flush doesn't wait forever
+	 */
+	@Test
+	public void testBrokenListener() throws IOException, ParseException
+	{
+		Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), true, 1);
+		SimulatorEventBus events = simulator.getEventBus();
+		
+		final List<String> callsigns = new ArrayList<String>();
+		events.addListener(SimulatorEventBus.AIRCRAFT, new SimulatorEventListener() {
+
+			@Override
+			public void simulatorEvent(SimulatorEvent event)
+			{
+				if(event.getAircraftA().getCallsign().equals("TEST0"))
+					throw new AssertionError("Broken listener");
+				callsigns.add(event.getAircraftA().getCallsign());
+			}
+			
+		});
+		
+		for(int i = 0; i < 3; i++)
+		{
+			simulator.addAircraft(new Aircraft("TEST" + i, new Coordinate(55, -4), 0, 250, 10000, AircraftProfile.A321));
+		}
+		events.flush();
+		assertEquals(3, events.getDelivered(SimulatorEventBus.AIRCRAFT));
+		assertEquals("[TEST1, TEST2]", callsigns.toString());
+	}
+	
+}
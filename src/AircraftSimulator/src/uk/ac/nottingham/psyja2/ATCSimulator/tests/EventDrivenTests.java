@@ -0,0 +1,79 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.AltitudeInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint;
+import uk.ac.nottingham.psyja2.ATCSimulator.WaypointInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Waypoint.WaypointType;
+
+public class EventDrivenTests
+{
+
+	/*
+	 * Test that aircraft flying steadily to a waypoint and climbing end up in the same place
+	 * in an event driven simulator as in a normal one, in far fewer updates
+	 */
+	@Test
+	public void testSteadyFlightSkipsUpdates() throws IOException, ParseException, InterruptedException
+	{
+		Simulator normal = runSteadyFlight(false);
+		Simulator eventDriven = runSteadyFlight(true);
+		
+		assertTrue(eventDriven.getTick() * 5 < normal.getTick());
+		List<Aircraft> expected = normal.getAllAircraft();
+		List<Aircraft> actual = eventDriven.getAllAircraft();
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).getCallsign(), actual.get(i).getCallsign());
+			assertEquals(expected.get(i).getLocation().getLatitude(), actual.get(i).getLocation().getLatitude(), 0.01);
+			assertEquals(expected.get(i).getLocation().getLongitude(), actual.get(i).getLocation().getLongitude(), 0.01);
+			assertEquals(expected.get(i).getAltitude(), actual.get(i).getAltitude(), 50);
+		}
+	}
+	
+	private Simulator runSteadyFlight(boolean eventDriven) throws IOException, ParseException, InterruptedException
+	{
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		simulator.setWindSpeed(0);
+		simulator.setEventDriven(eventDriven);
+		
+		// Well separated aircraft all flying to the same waypoint, some climbing
+		Waypoint waypoint = new Waypoint("TEST", new Coordinate(58, -4), WaypointType.INTERSECTION);
+		for(int i = 0; i < 4; i++)
+		{
+			Aircraft aircraft = new Aircraft(simulator, "TEST" + i, new Coordinate(55, -6 + i), 0, 250, 20000 + i * 2000, AircraftProfile.A321);
+			simulator.addAircraft(aircraft);
+			simulator.sendInstruction(new WaypointInstruction(waypoint), aircraft);
+			if(i % 2 == 0)
+				simulator.sendInstruction(new AltitudeInstruction(28000 + i * 2000), aircraft);
+		}
+		
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				// Make sure an event driven simulator stops at the same time
+				if(time < 1200)
+					simulator.requestUpdateAt(1200);
+			}
+			
+		});
+		SimulatorFixture.runUntil(simulator, 1200);
+		return simulator;
+	}
+	
+}
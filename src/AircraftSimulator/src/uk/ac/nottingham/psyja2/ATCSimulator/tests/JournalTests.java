@@ -0,0 +1,122 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.AltitudeInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.HoldInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.JournalReplay;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+
+public class JournalTests
+{
+
+	private static final long END_TICK = 3600; // 6 minutes
+
+	/*
+	 * Test that replaying a journal of a run with aircraft added and removed part way through, instructions
+	 * sent between updates and from a conflict listener, and conflicts, ends with the aircraft in exactly the
+	 * same places and finds exactly the recorded conflicts
+	 */
+	@Test
+	public void testReplayMatchesRecording() throws IOException, ParseException, InterruptedException
+	{
+		File file = File.createTempFile("journal", ".atj");
+		file.deleteOnExit();
+		
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		simulator.startJournal(file);
+		
+		// A head-on pair 30nm apart, which lose separation after about 3 minutes
+		simulator.addAircraft(new Aircraft(simulator, "HEAD1", new Coordinate(56, -3), 180, 250, 30000, AircraftProfile.A321));
+		simulator.addAircraft(new Aircraft(simulator, "HEAD2", new Coordinate(55.5, -3), 0, 250, 30000, AircraftProfile.A321));
+		final Aircraft leaving = new Aircraft(simulator, "LEAVE1", new Coordinate(57, -5), 90, 220, 15000, AircraftProfile.A321);
+		simulator.addAircraft(leaving);
+		simulator.sendInstruction(new HoldInstruction(60), leaving);
+		final Aircraft climbing = new Aircraft(simulator, "CLIMB1", new Coordinate(58, -6), 0, 250, 20000, AircraftProfile.A321);
+		simulator.addAircraft(climbing);
+		
+		// Turn the first aircraft in each new conflict away
+		simulator.addConflictListener(new ConflictListener() {
+
+			@Override
+			public void conflictEvent(Aircraft aircraftA, Aircraft aircraftB)
+			{
+				simulator.sendInstruction(new HeadingInstruction((aircraftA.getHeading() + 90) % 360), aircraftA);
+			}
+
+		});
+		
+		// Change the traffic part way through, the new aircraft takes the slot of the one removed
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				long tick = simulator.getTick();
+				if(tick == 300)
+					simulator.sendInstruction(new AltitudeInstruction(25000), climbing);
+				else if(tick == 600)
+				{
+					simulator.removeAircraft(leaving);
+					simulator.setWindSpeed(40);
+				}
+				else if(tick == 900)
+				{
+					Aircraft joining = new Aircraft(simulator, "JOIN1", new Coordinate(55.8, -2.5), 270, 250, 30000, AircraftProfile.A321);
+					simulator.addAircraft(joining);
+					simulator.sendInstruction(new HeadingInstruction(200), joining);
+				}
+			}
+
+		});
+		SimulatorFixture.runUntil(simulator, new SimulatorFixture.StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double time)
+			{
+				return simulator.getTick() >= END_TICK;
+			}
+
+		}, SimulatorFixture.TIMEOUT);
+		simulator.stopJournal();
+		assertTrue(simulator.getNumberOfConflicts() > 0);
+		assertNull(simulator.getAircraft("LEAVE1"));
+		
+		// Replay it into a new simulator
+		Simulator replayed = SimulatorFixture.createSimulator(true);
+		JournalReplay replay = new JournalReplay(file, replayed);
+		replay.run();
+		assertTrue(replay.isFinished());
+		
+		assertEquals(simulator.getTick(), replayed.getTick());
+		assertEquals(simulator.getTime(), replayed.getTime(), 0);
+		assertEquals(simulator.getNumberOfConflicts(), replay.getMatchedConflicts());
+		assertEquals(0, replay.getMissingConflicts());
+		assertEquals(0, replay.getUnexpectedConflicts());
+		assertEquals(simulator.getNumberOfConflicts(), replayed.getNumberOfConflicts());
+		assertEquals(simulator.getNumberOfAircraft(), replayed.getNumberOfAircraft());
+		for(Aircraft aircraft : simulator.getAllAircraft())
+		{
+			Aircraft copy = replayed.getAircraft(aircraft.getCallsign());
+			assertNotNull(copy);
+			assertEquals(aircraft.getLocation().getLatitude(), copy.getLocation().getLatitude(), 0);
+			assertEquals(aircraft.getLocation().getLongitude(), copy.getLocation().getLongitude(), 0);
+			assertEquals(aircraft.getAltitude(), copy.getAltitude(), 0);
+			assertEquals(aircraft.getHeading(), copy.getHeading(), 0);
+		}
+		assertEquals(simulator.getInstructionLog(), replayed.getInstructionLog());
+	}
+
+}
@@ -0,0 +1,94 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictTracker;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot;
+
+public class PipelineTests
+{
+
+	/*
+	 * Test that a pipelined simulator finds exactly the same conflicts as one that is not,
+	 * and ends up with the aircraft in exactly the same places
+	 */
+	@Test
+	public void testPipelineIsIdentical() throws IOException, ParseException, InterruptedException
+	{
+		Simulator normal = runConverging(false);
+		Simulator pipelined = runConverging(true);
+
+		assertTrue(normal.getNumberOfConflicts() > 0);
+		assertEquals(normal.getNumberOfConflicts(), pipelined.getNumberOfConflicts());
+		ConflictTracker expectedTracker = normal.getConflictTracker();
+		ConflictTracker actualTracker = pipelined.getConflictTracker();
+		assertEquals(expectedTracker.getNumberOfEpisodes(), actualTracker.getNumberOfEpisodes());
+		assertEquals(expectedTracker.getTotalEpisodeTime(), actualTracker.getTotalEpisodeTime(), 0);
+
+		// The snapshot of the last update is published once its check has finished
+		WorldSnapshot expected = normal.getSnapshot();
+		WorldSnapshot actual = pipelined.getSnapshot();
+		assertEquals(normal.getTime(), pipelined.getTime(), 0);
+		assertEquals(pipelined.getTime(), actual.getTime(), 0);
+		assertEquals(expected.getAllAircraft().size(), actual.getAllAircraft().size());
+		for(int i = 0; i < expected.getAllAircraft().size(); i++)
+		{
+			WorldSnapshot.AircraftState expectedState = expected.getAllAircraft().get(i);
+			WorldSnapshot.AircraftState actualState = actual.getAllAircraft().get(i);
+			assertEquals(expectedState.getLatitude(), actualState.getLatitude(), 0);
+			assertEquals(expectedState.getLongitude(), actualState.getLongitude(), 0);
+			assertEquals(expectedState.isInConflict(), actualState.isInConflict());
+		}
+	}
+
+	private Simulator runConverging(boolean pipelined) throws IOException, ParseException, InterruptedException
+	{
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		simulator.setPipelined(pipelined);
+		simulator.setWindSpeed(20);
+
+		// A ring of aircraft flying towards the middle at a few altitudes, turning away part way
+		for(int i = 0; i < 24; i++)
+		{
+			double bearing = i * 15;
+			Coordinate location = new Coordinate(55 + 0.5 * Math.cos(Math.toRadians(bearing)),
+					-4 + 0.5 * Math.sin(Math.toRadians(bearing)) / Math.cos(Math.toRadians(55)));
+			Aircraft aircraft = new Aircraft(simulator, "TEST" + i, location, (bearing + 180) % 360, 250, 20000 + (i % 3) * 800, AircraftProfile.A321);
+			simulator.addAircraft(aircraft);
+		}
+		simulator.addTickListener(new TickListener() {
+
+			private boolean turned = false;
+
+			@Override
+			public void tickEvent(double time)
+			{
+				if(!turned && time >= 200)
+				{
+					List<Aircraft> aircrafts = simulator.getAllAircraft();
+					for(int i = 0; i < aircrafts.size(); i += 2)
+					{
+						simulator.sendInstruction(new HeadingInstruction((aircrafts.get(i).getHeading() + 90) % 360), aircrafts.get(i));
+					}
+					turned = true;
+				}
+			}
+
+		});
+		SimulatorFixture.runUntil(simulator, 600);
+		return simulator;
+	}
+
+}
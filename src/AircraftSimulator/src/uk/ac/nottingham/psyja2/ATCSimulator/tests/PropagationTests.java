@@ -0,0 +1,100 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.AltitudeInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.SpeedInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot;
+
+public class PropagationTests
+{
+
+	private static final int AIRCRAFT = 200; // More than one chunk, so the pool splits the update between its threads
+	private static final long END_TICK = 3000; // 5 minutes
+
+	/*
+	 * Test that updating the aircraft on several threads gives exactly the same run as updating them on one
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws IOException, ParseException, InterruptedException
+	{
+		Simulator sequential = SimulatorFixture.createSimulator(true);
+		Simulator parallel = new Simulator(new Scenario(Simulator.SCENARIO_FILE), true, 4);
+		addTraffic(sequential);
+		addTraffic(parallel);
+		SimulatorFixture.runUntil(sequential, untilTick(END_TICK), SimulatorFixture.TIMEOUT);
+		SimulatorFixture.runUntil(parallel, untilTick(END_TICK), SimulatorFixture.TIMEOUT);
+		
+		assertEquals(sequential.getTick(), parallel.getTick());
+		assertEquals(sequential.getTime(), parallel.getTime(), 0);
+		assertTrue(sequential.getNumberOfConflicts() > 0);
+		assertEquals(sequential.getNumberOfConflicts(), parallel.getNumberOfConflicts());
+		
+		List<WorldSnapshot.AircraftState> expected = sequential.getSnapshot().getAllAircraft();
+		List<WorldSnapshot.AircraftState> actual = parallel.getSnapshot().getAllAircraft();
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++)
+		{
+			WorldSnapshot.AircraftState state = expected.get(i);
+			WorldSnapshot.AircraftState other = actual.get(i);
+			assertEquals(state.getCallsign(), other.getCallsign());
+			assertEquals(state.getLatitude(), other.getLatitude(), 0);
+			assertEquals(state.getLongitude(), other.getLongitude(), 0);
+			assertEquals(state.getAltitude(), other.getAltitude(), 0);
+			assertEquals(state.getHeading(), other.getHeading(), 0);
+			assertEquals(state.getSpeed(), other.getSpeed(), 0);
+			assertEquals(state.getGroundSpeed(), other.getGroundSpeed(), 0);
+			assertEquals(state.getTrack(), other.getTrack(), 0);
+			assertEquals(state.getVerticalRate(), other.getVerticalRate(), 0);
+			assertEquals(state.isInConflict(), other.isInConflict());
+			assertEquals(state.getInstructions(), other.getInstructions());
+		}
+	}
+	
+	/*
+	 * A grid of aircraft a few miles apart on crossing headings, turning, climbing and changing speed in the wind
+	 */
+	private static void addTraffic(Simulator simulator)
+	{
+		simulator.setWindSpeed(30);
+		simulator.setWindDirection(250);
+		for(int i = 0; i < AIRCRAFT; i++)
+		{
+			Aircraft aircraft = new Aircraft(simulator, "TEST" + i, new Coordinate(55 + (i / 20) * 0.08, -7 + (i % 20) * 0.12),
+					(i * 37) % 360, 220 + (i % 5) * 15, 20000 + (i % 3) * 1000, AircraftProfile.A321);
+			simulator.addAircraft(aircraft);
+			switch(i % 4)
+			{
+			case 0: simulator.sendInstruction(new HeadingInstruction((i * 37 + 120) % 360), aircraft); break;
+			case 1: simulator.sendInstruction(new AltitudeInstruction(30000), aircraft); break;
+			case 2: simulator.sendInstruction(new SpeedInstruction(300), aircraft); break;
+			}
+		}
+	}
+	
+	private static SimulatorFixture.StopCondition untilTick(final long tick)
+	{
+		return new SimulatorFixture.StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double time)
+			{
+				return simulator.getTick() >= tick;
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,251 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.RealTimeClock;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.TimeSource;
+
+public class RealTimeClockTests
+{
+
+	private static final long INTERVAL = 100000000L; // Nanoseconds between updates in real time
+	private static final double NANOS = 1000; // Rounding allowed in the deadlines (in nanoseconds)
+
+	/*
+	 * Test that an update finishing after the next one was due is reported, and that the missed updates
+	 * are then caught up half an interval apart rather than all at once, getting back onto the original schedule
+	 */
+	@Test
+	public void testOverrunIsCaughtUpWithoutBurst() throws IOException, ParseException, InterruptedException
+	{
+		final FakeTime time = new FakeTime();
+		final Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), false, 1, time);
+		final List<Long> updates = recordUpdates(simulator, time);
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double now)
+			{
+				// An update that takes three and a half intervals
+				if(simulator.getTick() == 20)
+					time.advance(INTERVAL * 7 / 2);
+			}
+
+		});
+		run(simulator, time, 40);
+		
+		RealTimeClock clock = simulator.getClock();
+		assertEquals(40, clock.getUpdates());
+		assertEquals(350, clock.getWorstLatency(), 1e-3);
+		assertTrue(clock.getOverruns() > 0);
+		assertEquals(0, clock.getLostTime(), 0);
+		assertEquals(0, clock.getLag(), 0);
+		
+		// Never closer together than half an interval, and on the original schedule again by the end
+		for(int i = 1; i < updates.size(); i++)
+			assertTrue("Update " + (i + 1) + " ran " + (updates.get(i) - updates.get(i - 1)) + "ns after the last",
+					updates.get(i) - updates.get(i - 1) >= INTERVAL / 2);
+		for(int tick = 30; tick <= 40; tick++)
+			assertEquals(tick * INTERVAL, updates.get(tick - 1), NANOS);
+		assertEquals(4, simulator.getTime(), 1e-9);
+	}
+
+	/*
+	 * Test that a simulator held up by more than the clock will catch up gives up on the missed time,
+	 * and carries on an interval at a time from when it was released
+	 */
+	@Test
+	public void testLongOverrunGivesUp() throws IOException, ParseException, InterruptedException
+	{
+		final FakeTime time = new FakeTime();
+		final Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), false, 1, time);
+		final List<Long> updates = recordUpdates(simulator, time);
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double now)
+			{
+				if(simulator.getTick() == 20)
+					time.advance(3000000000L);
+			}
+
+		});
+		run(simulator, time, 40);
+		
+		RealTimeClock clock = simulator.getClock();
+		assertEquals(3000, clock.getWorstLatency(), 1e-3);
+		assertEquals(1, clock.getOverruns());
+		assertEquals(2.9, clock.getLostTime(), 1e-6);
+		assertEquals(0, clock.getLag(), 0);
+		
+		// The first update after the hold runs straight away, then every interval
+		long released = 20 * INTERVAL + 3000000000L;
+		for(int tick = 21; tick <= 40; tick++)
+			assertEquals(released + (tick - 21) * INTERVAL, updates.get(tick - 1), NANOS);
+		assertEquals(4, simulator.getTime(), 1e-9);
+	}
+
+	/*
+	 * Test that a paused simulator keeps updating at the paused rate without adding to its lateness,
+	 * and that when it is unpaused it doesn't try to catch up the time it was paused for
+	 */
+	@Test
+	public void testPauseIsNotLate() throws IOException, ParseException, InterruptedException
+	{
+		final FakeTime time = new FakeTime();
+		final Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), false, 1, time);
+		final List<Long> updates = recordUpdates(simulator, time);
+		final List<Double> times = new ArrayList<Double>();
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double now)
+			{
+				times.add(now);
+				if(simulator.getTick() == 20)
+					simulator.setTimeSpeed(0);
+				else if(simulator.getTick() == 70)
+					simulator.setTimeSpeed(1);
+			}
+
+		});
+		run(simulator, time, 100);
+		
+		RealTimeClock clock = simulator.getClock();
+		assertEquals(0, clock.getOverruns());
+		assertEquals(0, clock.getWorstLatency(), 0);
+		assertEquals(0, clock.getLostTime(), 0);
+		assertEquals(0, clock.getLag(), 0);
+		assertEquals(50, clock.getUpdates());
+		
+		// The simulator time stands still while paused, with the updates spaced out rather than spinning
+		for(int tick = 21; tick <= 70; tick++)
+			assertEquals(times.get(19), times.get(tick - 1), 0);
+		for(int tick = 22; tick <= 70; tick++)
+			assertTrue(updates.get(tick - 1) - updates.get(tick - 2) > 0);
+		
+		// Carrying on at least an interval after it was unpaused, then every interval
+		assertTrue(updates.get(70) - updates.get(69) >= INTERVAL);
+		for(int tick = 72; tick <= 100; tick++)
+			assertEquals(updates.get(70) + (tick - 71) * INTERVAL, updates.get(tick - 1), NANOS);
+		assertEquals(5, simulator.getTime(), 1e-9);
+	}
+
+	/*
+	 * Test that changing the time speed changes the time between updates straight away, without any update being late
+	 */
+	@Test
+	public void testTimeSpeedChange() throws IOException, ParseException, InterruptedException
+	{
+		final FakeTime time = new FakeTime();
+		final Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), false, 1, time);
+		final List<Long> updates = recordUpdates(simulator, time);
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double now)
+			{
+				if(simulator.getTick() == 20)
+					simulator.setTimeSpeed(4);
+				else if(simulator.getTick() == 60)
+					simulator.setTimeSpeed(0.5f);
+			}
+
+		});
+		run(simulator, time, 80);
+		
+		RealTimeClock clock = simulator.getClock();
+		assertEquals(0, clock.getOverruns());
+		assertEquals(0, clock.getLostTime(), 0);
+		assertEquals(0, clock.getLag(), 0);
+		for(int tick = 2; tick <= 80; tick++)
+		{
+			long expected = tick <= 20 ? INTERVAL : tick <= 60 ? INTERVAL / 4 : INTERVAL * 2;
+			assertEquals("Update " + tick, expected, updates.get(tick - 1) - updates.get(tick - 2), NANOS);
+		}
+		assertEquals(8, simulator.getTime(), 1e-9);
+	}
+	
+	/*
+	 * Record the time of every update, by tick (from tick 1)
+	 */
+	private static List<Long> recordUpdates(Simulator simulator, final FakeTime time)
+	{
+		final List<Long> updates = new ArrayList<Long>();
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double now)
+			{
+				updates.add(time.nanoTime());
+			}
+
+		});
+		return updates;
+	}
+	
+	/*
+	 * Let the simulator go, and wait for it to be stopped at a tick
+	 */
+	private static void run(Simulator simulator, FakeTime time, final long tick) throws InterruptedException
+	{
+		SimulatorFixture.stopWhen(simulator, new SimulatorFixture.StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double now)
+			{
+				return simulator.getTick() >= tick;
+			}
+
+		});
+		time.start();
+		SimulatorFixture.waitUntilStopped(simulator, SimulatorFixture.TIMEOUT);
+	}
+	
+	/**
+	 * A clock that only moves when the simulator sleeps or a test moves it on. It holds a real time simulator,
+	 * which starts as soon as it is created, at its first sleep until the test has added its listeners
+	 */
+	private static class FakeTime implements TimeSource
+	{
+		
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile long now;
+
+		@Override
+		public long nanoTime()
+		{
+			return now;
+		}
+
+		@Override
+		public void sleep(long nanos) throws InterruptedException
+		{
+			started.await();
+			now += nanos;
+		}
+		
+		public void advance(long nanos)
+		{
+			now += nanos;
+		}
+		
+		public void start()
+		{
+			started.countDown();
+		}
+		
+	}
+
+}
@@ -0,0 +1,112 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.json.simple.parser.ParseException;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+
+/**
+ * Creates simulators for the tests and runs them until a condition is reached,
+ * failing instead of waiting forever if a simulator gets stuck
+ * @author Josh Argent
+ *
+ */
+public class SimulatorFixture
+{
+
+	public static final long TIMEOUT = 60 * 1000; // Milliseconds a test simulator can run for before it is failed
+
+	/**
+	 * Something checked after every update, the simulator is stopped once it is reached
+	 */
+	public interface StopCondition
+	{
+		public boolean isReached(Simulator simulator, double time);
+	}
+
+	/**
+	 * Create a simulator of the default scenario, with one propagation thread
+	 */
+	public static Simulator createSimulator(boolean fastTime) throws IOException, ParseException
+	{
+		return new Simulator(new Scenario(Simulator.SCENARIO_FILE), fastTime, 1);
+	}
+
+	/**
+	 * Start the simulator and wait until it has reached a simulator time (in seconds), then stop it
+	 */
+	public static void runUntil(Simulator simulator, double stopTime) throws InterruptedException
+	{
+		stopAt(simulator, stopTime);
+		simulator.start();
+		waitUntilStopped(simulator, TIMEOUT);
+	}
+
+	/**
+	 * Start the simulator and wait until the condition is reached, then stop it
+	 * @param timeout the number of milliseconds to wait before failing
+	 */
+	public static void runUntil(Simulator simulator, StopCondition condition, long timeout) throws InterruptedException
+	{
+		stopWhen(simulator, condition);
+		simulator.start();
+		waitUntilStopped(simulator, timeout);
+	}
+
+	/**
+	 * Stop the simulator after the first update that reaches a simulator time (in seconds)
+	 */
+	public static void stopAt(Simulator simulator, final double stopTime)
+	{
+		stopWhen(simulator, new StopCondition() {
+
+			@Override
+			public boolean isReached(Simulator simulator, double time)
+			{
+				return time >= stopTime;
+			}
+
+		});
+	}
+
+	/**
+	 * Stop the simulator after the first update the condition is reached by
+	 */
+	public static void stopWhen(final Simulator simulator, final StopCondition condition)
+	{
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				if(condition.isReached(simulator, time))
+					simulator.stop();
+			}
+
+		});
+	}
+
+	/**
+	 * Wait for a running simulator to be stopped, stopping it and failing if it takes longer than the timeout
+	 * @param timeout the number of milliseconds to wait
+	 */
+	public static void waitUntilStopped(Simulator simulator, long timeout) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + timeout;
+		while(simulator.isRunning())
+		{
+			if(System.currentTimeMillis() > deadline)
+			{
+				simulator.stop();
+				fail("Simulator was still running after " + timeout + "ms, at " + simulator.getTime() + "s");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+}
@@ -5,7 +5,7 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ AircraftTests.class, ScenarioTests.class })
+@SuiteClasses({ AircraftTests.class, ScenarioTests.class, ConflictGridTests.class, ConflictTrackerTests.class, ConflictAlertTests.class, SweptConflictTests.class, EventBusTests.class, EventDrivenTests.class, TimeSpeedTests.class, PipelineTests.class, SnapshotTests.class, CheckpointTests.class, JournalTests.class, PropagationTests.class, RealTimeClockTests.class })
 public class SimulatorUnitTests
 {
 
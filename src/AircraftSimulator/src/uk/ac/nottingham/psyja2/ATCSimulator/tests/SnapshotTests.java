@@ -0,0 +1,157 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.TickListener;
+import uk.ac.nottingham.psyja2.ATCSimulator.WorldSnapshot;
+
+public class SnapshotTests
+{
+
+	/*
+	 * Test that a snapshot kept by a reader never changes, although the simulator reuses its buffers,
+	 * and that the previous snapshot is the state the last snapshot showed
+	 */
+	@Test
+	public void testSnapshotsDontChange() throws IOException, ParseException, InterruptedException
+	{
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		for(int i = 0; i < 8; i++)
+		{
+			Aircraft aircraft = new Aircraft(simulator, "TEST" + i, new Coordinate(55, -6 + i * 0.1), i * 45, 250, 20000, AircraftProfile.A321);
+			simulator.addAircraft(aircraft);
+			simulator.sendInstruction(new HeadingInstruction((i * 45 + 90) % 360), aircraft);
+		}
+
+		// Keep every snapshot, with what it showed when it was published
+		final List<WorldSnapshot> snapshots = new ArrayList<WorldSnapshot>();
+		final List<String> published = new ArrayList<String>();
+		final List<String> previous = new ArrayList<String>();
+		final List<Boolean> remade = new ArrayList<Boolean>(); // Asserted on this thread, a failure on the simulator thread wouldn't fail the test
+		simulator.addTickListener(new TickListener() {
+
+			@Override
+			public void tickEvent(double time)
+			{
+				WorldSnapshot snapshot = simulator.getSnapshot();
+				remade.add(snapshot != simulator.getSnapshot());
+				snapshots.add(snapshot);
+				published.add(describe(snapshot));
+				previous.add(describe(simulator.getPreviousSnapshot()));
+			}
+
+		});
+		SimulatorFixture.runUntil(simulator, 60);
+
+		assertTrue(snapshots.size() > 10);
+		for(int i = 0; i < snapshots.size(); i++)
+		{
+			assertFalse(remade.get(i));
+			assertEquals(published.get(i), describe(snapshots.get(i)));
+			if(i > 0)
+				assertEquals(published.get(i - 1), previous.get(i));
+		}
+	}
+
+	/*
+	 * Test that readers on other threads, copying the buffers while the simulator reuses them, only ever see
+	 * whole updates in order, and that the snapshots they keep never change
+	 */
+	@Test
+	public void testConcurrentReaders() throws IOException, ParseException, InterruptedException
+	{
+		final Simulator simulator = SimulatorFixture.createSimulator(true);
+		for(int i = 0; i < 50; i++)
+		{
+			Aircraft aircraft = new Aircraft(simulator, "TEST" + i, new Coordinate(55 + (i / 10) * 0.2, -6 + (i % 10) * 0.2), i * 7, 250, 20000, AircraftProfile.A321);
+			simulator.addAircraft(aircraft);
+			simulator.sendInstruction(new HeadingInstruction((i * 7 + 90) % 360), aircraft);
+		}
+		
+		// Each reader keeps what it saw, to check on this thread
+		final List<String> failures = new ArrayList<String>();
+		final int[] reads = new int[1];
+		final Thread readers[] = new Thread[3];
+		for(int t = 0; t < readers.length; t++)
+		{
+			readers[t] = new Thread(new Runnable() {
+
+				@Override
+				public void run()
+				{
+					List<WorldSnapshot> kept = new ArrayList<WorldSnapshot>();
+					List<String> seen = new ArrayList<String>();
+					double lastTime = -1;
+					while(!Thread.currentThread().isInterrupted())
+					{
+						WorldSnapshot previous = simulator.getPreviousSnapshot();
+						WorldSnapshot snapshot = simulator.getSnapshot();
+						if(snapshot.getTime() < lastTime || previous.getTime() > snapshot.getTime())
+							failure("Went back in time: " + lastTime + ", " + previous.getTime() + ", " + snapshot.getTime());
+						if(snapshot.getAllAircraft().size() != 50 && snapshot.getTime() > 0)
+							failure("Partial update of " + snapshot.getAllAircraft().size() + " aircraft at " + snapshot.getTime());
+						lastTime = snapshot.getTime();
+						if(kept.size() < 200)
+						{
+							kept.add(snapshot);
+							seen.add(describe(snapshot));
+						}
+					}
+					for(int i = 0; i < kept.size(); i++)
+					{
+						if(!seen.get(i).equals(describe(kept.get(i))))
+							failure("Snapshot at " + kept.get(i).getTime() + " changed");
+					}
+					synchronized(failures)
+					{
+						reads[0] += kept.size();
+					}
+				}
+				
+				private void failure(String failure)
+				{
+					synchronized(failures)
+					{
+						failures.add(failure);
+					}
+				}
+
+			});
+			readers[t].start();
+		}
+		SimulatorFixture.runUntil(simulator, 120);
+		for(Thread reader : readers)
+		{
+			reader.interrupt();
+			reader.join();
+		}
+		
+		assertEquals("[]", failures.toString());
+		assertTrue(reads[0] > 0);
+	}
+
+	private static String describe(WorldSnapshot snapshot)
+	{
+		StringBuilder out = new StringBuilder();
+		out.append(snapshot.getTime());
+		for(WorldSnapshot.AircraftState state : snapshot.getAllAircraft())
+		{
+			out.append(';').append(state.getCallsign()).append(',').append(state.getLatitude()).append(',').append(state.getLongitude())
+					.append(',').append(state.getHeading()).append(',').append(state.getInstructions().size());
+		}
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,73 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.ConflictGrid;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.Scenario;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+import uk.ac.nottingham.psyja2.ATCSimulator.SweptConflictCheck;
+
+public class SweptConflictTests
+{
+
+	/*
+	 * Test that a pair which passes straight through each other within a single update is found,
+	 * even though they are more than 5NM apart at both ends of it, and pairs that stay apart are not
+	 */
+	@Test
+	public void testPassThroughWithinUpdate() throws IOException, ParseException
+	{
+		double mile = 1D / 60 / Math.cos(Math.toRadians(55)); // One nautical mile of longitude at 55N
+		Aircraft[] aircrafts = new Aircraft[4];
+		aircrafts[0] = new Aircraft("TEST0", new Coordinate(55, -4), 90, 250, 10000, AircraftProfile.A321);
+		aircrafts[1] = new Aircraft("TEST1", new Coordinate(55, -4 + 10 * mile), 270, 250, 10000, AircraftProfile.A321);
+		// The same, 2000ft higher and 6NM further north
+		aircrafts[2] = new Aircraft("TEST2", new Coordinate(55, -4), 90, 250, 12000, AircraftProfile.A321);
+		aircrafts[3] = new Aircraft("TEST3", new Coordinate(55 + 6D / 60, -4 + 10 * mile), 270, 250, 12000, AircraftProfile.A321);
+		
+		// The positions are recorded by slot, so the aircraft must share a simulator
+		Simulator simulator = new Simulator(new Scenario(Simulator.SCENARIO_FILE), true, 1);
+		for(Aircraft aircraft : aircrafts)
+		{
+			simulator.addAircraft(aircraft);
+		}
+		
+		SweptConflictCheck check = new SweptConflictCheck(9260, 1000);
+		check.recordStart(aircrafts);
+		
+		// Each flies 8NM towards the other, so they pass and end up 6NM apart
+		for(int i = 0; i < aircrafts.length; i++)
+		{
+			Coordinate location = aircrafts[i].getLocation();
+			location.setLongitude(location.getLongitude() + (i % 2 == 0 ? 8 : -8) * mile);
+		}
+		
+		ConflictGrid candidates = check.findCandidates(aircrafts);
+		boolean found = false;
+		for(int p = 0; p < candidates.getPairCount(); p++)
+		{
+			Aircraft aircraftA = aircrafts[candidates.getFirst(p)];
+			Aircraft aircraftB = aircrafts[candidates.getSecond(p)];
+			boolean lost = check.lostSeparation(aircraftA, aircraftB);
+			if(aircraftA == aircrafts[0] && aircraftB == aircrafts[1])
+			{
+				assertTrue(lost);
+				found = true;
+			}
+			else
+			{
+				assertFalse(aircraftA.getCallsign() + "/" + aircraftB.getCallsign(), lost);
+			}
+		}
+		assertTrue(found);
+	}
+	
+}
@@ -0,0 +1,66 @@
+package uk.ac.nottingham.psyja2.ATCSimulator.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import uk.ac.nottingham.psyja2.ATCSimulator.Aircraft;
+import uk.ac.nottingham.psyja2.ATCSimulator.AircraftProfile;
+import uk.ac.nottingham.psyja2.ATCSimulator.Coordinate;
+import uk.ac.nottingham.psyja2.ATCSimulator.HeadingInstruction;
+import uk.ac.nottingham.psyja2.ATCSimulator.Simulator;
+
+public class TimeSpeedTests
+{
+
+	/*
+	 * Test that a real time simulator sped up 50 times ends up exactly where a fast time one does,
+	 * as every update is the same length whatever the time speed
+	 */
+	@Test
+	public void testSpeedUpIsIdentical() throws IOException, ParseException, InterruptedException
+	{
+		Simulator fastTime = runTurns(true);
+		Simulator realTime = runTurns(false);
+		
+		assertEquals(fastTime.getTime(), realTime.getTime(), 0);
+		List<Aircraft> expected = fastTime.getAllAircraft();
+		List<Aircraft> actual = realTime.getAllAircraft();
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).getLocation().getLatitude(), actual.get(i).getLocation().getLatitude(), 0);
+			assertEquals(expected.get(i).getLocation().getLongitude(), actual.get(i).getLocation().getLongitude(), 0);
+			assertEquals(expected.get(i).getHeading(), actual.get(i).getHeading(), 0);
+		}
+	}
+	
+	private Simulator runTurns(boolean fastTime) throws IOException, ParseException, InterruptedException
+	{
+		Simulator simulator = SimulatorFixture.createSimulator(fastTime);
+		
+		// A real time simulator is already running, so hold it up until the aircraft are all in
+		synchronized(simulator)
+		{
+			simulator.setWindSpeed(20);
+			if(!fastTime)
+				simulator.setTimeSpeed(50);
+			for(int i = 0; i < 3; i++)
+			{
+				Aircraft aircraft = new Aircraft(simulator, "TEST" + i, new Coordinate(55 + i, -4), 0, 250, 20000, AircraftProfile.A321);
+				simulator.addAircraft(aircraft);
+				simulator.sendInstruction(new HeadingInstruction(90 + i * 60), aircraft);
+			}
+			SimulatorFixture.stopAt(simulator, 60);
+		}
+		
+		simulator.start();
+		SimulatorFixture.waitUntilStopped(simulator, SimulatorFixture.TIMEOUT);
+		return simulator;
+	}
+	
+}